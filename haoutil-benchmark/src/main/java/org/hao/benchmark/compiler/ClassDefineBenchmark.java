@@ -0,0 +1,74 @@
+package org.hao.benchmark.compiler;
+
+import org.hao.core.compiler.CompilerUtil;
+import org.hao.core.compiler.InMemoryClassLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不含编译的类解析与定义开销：
+ * <ul>
+ *     <li>{@link #parseClassName()}：{@link CompilerUtil#getClassNameByCode(String)} 解析源码获取类名；</li>
+ *     <li>{@link #defineOne()}：新建 {@link InMemoryClassLoader} 并通过 findClass 定义一个类；</li>
+ *     <li>{@link #defineAll()}：新建类加载器并通过 {@link InMemoryClassLoader#getClasses()} 定义全部类。</li>
+ * </ul>
+ * 字节码在初始化时编译一次，测量期间不再调用 javac。
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ClassDefineBenchmark {
+
+    private static final int CHAIN_LENGTH = 8;
+
+    private static final String PACKAGE_NAME = "org.hao.benchmark.generated.define";
+
+    @Param({"10", "100", "1000"})
+    public int sourceSize;
+
+    private String source;
+
+    private Map<String, byte[]> classBytes;
+
+    private ClassLoader parentClassLoader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] chain = SourceGenerator.chain(PACKAGE_NAME, CHAIN_LENGTH, Math.max(1, sourceSize / CHAIN_LENGTH));
+        source = chain[CHAIN_LENGTH - 1];
+        classBytes = new HashMap<>(CompilerUtil.compileAndLoadClass(chain).classBytes);
+        parentClassLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    @Benchmark
+    public String parseClassName() {
+        return CompilerUtil.getClassNameByCode(source);
+    }
+
+    @Benchmark
+    public Class<?> defineOne() throws ClassNotFoundException {
+        return newClassLoader().loadClass(PACKAGE_NAME + ".Chain0");
+    }
+
+    @Benchmark
+    public Map<String, Class<?>> defineAll() throws ClassNotFoundException {
+        return newClassLoader().getClasses();
+    }
+
+    private InMemoryClassLoader newClassLoader() {
+        InMemoryClassLoader classLoader = new InMemoryClassLoader(parentClassLoader);
+        for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+            classLoader.addClassBytes(entry.getKey(), entry.getValue());
+        }
+        return classLoader;
+    }
+}
@@ -0,0 +1,44 @@
+package org.hao.benchmark.compiler;
+
+import org.hao.core.compiler.CompileOptions;
+import org.hao.core.compiler.CompilerUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新 JVM 中第一次编译的耗时，包含类路径加载、文件管理器创建与 javac 自身的类加载和解释执行。
+ * 每个 fork 只测量一次，以多个 fork 的分布作为结果。
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ColdCompileBenchmark {
+
+    @Param({"10", "100"})
+    public int sourceSize;
+
+    @Param({"pruned", "full"})
+    public String classpath;
+
+    private String source;
+
+    private CompileOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = SourceGenerator.operator("org.hao.benchmark.generated", "ColdOperator", sourceSize);
+        options = new CompileOptions().setClasspathPruning("pruned".equals(classpath));
+    }
+
+    @Benchmark
+    public Class<?> firstCompile() throws ClassNotFoundException {
+        return CompilerUtil.compileAndLoadClass(source, options);
+    }
+}
@@ -0,0 +1,74 @@
+package org.hao.benchmark.compiler;
+
+import org.hao.core.compiler.CompileOptions;
+import org.hao.core.compiler.CompilerUtil;
+import org.hao.core.compiler.InMemoryClassLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompilerUtil} 在已预热 JVM 中的编译耗时。
+ * <ul>
+ *     <li>{@link #compileUncached()}：每次源码不同，必然调用 javac（热编译）；</li>
+ *     <li>{@link #compileCached()}：源码相同，命中编译结果缓存，只剩类名解析与类定义；</li>
+ *     <li>{@link #compileMultiSource()}：一组相互引用的源码作为一个编译单元编译。</li>
+ * </ul>
+ * 参数 {@code sourceSize} 为生成类中的方法数，{@code classpath} 为 {@code pruned}（按 import 裁剪类路径）
+ * 或 {@code full}（完整类路径）。
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class CompilerBenchmark {
+
+    /**
+     * 多源码编译时的类数量
+     */
+    private static final int CHAIN_LENGTH = 8;
+
+    @Param({"10", "100", "1000"})
+    public int sourceSize;
+
+    @Param({"pruned", "full"})
+    public String classpath;
+
+    private String source;
+
+    private String[] chain;
+
+    private CompileOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        source = SourceGenerator.operator("org.hao.benchmark.generated", "Operator", sourceSize);
+        chain = SourceGenerator.chain("org.hao.benchmark.generated.chain", CHAIN_LENGTH, Math.max(1, sourceSize / CHAIN_LENGTH));
+        options = new CompileOptions().setClasspathPruning("pruned".equals(classpath));
+        CompilerUtil.warmUp();
+        // 放入编译结果缓存，供 compileCached 命中
+        CompilerUtil.compileAndLoadClass(source, options);
+    }
+
+    @Benchmark
+    public Class<?> compileUncached() throws ClassNotFoundException {
+        return CompilerUtil.compileAndLoadClass(source + SourceGenerator.uniqueMarker(), options);
+    }
+
+    @Benchmark
+    public Class<?> compileCached() throws ClassNotFoundException {
+        return CompilerUtil.compileAndLoadClass(source, options);
+    }
+
+    @Benchmark
+    public InMemoryClassLoader compileMultiSource() throws ClassNotFoundException {
+        String[] sources = chain.clone();
+        sources[0] = sources[0] + SourceGenerator.uniqueMarker();
+        return CompilerUtil.compileAndLoadClass(options, sources);
+    }
+}
@@ -0,0 +1,80 @@
+package org.hao.benchmark.compiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 生成基准测试使用的 Java 源码。
+ * <p>
+ * 源码内容只由参数决定，保证多次运行之间可复现；需要绕过编译结果缓存时，
+ * 通过 {@link #uniqueMarker()} 在源码末尾追加一行注释，使源码摘要不同而编译工作量不变。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public final class SourceGenerator {
+
+    private static final AtomicLong MARKER = new AtomicLong();
+
+    private SourceGenerator() {
+    }
+
+    /**
+     * 生成一个实现 {@code IntUnaryOperator} 的类，包含给定数量的辅助方法。
+     *
+     * @param packageName 包名
+     * @param simpleName  类名
+     * @param methods     辅助方法数量，决定源码大小
+     * @return Java 源码
+     */
+    public static String operator(String packageName, String simpleName, int methods) {
+        StringBuilder builder = new StringBuilder(128 + methods * 96);
+        builder.append("package ").append(packageName).append(";\n\n");
+        builder.append("import java.util.function.IntUnaryOperator;\n");
+        builder.append("\npublic class ").append(simpleName).append(" implements IntUnaryOperator {\n");
+        for (int i = 0; i < methods; i++) {
+            builder.append("    private static int step").append(i).append("(int x) {\n")
+                    .append("        return x * ").append(i % 7 + 1).append(" + ").append(i).append(";\n")
+                    .append("    }\n");
+        }
+        builder.append("    public int applyAsInt(int x) {\n")
+                .append("        int result = x;\n");
+        for (int i = 0; i < methods; i++) {
+            builder.append("        result = step").append(i).append("(result) % 1000003;\n");
+        }
+        builder.append("        return result;\n")
+                .append("    }\n")
+                .append("}\n");
+        return builder.toString();
+    }
+
+    /**
+     * 生成一组相互引用的源码：第 i 个类调用第 i-1 个类，需要作为一个编译单元编译。
+     *
+     * @param packageName 包名
+     * @param count       类的数量
+     * @param methods     每个类的辅助方法数量
+     * @return Java 源码
+     */
+    public static String[] chain(String packageName, int count, int methods) {
+        String[] sources = new String[count];
+        for (int i = 0; i < count; i++) {
+            String source = operator(packageName, "Chain" + i, methods);
+            if (i > 0) {
+                source = source.replace("        return result;\n",
+                        "        return new Chain" + (i - 1) + "().applyAsInt(result);\n");
+            }
+            sources[i] = source;
+        }
+        return sources;
+    }
+
+    /**
+     * 一行不影响编译结果的注释，每次调用都不同，用于绕过按源码摘要命中的编译缓存。
+     *
+     * @return 注释行
+     */
+    public static String uniqueMarker() {
+        return "// run " + MARKER.incrementAndGet() + "\n";
+    }
+}
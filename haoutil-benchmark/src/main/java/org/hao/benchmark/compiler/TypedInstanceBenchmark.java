@@ -0,0 +1,72 @@
+package org.hao.benchmark.compiler;
+
+import org.hao.core.compiler.CompilerUtil;
+import org.hao.core.compiler.TypedClassFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 动态类实例的创建与调用开销：
+ * <ul>
+ *     <li>{@link #reflective(Blackhole)}：{@link CompilerUtil#createInstance(String, Object...)} 反射创建实例，再反射调用方法；</li>
+ *     <li>{@link #typedFactory(Blackhole)}：{@link TypedClassFactory} 通过方法句柄创建实例，以接口调用；</li>
+ *     <li>{@link #reusedInstance(Blackhole)}：复用同一个实例，只有接口调用。</li>
+ * </ul>
+ * 类在初始化时编译一次，测量期间不再调用 javac。
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypedInstanceBenchmark {
+
+    private static final String CLASS_NAME = "org.hao.benchmark.generated.typed.DoubleRule";
+
+    private TypedClassFactory<IntUnaryOperator> factory;
+
+    private Method applyMethod;
+
+    private IntUnaryOperator instance;
+
+    private int x;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        factory = CompilerUtil.compileFactory("package org.hao.benchmark.generated.typed;\n" +
+                "\n" +
+                "import java.util.function.IntUnaryOperator;\n" +
+                "\n" +
+                "public class DoubleRule implements IntUnaryOperator {\n" +
+                "    public int applyAsInt(int x) {\n" +
+                "        return x * 2;\n" +
+                "    }\n" +
+                "}", IntUnaryOperator.class);
+        applyMethod = factory.getImplClass().getMethod("applyAsInt", int.class);
+        instance = factory.get();
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) throws Exception {
+        Object rule = CompilerUtil.createInstance(CLASS_NAME);
+        blackhole.consume(applyMethod.invoke(rule, x++));
+    }
+
+    @Benchmark
+    public void typedFactory(Blackhole blackhole) {
+        blackhole.consume(factory.get().applyAsInt(x++));
+    }
+
+    @Benchmark
+    public void reusedInstance(Blackhole blackhole) {
+        blackhole.consume(instance.applyAsInt(x++));
+    }
+}
@@ -0,0 +1,73 @@
+package org.hao.benchmark.expression;
+
+import org.hao.core.expression.ExpressionUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个公式在一天 86400 个点上求值的对比：
+ * <ul>
+ *     <li>{@link #perPointMap()}：每个点构造一个变量 Map 调用 {@link ExpressionUtil#executeExpression(String, Map)}；</li>
+ *     <li>{@link #columnar()}：{@link ExpressionUtil#evaluateColumns(String, Map)} 在生成的循环中整列计算；</li>
+ *     <li>{@link #columnarParallel()}：列式求值并按段在公共 ForkJoin 线程池中并行。</li>
+ * </ul>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarEvaluationBenchmark {
+
+    private static final int POINTS = 86400;
+
+    @Param({"a * b / 1000", "power(a, 2) * 0.01 + b % 7 - sqrt(b)"})
+    public String expression;
+
+    private Map<String, double[]> columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double[] a = new double[POINTS];
+        double[] b = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            a[i] = 220 + i % 10;
+            b[i] = i % 50 / 10D;
+        }
+        columns = new HashMap<>();
+        columns.put("a", a);
+        columns.put("b", b);
+    }
+
+    @Benchmark
+    public double[] perPointMap() {
+        double[] a = columns.get("a");
+        double[] b = columns.get("b");
+        double[] out = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("a", a[i]);
+            vars.put("b", b[i]);
+            out[i] = ((Number) ExpressionUtil.executeExpression(expression, vars)).doubleValue();
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] columnar() {
+        return ExpressionUtil.evaluateColumns(expression, columns);
+    }
+
+    @Benchmark
+    public double[] columnarParallel() {
+        return ExpressionUtil.evaluateColumns(expression, columns, ForkJoinPool.commonPool());
+    }
+}
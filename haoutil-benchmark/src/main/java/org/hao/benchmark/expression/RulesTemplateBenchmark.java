@@ -0,0 +1,53 @@
+package org.hao.benchmark.expression;
+
+import org.hao.core.expression.ExpressionUtil;
+import org.mvel2.MVEL;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExpressionUtil#eval(String, Map)} 使用预编译规则模板前后的对比：
+ * <ul>
+ *     <li>{@link #concatTemplate()}：原实现，把整个规则模板拼接在表达式前交给 {@code MVEL.eval}，每次重新解析模板；</li>
+ *     <li>{@link #precompiledTemplate()}：模板只编译一次，表达式编译结果缓存，求值时通过函数表调用模板函数。</li>
+ * </ul>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RulesTemplateBenchmark {
+
+    @Param({"add(a, b)", "round(power(a, 2) + sqrt(b))"})
+    public String expression;
+
+    private Map<String, Object> vars;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        vars = new HashMap<>();
+        vars.put("a", 3.5D);
+        vars.put("b", 16D);
+        // 首次调用时编译模板与表达式，不计入测量
+        ExpressionUtil.eval(expression, vars);
+    }
+
+    @Benchmark
+    public Object concatTemplate() {
+        // MVEL.eval 会把模板函数写入传入的 Map，每次使用新的 Map 保持与原实现的调用方式一致
+        return MVEL.eval(ExpressionUtil.rulesTemplate + "\n " + expression, new HashMap<>(vars));
+    }
+
+    @Benchmark
+    public Object precompiledTemplate() {
+        return ExpressionUtil.eval(expression, vars);
+    }
+}
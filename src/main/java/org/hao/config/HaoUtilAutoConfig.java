@@ -1,9 +1,15 @@
 package org.hao.config;
 
 import cn.hutool.extra.spring.SpringUtil;
+import cn.hutool.core.util.StrUtil;
 import org.hao.aspect.*;
+import org.hao.core.compiler.CompilerService;
+import org.hao.core.compiler.CompilerUtil;
+import org.hao.core.compiler.RemoteCompilerPool;
+import org.hao.core.compiler.ScriptPrecompiler;
 import org.hao.core.ws.WSUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -72,4 +78,26 @@ public class HaoUtilAutoConfig {
     public RateLimitAspect rateLimitAspect() {
         return new RateLimitAspect();
     }
+
+    @Bean(destroyMethod = "close")
+    // 配置了 hao-util.compiler-workers 且大于 0 时，动态编译在独立的子进程中执行；为 0 时不创建进程池
+    @ConditionalOnExpression("${hao-util.compiler-workers:0} > 0")
+    public RemoteCompilerPool remoteCompilerPool() {
+        RemoteCompilerPool pool = new RemoteCompilerPool(haoUtilProperties.getCompilerWorkers(),
+                StrUtil.splitTrim(StrUtil.nullToEmpty(haoUtilProperties.getCompilerWorkerJvmArgs()), ' '),
+                haoUtilProperties.getCompilerWorkerTimeout());
+        CompilerUtil.setRemoteCompilerPool(pool);
+        return pool;
+    }
+
+    @Bean(destroyMethod = "close")
+    // 配置了 hao-util.precompile-locations 时，启动后在后台并行预编译其中的 .java 脚本
+    @ConditionalOnProperty(prefix = "hao-util", value = "precompile-locations")
+    public ScriptPrecompiler scriptPrecompiler() {
+        CompilerService compilerService = new CompilerService(Math.max(1, haoUtilProperties.getPrecompileThreads()),
+                CompilerService.DEFAULT_QUEUE_CAPACITY, CompilerService.SaturationPolicy.BLOCK);
+        ScriptPrecompiler precompiler = new ScriptPrecompiler(compilerService);
+        precompiler.start(StrUtil.splitTrim(haoUtilProperties.getPrecompileLocations(), ','));
+        return precompiler;
+    }
 }
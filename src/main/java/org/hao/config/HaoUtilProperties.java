@@ -20,6 +20,16 @@ public class HaoUtilProperties {
     private boolean enableJetcache = false;
     //通常建议根据你的服务器核心数设置
     private int wsSchedulerPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+    //动态编译的独立编译进程数量，0 表示在当前进程内编译
+    private int compilerWorkers = 0;
+    //独立编译进程的 JVM 参数，多个参数以空格分隔，例如 -Xmx512m
+    private String compilerWorkerJvmArgs = "-Xmx512m";
+    //独立编译进程单次编译的超时时间（毫秒），超时后结束该子进程，小于等于 0 时不限制
+    private long compilerWorkerTimeout = 60_000;
+    //启动时在后台预编译的脚本位置，多个以逗号分隔，支持目录或 classpath: 前缀，例如 classpath:rules/
+    private String precompileLocations;
+    //预编译使用的线程数
+    private int precompileThreads = Runtime.getRuntime().availableProcessors();
 
     public boolean isPrintInterface() {
         return printInterface;
@@ -68,4 +78,44 @@ public class HaoUtilProperties {
     public void setEnableJetcache(boolean enableJetcache) {
         this.enableJetcache = enableJetcache;
     }
+
+    public int getCompilerWorkers() {
+        return compilerWorkers;
+    }
+
+    public void setCompilerWorkers(int compilerWorkers) {
+        this.compilerWorkers = compilerWorkers;
+    }
+
+    public String getCompilerWorkerJvmArgs() {
+        return compilerWorkerJvmArgs;
+    }
+
+    public void setCompilerWorkerJvmArgs(String compilerWorkerJvmArgs) {
+        this.compilerWorkerJvmArgs = compilerWorkerJvmArgs;
+    }
+
+    public long getCompilerWorkerTimeout() {
+        return compilerWorkerTimeout;
+    }
+
+    public void setCompilerWorkerTimeout(long compilerWorkerTimeout) {
+        this.compilerWorkerTimeout = compilerWorkerTimeout;
+    }
+
+    public String getPrecompileLocations() {
+        return precompileLocations;
+    }
+
+    public void setPrecompileLocations(String precompileLocations) {
+        this.precompileLocations = precompileLocations;
+    }
+
+    public int getPrecompileThreads() {
+        return precompileThreads;
+    }
+
+    public void setPrecompileThreads(int precompileThreads) {
+        this.precompileThreads = precompileThreads;
+    }
 }
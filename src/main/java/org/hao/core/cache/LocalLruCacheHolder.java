@@ -0,0 +1,259 @@
+package org.hao.core.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本地 LRU 缓存持有者，基于 {@link ConcurrentHashMap} 实现容量上限与近似的最近最少使用淘汰。
+ * <p>
+ * 与 {@link LocalTimedCacheHolder} 不同，该实现以条目数量作为淘汰依据，并额外统计命中、未命中与淘汰次数，
+ * 便于在生产环境中长期开启并观察缓存效果。
+ * <p>
+ * 读取不加锁，只在条目上记录最近访问时间；写入超出容量时由一个线程批量淘汰最久未访问的条目，
+ * 一次腾出约 1/16 的容量，其他线程不等待淘汰完成，因此条目数可能短暂超过容量上限。
+ *
+ * @param <K> 缓存键的类型
+ * @param <V> 缓存值的类型
+ * @author wanghao (helloworlwh @ 163.com)
+ * @since 2026-10-17
+ */
+public class LocalLruCacheHolder<K, V> implements CacheHolder<K, V> {
+
+    /**
+     * 默认最大缓存条目数。
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * 最大缓存条目数，超过后按最近最少使用顺序淘汰。
+     */
+    private final int capacity;
+
+    /**
+     * 缓存条目。
+     */
+    private final ConcurrentHashMap<K, CacheEntry<V>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 淘汰锁，同一时刻只有一个线程执行淘汰。
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * 命中次数。
+     */
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * 未命中次数（包括已过期的条目）。
+     */
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * 因容量上限被淘汰的条目数。
+     */
+    private final LongAdder evictionCount = new LongAdder();
+
+    public LocalLruCacheHolder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 构造函数，指定最大缓存条目数。
+     *
+     * @param capacity 最大缓存条目数，必须大于 0
+     */
+    public LocalLruCacheHolder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 根据键获取缓存值，已过期的条目视为未命中并被移除。
+     *
+     * @param key 缓存键
+     * @return 缓存值，如果不存在或已过期则返回 null
+     */
+    @Override
+    public V get(K key) {
+        CacheEntry<V> entry = cache.get(key);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        if (entry.isExpired()) {
+            cache.remove(key, entry);
+            missCount.increment();
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        hitCount.increment();
+        return entry.value;
+    }
+
+    /**
+     * 根据键移除缓存值。
+     *
+     * @param key 缓存键
+     */
+    @Override
+    public void remove(K key) {
+        cache.remove(key);
+    }
+
+    /**
+     * 将键值对存入缓存，并设置过期时间。
+     *
+     * @param key     缓存键
+     * @param object  缓存值
+     * @param timeout 过期时间，单位为毫秒，小于等于 0 表示永不过期
+     */
+    @Override
+    public void put(K key, V object, long timeout) {
+        long expireAt = timeout > 0 ? System.currentTimeMillis() + timeout : 0L;
+        cache.put(key, new CacheEntry<>(object, expireAt));
+        if (cache.size() > capacity) {
+            evict();
+        }
+    }
+
+    /**
+     * 将键值对存入缓存，永不过期，仅受容量上限约束。
+     *
+     * @param key    缓存键
+     * @param object 缓存值
+     */
+    @Override
+    public void put(K key, V object) {
+        put(key, object, 0L);
+    }
+
+    /**
+     * 清空所有缓存条目，统计计数保持不变。
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 获取当前缓存条目数。
+     *
+     * @return 当前缓存条目数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 获取缓存命中率。
+     *
+     * @return 命中率，取值范围 [0, 1]，尚无访问时返回 0
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0D : (double) hits / total;
+    }
+
+    /**
+     * 淘汰过期条目与最久未访问的条目，直到条目数回落到容量的 15/16。
+     * 已有线程在淘汰时直接返回，不阻塞写入。
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int target = capacity - Math.max(1, capacity / 16);
+            List<Map.Entry<K, CacheEntry<V>>> entries = new ArrayList<>(cache.size());
+            for (Map.Entry<K, CacheEntry<V>> entry : cache.entrySet()) {
+                if (entry.getValue().isExpired()) {
+                    cache.remove(entry.getKey(), entry.getValue());
+                } else {
+                    entries.add(entry);
+                }
+            }
+            int excess = cache.size() - target;
+            if (excess <= 0) {
+                return;
+            }
+            // 访问时间在排序期间可能被并发更新，先取快照再排序
+            long[][] order = new long[entries.size()][];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = new long[]{entries.get(i).getValue().lastAccess, i};
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(a[0], b[0]));
+            for (int i = 0; i < order.length && excess > 0; i++) {
+                Map.Entry<K, CacheEntry<V>> entry = entries.get((int) order[i][1]);
+                // 条目已被替换时不淘汰新值
+                if (cache.remove(entry.getKey(), entry.getValue())) {
+                    evictionCount.increment();
+                    excess--;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LocalLruCacheHolder{" +
+                "size=" + size() +
+                ", capacity=" + capacity +
+                ", hitCount=" + getHitCount() +
+                ", missCount=" + getMissCount() +
+                ", evictionCount=" + getEvictionCount() +
+                '}';
+    }
+
+    /**
+     * 缓存条目，记录值与过期时间点。
+     *
+     * @param <V> 缓存值的类型
+     */
+    private static class CacheEntry<V> {
+        private final V value;
+        /**
+         * 过期时间点（毫秒时间戳），0 表示永不过期
+         */
+        private final long expireAt;
+        /**
+         * 最近访问时间（{@link System#nanoTime()}），用于近似 LRU 淘汰
+         */
+        private volatile long lastAccess;
+
+        CacheEntry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.lastAccess = System.nanoTime();
+        }
+
+        boolean isExpired() {
+            return expireAt > 0 && System.currentTimeMillis() > expireAt;
+        }
+    }
+}
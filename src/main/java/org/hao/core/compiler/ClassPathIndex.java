@@ -0,0 +1,152 @@
+package org.hao.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * 类路径索引，记录每个包名由哪些类路径条目（JAR 或目录）提供。
+ * <p>
+ * 索引在创建时一次性扫描全部类路径条目，之后的查询完全在内存中完成。
+ * 编译器查找类时会按包名逐个列举类路径条目，借助该索引可以直接跳过不包含该包的 JAR，
+ * 对于类路径中完全不存在的包（例如 {@code java.lang}、源码自身的包）则可以立即返回空结果。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class ClassPathIndex {
+
+    /**
+     * 包名 -> 提供该包的类路径条目（保持类路径顺序）
+     */
+    private final Map<String, List<String>> packageIndex;
+
+    /**
+     * 建立索引时使用的类路径条目
+     */
+    private final List<String> entries;
+
+    private ClassPathIndex(List<String> entries, Map<String, List<String>> packageIndex) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.packageIndex = packageIndex;
+    }
+
+    /**
+     * 扫描给定的类路径条目并建立索引，各条目并行扫描，无法读取的条目会被忽略。
+     *
+     * @param classpath 类路径条目（JAR 文件或目录的绝对路径）
+     * @return 类路径索引
+     */
+    public static ClassPathIndex build(Collection<String> classpath) {
+        List<String> entries = new ArrayList<>(classpath);
+        Map<String, Set<String>> scanned = new ConcurrentHashMap<>();
+        entries.parallelStream().forEach(entry -> {
+            Set<String> packages = scanEntry(new File(entry));
+            if (!packages.isEmpty()) {
+                scanned.put(entry, packages);
+            }
+        });
+        // 按类路径顺序合并，保证同一包名下条目的顺序与 -cp 一致
+        Map<String, List<String>> packageIndex = new HashMap<>();
+        for (String entry : entries) {
+            Set<String> packages = scanned.get(entry);
+            if (packages == null) {
+                continue;
+            }
+            for (String packageName : packages) {
+                packageIndex.computeIfAbsent(packageName, k -> new ArrayList<>(1)).add(entry);
+            }
+        }
+        return new ClassPathIndex(entries, packageIndex);
+    }
+
+    /**
+     * 判断类路径中是否存在指定包。
+     *
+     * @param packageName 包名，例如 {@code org.hao.core}，默认包为空字符串
+     * @return 存在返回 true
+     */
+    public boolean containsPackage(String packageName) {
+        return packageIndex.containsKey(packageName);
+    }
+
+    /**
+     * 获取提供指定包的类路径条目。
+     *
+     * @param packageName 包名
+     * @return 类路径条目列表，不存在时返回空列表
+     */
+    public List<String> getEntries(String packageName) {
+        List<String> list = packageIndex.get(packageName);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 获取建立索引时使用的全部类路径条目。
+     *
+     * @return 类路径条目列表
+     */
+    public List<String> getClasspath() {
+        return entries;
+    }
+
+    /**
+     * 获取索引中的包数量。
+     *
+     * @return 包数量
+     */
+    public int getPackageCount() {
+        return packageIndex.size();
+    }
+
+    /**
+     * 扫描单个类路径条目中包含的包名。
+     */
+    private static Set<String> scanEntry(File file) {
+        Set<String> packages = new HashSet<>();
+        if (file.isFile()) {
+            try (JarFile jarFile = new JarFile(file)) {
+                Enumeration<JarEntry> jarEntries = jarFile.entries();
+                while (jarEntries.hasMoreElements()) {
+                    JarEntry jarEntry = jarEntries.nextElement();
+                    if (!jarEntry.isDirectory()) {
+                        addPackage(packages, jarEntry.getName());
+                    }
+                }
+            } catch (IOException e) {
+                // 非 JAR 文件或文件损坏，忽略该条目
+            }
+        } else if (file.isDirectory()) {
+            Path root = file.toPath();
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.filter(Files::isRegularFile)
+                        .forEach(path -> addPackage(packages, root.relativize(path).toString().replace(File.separatorChar, '/')));
+            } catch (IOException e) {
+                // 目录无法读取，忽略该条目
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * 根据条目名称（如 {@code org/hao/core/StrUtil.class}）记录其所在包名，只关注类文件与源码文件。
+     */
+    private static void addPackage(Set<String> packages, String name) {
+        if (!name.endsWith(".class") && !name.endsWith(".java")) {
+            return;
+        }
+        // 多版本 JAR 中的类与模块描述不参与包索引
+        if (name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+            return;
+        }
+        int index = name.lastIndexOf('/');
+        packages.add(index < 0 ? "" : name.substring(0, index).replace('/', '.'));
+    }
+}
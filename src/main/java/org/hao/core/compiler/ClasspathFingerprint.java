@@ -0,0 +1,139 @@
+package org.hao.core.compiler;
+
+import cn.hutool.core.util.HexUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 类路径指纹的计算，供编译缓存与持久化存储判断依赖是否发生变化。
+ * <p>
+ * 每个类路径条目按类型计算签名：
+ * <ul>
+ *     <li>目录（例如 {@code target/classes}）：递归汇总其中每个文件的相对路径、大小与最后修改时间，目录内任一类文件变化时签名随之变化；</li>
+ *     <li>JAR：汇总中央目录中每个条目的名称、CRC 与大小，只与 JAR 的内容有关，重新解压或复制产生的新修改时间不影响签名。
+ *     读取中央目录的结果按 (路径, 大小, 修改时间) 缓存，JAR 未被替换时不再重复读取；</li>
+ *     <li>调用方已知内容签名的条目（例如从 fat jar 解压的依赖，见解压清单）直接使用已知签名，无需打开文件。</li>
+ * </ul>
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+final class ClasspathFingerprint {
+
+    /**
+     * JAR 路径 -> {文件状态, 内容签名}
+     */
+    private static final Map<String, String[]> JAR_SIGNATURES = new ConcurrentHashMap<>();
+
+    private ClasspathFingerprint() {
+    }
+
+    /**
+     * 计算类路径指纹。
+     *
+     * @param entries         类路径条目，顺序参与计算
+     * @param knownSignatures 已知内容签名的条目（绝对路径 -> 签名），可为空
+     * @return 十六进制形式的 SHA-256 指纹
+     */
+    static String compute(List<String> entries, Map<String, String> knownSignatures) {
+        MessageDigest digest = CompiledClassCache.newSha256();
+        for (String entry : entries) {
+            CompiledClassCache.update(digest, entry);
+            String known = knownSignatures.get(entry);
+            CompiledClassCache.update(digest, known != null ? known : signature(new File(entry)));
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 计算单个类路径条目的签名。
+     *
+     * @param file 类路径条目
+     * @return 签名，条目不存在时返回固定值
+     */
+    static String signature(File file) {
+        if (file.isDirectory()) {
+            return "dir:" + directorySignature(file.toPath());
+        }
+        if (!file.isFile()) {
+            return "missing";
+        }
+        String stat = file.length() + ":" + file.lastModified();
+        String path = file.getAbsolutePath();
+        String[] cached = JAR_SIGNATURES.get(path);
+        if (cached != null && cached[0].equals(stat)) {
+            return cached[1];
+        }
+        String signature;
+        try {
+            signature = "jar:" + jarSignature(file);
+        } catch (IOException e) {
+            // 不是合法的 zip 文件时退化为按文件状态计算
+            signature = "file:" + stat;
+        }
+        JAR_SIGNATURES.put(path, new String[]{stat, signature});
+        return signature;
+    }
+
+    /**
+     * 汇总 JAR 中央目录中每个条目的名称、CRC 与大小，只读取中央目录，不解压条目内容。
+     */
+    private static String jarSignature(File file) throws IOException {
+        MessageDigest digest = CompiledClassCache.newSha256();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                CompiledClassCache.update(digest, entry.getName() + ":" + Long.toHexString(entry.getCrc()) + ":" + entry.getSize());
+            }
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 递归汇总目录中每个文件的相对路径、大小与最后修改时间，按路径排序后计算，与遍历顺序无关。
+     */
+    private static String directorySignature(Path root) {
+        Map<String, String> files = new TreeMap<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        files.put(root.relativize(file).toString(), attrs.size() + ":" + attrs.lastModifiedTime().toMillis());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // 遍历期间被删除或无权限读取的文件不参与计算
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            return "unreadable";
+        }
+        MessageDigest digest = CompiledClassCache.newSha256();
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            CompiledClassCache.update(digest, entry.getKey());
+            CompiledClassCache.update(digest, entry.getValue());
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+}
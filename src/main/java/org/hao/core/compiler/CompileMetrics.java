@@ -0,0 +1,208 @@
+package org.hao.core.compiler;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次动态编译的指标，记录各阶段耗时、字节码大小与诊断信息数量。
+ * <p>
+ * 由 {@link CompilerUtil} 在编译与加载过程中填充，完成后交给 {@link CompileMetricsSink}。
+ * javac 内部各阶段的耗时通过编译器的 TaskListener 事件获得。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class CompileMetrics {
+
+    /**
+     * 编译阶段
+     */
+    public enum Phase {
+        /**
+         * 解析源码获取类名（JavaParser）
+         */
+        SOURCE_PARSE,
+        /**
+         * javac 语法解析
+         */
+        PARSE,
+        /**
+         * javac 符号登记
+         */
+        ENTER,
+        /**
+         * 注解处理
+         */
+        ANNOTATION_PROCESSING,
+        /**
+         * javac 语义分析（属性与流分析）
+         */
+        ANALYZE,
+        /**
+         * javac 生成字节码
+         */
+        GENERATE,
+        /**
+         * 在独立编译进程中编译（含进程间通信），见 {@link RemoteCompilerPool}
+         */
+        REMOTE_COMPILE,
+        /**
+         * 裁剪后的类路径编译失败、回退到完整类路径之前浪费的耗时；失败尝试的 javac 各阶段耗时与诊断数量不计入其他阶段
+         */
+        PRUNED_FALLBACK,
+        /**
+         * 类加载器定义类
+         */
+        DEFINE
+    }
+
+    /**
+     * 字节码的来源
+     */
+    public enum Source {
+        /**
+         * 调用 javac 编译
+         */
+        COMPILED,
+        /**
+         * 命中内存缓存
+         */
+        MEMORY_CACHE,
+        /**
+         * 命中磁盘持久化存储
+         */
+        DISK_STORE
+    }
+
+    private final long startNanos = System.nanoTime();
+
+    private final EnumMap<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+
+    private final List<String> classNames = new ArrayList<>();
+
+    private Source source = Source.COMPILED;
+
+    private long totalNanos;
+
+    private int classCount;
+
+    private long byteCodeSize;
+
+    private int errorCount;
+
+    private int warningCount;
+
+    private boolean success;
+
+    /**
+     * 累加某个阶段的耗时
+     */
+    synchronized void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    void addClassName(String className) {
+        classNames.add(className);
+    }
+
+    void setSource(Source source) {
+        this.source = source;
+    }
+
+    void setByteCode(Map<String, byte[]> classBytes) {
+        this.classCount = classBytes.size();
+        long size = 0;
+        for (byte[] bytes : classBytes.values()) {
+            size += bytes.length;
+        }
+        this.byteCodeSize = size;
+    }
+
+    void setDiagnosticCounts(int errorCount, int warningCount) {
+        this.errorCount = errorCount;
+        this.warningCount = warningCount;
+    }
+
+    /**
+     * 合并另一次编译尝试的阶段耗时与诊断数量
+     */
+    void merge(CompileMetrics attempt) {
+        attempt.getPhaseNanos().forEach(this::addPhaseNanos);
+        setDiagnosticCounts(attempt.errorCount, attempt.warningCount);
+    }
+
+    /**
+     * 结束计时
+     */
+    void finish(boolean success) {
+        this.success = success;
+        this.totalNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 获取某个阶段的耗时。
+     *
+     * @param phase 阶段
+     * @return 纳秒，该阶段未执行时返回 0
+     */
+    public synchronized long getPhaseNanos(Phase phase) {
+        Long nanos = phaseNanos.get(phase);
+        return nanos == null ? 0 : nanos;
+    }
+
+    /**
+     * 获取全部已执行阶段的耗时。
+     *
+     * @return 阶段与纳秒耗时的映射
+     */
+    public synchronized Map<Phase, Long> getPhaseNanos() {
+        return Collections.unmodifiableMap(new EnumMap<>(phaseNanos));
+    }
+
+    public List<String> getClassNames() {
+        return Collections.unmodifiableList(classNames);
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public long getByteCodeSize() {
+        return byteCodeSize;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public int getWarningCount() {
+        return warningCount;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("CompileMetrics{classes=").append(classNames)
+                .append(", source=").append(source)
+                .append(", success=").append(success)
+                .append(", totalMs=").append(TimeUnit.NANOSECONDS.toMillis(totalNanos));
+        getPhaseNanos().forEach((phase, nanos) ->
+                builder.append(", ").append(phase).append("Ms=").append(TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return builder.append(", byteCodeSize=").append(byteCodeSize)
+                .append(", errors=").append(errorCount)
+                .append(", warnings=").append(warningCount)
+                .append('}').toString();
+    }
+}
@@ -0,0 +1,22 @@
+package org.hao.core.compiler;
+
+/**
+ * 编译指标接收器，每次动态编译结束后（无论成功与否）由 {@link CompilerUtil} 回调。
+ * <p>
+ * 默认实现为 {@link RollingCompileMetricsSink}，也可以实现该接口把指标转发到 Micrometer、日志等外部系统，
+ * 通过 {@link CompilerUtil#setCompileMetricsSink(CompileMetricsSink)} 替换。回调在编译线程中同步执行，实现应尽量轻量。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@FunctionalInterface
+public interface CompileMetricsSink {
+
+    /**
+     * 记录一次编译的指标。
+     *
+     * @param metrics 编译指标
+     */
+    void record(CompileMetrics metrics);
+}
@@ -0,0 +1,74 @@
+package org.hao.core.compiler;
+
+import java.io.Writer;
+
+/**
+ * 单次动态编译的选项。
+ *
+ * <pre>
+ * CompileOptions options = new CompileOptions().setAnnotationProcessing(true);
+ * Class&lt;?&gt; clazz = CompilerUtil.compileAndLoadClass(javaCode, options);
+ * </pre>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class CompileOptions {
+
+    /**
+     * 父类加载器，为 null 时使用当前线程的上下文类加载器
+     */
+    private ClassLoader parentClassLoader;
+
+    /**
+     * 用于输出编译信息的写入器，可为 null
+     */
+    private Writer writer;
+
+    /**
+     * 是否启用注解处理：为 null 时自动判断（源码引用了 lombok 时启用），否则按设置启用或关闭。
+     * 关闭时编译选项中会加入 {@code -proc:none}，javac 不再到类路径中查找注解处理器。
+     */
+    private Boolean annotationProcessing;
+
+    /**
+     * 是否根据源码的 import 裁剪类路径，只把提供被引用包的 JAR 交给 javac，裁剪后编译失败时自动回退到完整类路径
+     */
+    private boolean classpathPruning = true;
+
+    public ClassLoader getParentClassLoader() {
+        return parentClassLoader;
+    }
+
+    public CompileOptions setParentClassLoader(ClassLoader parentClassLoader) {
+        this.parentClassLoader = parentClassLoader;
+        return this;
+    }
+
+    public Writer getWriter() {
+        return writer;
+    }
+
+    public CompileOptions setWriter(Writer writer) {
+        this.writer = writer;
+        return this;
+    }
+
+    public Boolean getAnnotationProcessing() {
+        return annotationProcessing;
+    }
+
+    public CompileOptions setAnnotationProcessing(Boolean annotationProcessing) {
+        this.annotationProcessing = annotationProcessing;
+        return this;
+    }
+
+    public boolean isClasspathPruning() {
+        return classpathPruning;
+    }
+
+    public CompileOptions setClasspathPruning(boolean classpathPruning) {
+        this.classpathPruning = classpathPruning;
+        return this;
+    }
+}
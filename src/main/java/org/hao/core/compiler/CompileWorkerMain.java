@@ -0,0 +1,230 @@
+package org.hao.core.compiler;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 独立编译进程的入口，由 {@link RemoteCompilerPool} 以单独的 JVM 启动。
+ * <p>
+ * 进程通过标准输入/输出与主进程通信，启动时先接收类路径并创建标准文件管理器，之后循环处理编译请求，
+ * 返回编译出的字节码或诊断信息。这样 javac 编译期间的大量内存分配发生在独立进程中，不会引起主进程的 Full GC。
+ * </p>
+ * <p>
+ * 该类会被复制到临时目录作为独立进程的类路径，因此只能依赖 JDK，不能引用本项目或第三方库中的其他类；
+ * 新增内部类时需要同步修改 {@link #WORKER_CLASSES}。
+ * </p>
+ * 协议（长度前缀的二进制格式，字符串为 int 长度 + UTF-8 字节）：
+ * <ul>
+ *     <li>启动：主进程发送 类路径条目数 + 各条目，进程返回 {@link #READY}；</li>
+ *     <li>编译：主进程发送 {@link #OP_COMPILE}、选项数 + 各选项、源码数 + (类名, 源码)；
+ *     进程返回 是否成功、错误数、警告数，成功时再返回 类数 + (类名, 字节码)，失败时返回诊断信息；</li>
+ *     <li>退出：主进程发送 {@link #OP_EXIT} 或关闭输入流。</li>
+ * </ul>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public final class CompileWorkerMain {
+
+    static final int READY = 0x48414f57;
+    static final int OP_COMPILE = 1;
+    static final int OP_EXIT = 2;
+
+    /**
+     * 独立进程运行所需的全部类（含内部类）
+     */
+    static final String[] WORKER_CLASSES = {
+            "CompileWorkerMain",
+            "CompileWorkerMain$SourceFile",
+            "CompileWorkerMain$ClassFile",
+            "CompileWorkerMain$MemoryFileManager"
+    };
+
+    private CompileWorkerMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        // 标准输出只用于协议通信，其余输出一律写到标准错误
+        System.setOut(System.err);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("无法获取 Java 编译器，请确保使用的是 JDK 而不是 JRE");
+            System.exit(2);
+        }
+        int classpathSize = in.readInt();
+        List<File> classpath = new ArrayList<>(classpathSize);
+        for (int i = 0; i < classpathSize; i++) {
+            classpath.add(new File(readString(in)));
+        }
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        standardFileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+        out.writeInt(READY);
+        out.flush();
+
+        while (true) {
+            int op;
+            try {
+                op = in.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            if (op != OP_COMPILE) {
+                break;
+            }
+            compile(compiler, standardFileManager, in, out);
+        }
+        standardFileManager.close();
+    }
+
+    private static void compile(JavaCompiler compiler, StandardJavaFileManager standardFileManager,
+                                DataInputStream in, DataOutputStream out) throws IOException {
+        int optionCount = in.readInt();
+        List<String> options = new ArrayList<>(optionCount);
+        for (int i = 0; i < optionCount; i++) {
+            options.add(readString(in));
+        }
+        int sourceCount = in.readInt();
+        List<JavaFileObject> units = new ArrayList<>(sourceCount);
+        for (int i = 0; i < sourceCount; i++) {
+            units.add(new SourceFile(readString(in), readString(in)));
+        }
+
+        MemoryFileManager fileManager = new MemoryFileManager(standardFileManager);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StringWriter output = new StringWriter();
+        boolean success;
+        String message;
+        boolean fatal = false;
+        try {
+            success = compiler.getTask(output, fileManager, diagnostics, options, null, units).call();
+            message = success ? "" : describe(diagnostics, output);
+        } catch (Throwable e) {
+            success = false;
+            message = "编译进程异常: " + e;
+            // 内存溢出后进程状态不可信，返回结果后退出，由主进程重新拉起
+            fatal = e instanceof VirtualMachineError;
+        }
+
+        int errors = 0;
+        int warnings = 0;
+        for (Diagnostic<?> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors++;
+            } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                warnings++;
+            }
+        }
+        out.writeBoolean(success);
+        out.writeInt(errors);
+        out.writeInt(warnings);
+        if (success) {
+            out.writeInt(fileManager.classes.size());
+            for (Map.Entry<String, ClassFile> entry : fileManager.classes.entrySet()) {
+                writeString(out, entry.getKey());
+                byte[] bytes = entry.getValue().bytes.toByteArray();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        } else {
+            writeString(out, message);
+        }
+        out.flush();
+        if (fatal) {
+            System.exit(3);
+        }
+    }
+
+    private static String describe(DiagnosticCollector<JavaFileObject> diagnostics, StringWriter output) {
+        StringBuilder builder = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (builder.length() > 0) {
+                builder.append(System.lineSeparator());
+            }
+            builder.append(diagnostic);
+        }
+        if (output.getBuffer().length() > 0) {
+            builder.append(System.lineSeparator()).append(output);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 写入字符串：int 长度 + UTF-8 字节（不受 writeUTF 64KB 的限制）
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 读取 {@link #writeString(DataOutputStream, String)} 写入的字符串
+     */
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 内存中的源码
+     */
+    static final class SourceFile extends SimpleJavaFileObject {
+        private final String code;
+
+        SourceFile(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * 内存中的字节码
+     */
+    static final class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(URI.create("bytes:///" + className + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    /**
+     * 将编译输出保存在内存中的文件管理器
+     */
+    static final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        private final Map<String, ClassFile> classes = new LinkedHashMap<>();
+
+        MemoryFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            ClassFile file = new ClassFile(className);
+            classes.put(className, file);
+            return file;
+        }
+
+        @Override
+        public void close() {
+            // 标准文件管理器在多次编译之间复用，不随单次编译关闭
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.hao.core.compiler;
+
+import cn.hutool.core.util.HexUtil;
+import org.hao.core.cache.LocalLruCacheHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译结果（字节码）缓存。
+ * <p>
+ * 以 (源码文本, 类路径指纹, 编译选项, JDK 版本) 的 SHA-256 摘要作为键，缓存一次编译产生的全部类字节码。
+ * 相同源码再次编译时直接跳过 javac，把缓存的字节码交给新的 {@link InMemoryClassLoader} 定义即可。
+ * 缓存条目数有上限，按最近最少使用淘汰，并提供命中/未命中统计，可在生产环境长期开启。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class CompiledClassCache {
+
+    /**
+     * 默认最大缓存条目数（按编译单元计）。
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /**
+     * 当前 JDK 的标识（规范版本与虚拟机版本），不同 JDK 的 javac 生成的类文件版本可能不同，
+     * 参与缓存键与持久化存储的指纹计算。
+     */
+    public static final String JDK_IDENTITY = System.getProperty("java.specification.version") + ":" + System.getProperty("java.vm.version");
+
+    /**
+     * 实际存储：摘要键 -> (类名 -> 字节码)
+     */
+    private final LocalLruCacheHolder<String, Map<String, byte[]>> holder;
+
+    /**
+     * 是否启用缓存，关闭后 {@link #get(String)} 始终返回 null 且 {@link #put(String, Map)} 不做任何处理。
+     */
+    private volatile boolean enabled = true;
+
+    public CompiledClassCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * 构造函数，指定最大缓存条目数。
+     *
+     * @param maxEntries 最大缓存条目数
+     */
+    public CompiledClassCache(int maxEntries) {
+        this.holder = new LocalLruCacheHolder<>(maxEntries);
+    }
+
+    /**
+     * 根据源码、类路径指纹、编译选项与 {@link #JDK_IDENTITY} 计算缓存键。
+     *
+     * @param classpathFingerprint 类路径指纹，见 {@link CompilerUtil#getClasspathFingerprint()}
+     * @param options              编译选项
+     * @param sources              参与编译的全部源码，键为类名，值为源码
+     * @return 十六进制形式的 SHA-256 摘要
+     */
+    public static String buildKey(String classpathFingerprint, List<String> options, Map<String, String> sources) {
+        MessageDigest digest = newSha256();
+        update(digest, classpathFingerprint);
+        update(digest, JDK_IDENTITY);
+        if (options != null) {
+            for (String option : options) {
+                update(digest, option);
+            }
+        }
+        // 选项与源码之间加入分隔，避免不同组合拼接后产生相同的输入
+        update(digest, "--sources--");
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            update(digest, source.getKey());
+            update(digest, source.getValue());
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 获取缓存的字节码。
+     *
+     * @param key 缓存键
+     * @return 类名到字节码的映射，未命中时返回 null
+     */
+    public Map<String, byte[]> get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        return holder.get(key);
+    }
+
+    /**
+     * 缓存一次编译的全部字节码。
+     *
+     * @param key        缓存键
+     * @param classBytes 类名到字节码的映射
+     */
+    public void put(String key, Map<String, byte[]> classBytes) {
+        if (!enabled || classBytes == null || classBytes.isEmpty()) {
+            return;
+        }
+        holder.put(key, Collections.unmodifiableMap(new LinkedHashMap<>(classBytes)));
+    }
+
+    /**
+     * 移除指定键的缓存。
+     *
+     * @param key 缓存键
+     */
+    public void remove(String key) {
+        holder.remove(key);
+    }
+
+    /**
+     * 清空缓存，统计计数保持不变。
+     */
+    public void clear() {
+        holder.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            holder.clear();
+        }
+    }
+
+    public int size() {
+        return holder.size();
+    }
+
+    public int getMaxEntries() {
+        return holder.getCapacity();
+    }
+
+    public long getHitCount() {
+        return holder.getHitCount();
+    }
+
+    public long getMissCount() {
+        return holder.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return holder.getEvictionCount();
+    }
+
+    public double getHitRate() {
+        return holder.getHitRate();
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledClassCache{" +
+                "enabled=" + enabled +
+                ", size=" + size() +
+                ", maxEntries=" + getMaxEntries() +
+                ", hitCount=" + getHitCount() +
+                ", missCount=" + getMissCount() +
+                ", evictionCount=" + getEvictionCount() +
+                '}';
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 写入带长度前缀的字符串，保证拼接边界不会产生歧义。
+     */
+    static void update(MessageDigest digest, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,252 @@
+package org.hao.core.compiler;
+
+import java.io.Closeable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 并行编译服务，将相互独立的编译单元分发到多个线程上同时编译。
+ * <p>
+ * 内部使用固定大小的线程池与有界队列，正在执行与排队中的任务总数不超过
+ * {@code threads + queueCapacity}。达到上限后按 {@link SaturationPolicy} 阻塞提交线程或直接拒绝，
+ * 避免大量生成源码同时提交时无限堆积。编译本身复用 {@link CompilerUtil} 的内存编译流程
+ * （{@link InMemoryJavaFileManager}/{@link InMemoryClassLoader}），因此同样享有编译缓存与文件管理器池。
+ * </p>
+ *
+ * <pre>
+ * CompilerService service = new CompilerService(4, 64, CompilerService.SaturationPolicy.BLOCK);
+ * CompletableFuture&lt;InMemoryClassLoader&gt; future = service.submit(sourceA, sourceB);
+ * Class&lt;?&gt; clazz = future.get().loadClass("com.example.A");
+ * </pre>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class CompilerService implements Closeable {
+
+    /**
+     * 队列已满时的处理策略
+     */
+    public enum SaturationPolicy {
+        /**
+         * 阻塞提交线程，直到有任务完成腾出位置
+         */
+        BLOCK,
+        /**
+         * 立即抛出 {@link RejectedExecutionException}
+         */
+        REJECT
+    }
+
+    /**
+     * 默认排队容量
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 控制执行中与排队中的任务总数
+     */
+    private final Semaphore permits;
+
+    private final SaturationPolicy saturationPolicy;
+
+    /**
+     * 被拒绝的提交次数
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * 使用 CPU 核数个线程、默认排队容量与阻塞策略创建编译服务。
+     */
+    public CompilerService() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, SaturationPolicy.BLOCK);
+    }
+
+    /**
+     * 创建编译服务。
+     *
+     * @param threads          编译线程数
+     * @param queueCapacity    最大排队任务数
+     * @param saturationPolicy 队列已满时的处理策略
+     */
+    public CompilerService(int threads, int queueCapacity, SaturationPolicy saturationPolicy) {
+        if (threads <= 0 || queueCapacity < 0) {
+            throw new IllegalArgumentException("threads 必须大于 0，queueCapacity 不能小于 0");
+        }
+        this.saturationPolicy = saturationPolicy == null ? SaturationPolicy.BLOCK : saturationPolicy;
+        this.permits = new Semaphore(threads + queueCapacity);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS,
+                // 信号量已限制总数，这里使用无界队列即可保证 execute 不会被线程池拒绝
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hao-compiler-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交一组源码，作为一个编译单元编译（源码之间可以相互引用）。
+     *
+     * @param javaCodes Java 源码
+     * @return 完成时返回持有全部编译结果的类加载器
+     * @throws RejectedExecutionException 使用 {@link SaturationPolicy#REJECT} 且队列已满，或服务已关闭时抛出
+     */
+    public CompletableFuture<InMemoryClassLoader> submit(String... javaCodes) {
+        return submit(null, null, javaCodes);
+    }
+
+    /**
+     * 提交一组源码，作为一个编译单元编译（源码之间可以相互引用）。
+     *
+     * @param parentClassLoader 父类加载器，为 null 时使用执行编译线程的上下文类加载器
+     * @param writer            用于输出编译信息的写入器，可为 null
+     * @param javaCodes         Java 源码
+     * @return 完成时返回持有全部编译结果的类加载器
+     * @throws RejectedExecutionException 使用 {@link SaturationPolicy#REJECT} 且队列已满，或服务已关闭时抛出
+     */
+    public CompletableFuture<InMemoryClassLoader> submit(ClassLoader parentClassLoader, Writer writer, String... javaCodes) {
+        // 未指定父类加载器时使用提交线程的上下文类加载器，与同步编译的行为保持一致
+        ClassLoader parent = parentClassLoader == null ? Thread.currentThread().getContextClassLoader() : parentClassLoader;
+        return execute(() -> CompilerUtil.compileAndLoadClass(parent, writer, javaCodes));
+    }
+
+    /**
+     * 提交单个源码并返回编译后的类。
+     *
+     * @param javaCode Java 源码
+     * @return 完成时返回编译并加载后的类
+     * @throws RejectedExecutionException 使用 {@link SaturationPolicy#REJECT} 且队列已满，或服务已关闭时抛出
+     */
+    public CompletableFuture<Class<?>> submitClass(String javaCode) {
+        ClassLoader parent = Thread.currentThread().getContextClassLoader();
+        return execute(() -> CompilerUtil.compileAndLoadClass(javaCode, parent));
+    }
+
+    /**
+     * 批量提交相互独立的源码，每个源码作为单独的编译单元并行编译。
+     *
+     * @param javaCodes 相互独立的 Java 源码
+     * @return 与输入顺序一致的编译结果
+     * @throws RejectedExecutionException 使用 {@link SaturationPolicy#REJECT} 且队列已满，或服务已关闭时抛出
+     */
+    public List<CompletableFuture<Class<?>>> submitAll(Collection<String> javaCodes) {
+        List<CompletableFuture<Class<?>>> futures = new ArrayList<>(javaCodes.size());
+        for (String javaCode : javaCodes) {
+            futures.add(submitClass(javaCode));
+        }
+        return futures;
+    }
+
+    /**
+     * 获取排队中（尚未开始编译）的任务数。
+     *
+     * @return 队列深度
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 获取正在编译的任务数。
+     *
+     * @return 执行中的任务数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 获取已完成的任务数（包括编译失败的任务）。
+     *
+     * @return 已完成的任务数
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * 获取因队列已满被拒绝的提交次数。
+     *
+     * @return 被拒绝次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 获取剩余可提交的任务数。
+     *
+     * @return 剩余容量
+     */
+    public int getRemainingCapacity() {
+        return permits.availablePermits();
+    }
+
+    public SaturationPolicy getSaturationPolicy() {
+        return saturationPolicy;
+    }
+
+    /**
+     * 关闭服务，已提交的任务会继续执行完毕。
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * 申请容量后提交任务，任务结束时归还容量。
+     */
+    private <T> CompletableFuture<T> execute(Callable<T> callable) {
+        acquirePermit();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(callable.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 服务已关闭
+            permits.release();
+            rejectedCount.increment();
+            throw e;
+        }
+        return future;
+    }
+
+    private void acquirePermit() {
+        if (executor.isShutdown()) {
+            rejectedCount.increment();
+            throw new RejectedExecutionException("编译服务已关闭");
+        }
+        if (saturationPolicy == SaturationPolicy.REJECT) {
+            if (!permits.tryAcquire()) {
+                rejectedCount.increment();
+                throw new RejectedExecutionException("编译队列已满，排队任务数: " + getQueueDepth());
+            }
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("等待编译队列时被中断", e);
+        }
+    }
+}
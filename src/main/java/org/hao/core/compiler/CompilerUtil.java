@@ -1,7 +1,6 @@
 package org.hao.core.compiler;
 
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.IoUtil;
@@ -13,17 +12,30 @@ import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import org.hao.core.exception.HaoException;
 import org.hao.spring.SpringRunUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.system.ApplicationHome;
 
 import javax.tools.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.net.URLDecoder;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
@@ -38,11 +50,34 @@ import java.util.stream.Collectors;
  * @since 2025-06-15
  */
 public class CompilerUtil {
+    private static final Logger logger = LoggerFactory.getLogger(CompilerUtil.class);
+
+    /**
+     * 已加载的动态类注册表，Key 是类的全限定名。
+     * 只强引用最近使用的类，被替换或淘汰的类仅弱引用持有，类加载器不再被使用后可以被回收。
+     */
+    private static final DynamicClassRegistry classRegistry = new DynamicClassRegistry();
+
+    /**
+     * 正在进行的单类编译，Key 为 (类名, 源码, 父类加载器)。相同的编译并发到达时只有第一个调用方执行编译，
+     * 其余调用方等待同一个结果，得到同一个 Class 对象；编译结束后立即移除。
+     */
+    private static final ConcurrentHashMap<InFlightKey, CompletableFuture<Class<?>>> inFlightCompilations = new ConcurrentHashMap<>();
+
+    /**
+     * 因等待正在进行的相同编译而省去的编译次数
+     */
+    private static final LongAdder coalescedCompileCount = new LongAdder();
+
+    /**
+     * 编译指标接收器，为 null 时不记录编译指标
+     */
+    private static volatile CompileMetricsSink compileMetricsSink = new RollingCompileMetricsSink();
+
     /**
-     * 用于缓存已加载的类对象，确保类在运行时只被加载一次。
-     * Key 是类的全限定名，Value 是对应的 Class 对象。
+     * 独立编译进程池，不为 null 时缓存未命中的编译交给子进程执行
      */
-    private static final Map<String, Class<?>> classCache = new ConcurrentHashMap<>();
+    private static volatile RemoteCompilerPool remoteCompilerPool;
 
     /**
      * 系统自带的 Java 编译器实例，通过 {@link ToolProvider#getSystemJavaCompiler()} 获取。
@@ -53,9 +88,31 @@ public class CompilerUtil {
     /**
      * 存储编译时所需的类路径信息，保证编译时可以正确引用外部依赖。
      * 使用 TreeSet 是为了保证类路径的唯一性和有序性。
+     *
+     * 首次编译（或 {@link #reloadClassPath()}）前写入的条目会被原样作为编译类路径，不再调用 {@link #loadClassPath()}；
+     * 为空时由 {@link #loadClassPath()} 加载后整体写入一次。
+     *
+     * @deprecated 仅为兼容保留，快照建立后编译器不再读取该集合，之后的修改需要调用 {@link #reloadClassPath()} 才会生效；
+     * 请使用 {@link #getClassPath()} 获取不可变的类路径快照
      */
+    @Deprecated
     public static final TreeSet<String> classpath = new TreeSet<>();
 
+    /**
+     * 已加载的类路径快照（不可变），尚未加载时为 null。在锁内完整构建后再发布，编译时的 -cp、类路径指纹与文件管理器池都读取该快照。
+     */
+    private static volatile List<String> classpathSnapshot;
+
+    /**
+     * 当前快照是否来自调用方预先写入 {@link #classpath} 的条目，是时重新加载类路径不清空该集合
+     */
+    private static boolean classpathSeeded = false;
+
+    /**
+     * 加载与重置类路径时使用的锁
+     */
+    private static final Object CLASSPATH_LOCK = new Object();
+
     /**
      * 标记依赖的 JAR 文件是否已解压到临时目录，用于避免重复解压。
      * 默认值为 {@code false}，表示尚未解压。
@@ -68,12 +125,133 @@ public class CompilerUtil {
      */
     private static String tempDirName;
 
+    /**
+     * 临时目录中记录已提取依赖 CRC 与大小的清单文件名，用于增量提取。
+     */
+    private static final String EXTRACT_MANIFEST_NAME = ".extract-manifest";
+
+    /**
+     * 已解压依赖的内容签名：解压出的 JAR 绝对路径 -> 该依赖在 fat jar 中的 CRC 与大小（取自解压清单）。
+     * 计算类路径指纹时直接使用这些签名，每次冷启动重新解压产生的新修改时间不会改变指纹。
+     */
+    private static volatile Map<String, String> extractedSignatures = Collections.emptyMap();
+
     /**
      * 系统临时文件夹路径，通过 {@link System#getProperties()} 获取。
      * 用于构建存放依赖 JAR 的临时目录。
      */
     private static final String tmpdir = System.getProperties().getProperty("java.io.tmpdir");
 
+    /**
+     * 编译结果缓存，按源码、类路径指纹与编译选项的摘要缓存字节码，命中时跳过 javac。
+     */
+    private static volatile CompiledClassCache compiledClassCache = new CompiledClassCache();
+
+    /**
+     * 持久化编译结果存储，默认关闭，通过 {@link #setPersistentClassStore(String)} 启用。
+     */
+    private static volatile PersistentClassStore persistentClassStore;
+
+    /**
+     * 最多记录的编译失败的裁剪类路径数量，超出后清空重新记录
+     */
+    private static final int MAX_FAILED_PRUNED_CLASSPATHS = 256;
+
+    /**
+     * 编译失败、但完整类路径编译成功的裁剪类路径（例如被引用类的父类位于其他 JAR），之后直接使用完整类路径，
+     * 不再为同样的裁剪结果多调用一次 javac。完整类路径变化时清空。
+     */
+    private static final Set<List<String>> failedPrunedClasspaths = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 共享的标准文件管理器池，与类路径指纹绑定，类路径变化时重建。
+     */
+    private static volatile JavaFileManagerPool fileManagerPool;
+
+    /**
+     * 最多保留的裁剪类路径文件管理器池数量
+     */
+    private static final int MAX_PRUNED_FILE_MANAGER_POOLS = 16;
+
+    /**
+     * 按 import 裁剪后的类路径对应的文件管理器池，Key 为裁剪后的类路径条目，按最近使用淘汰，
+     * 由 {@link #FILE_MANAGER_POOL_LOCK} 保护，完整类路径变化时全部关闭。
+     */
+    private static final Map<List<String>, JavaFileManagerPool> prunedFileManagerPools = new LinkedHashMap<List<String>, JavaFileManagerPool>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, JavaFileManagerPool> eldest) {
+            if (size() > MAX_PRUNED_FILE_MANAGER_POOLS) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * 重建文件管理器池时使用的锁
+     */
+    private static final Object FILE_MANAGER_POOL_LOCK = new Object();
+
+    /**
+     * 以 fat jar 方式运行时获取依赖的方式，默认解压依赖；直接读取嵌套 JAR 需要通过 {@link #setFatJarMode(FatJarMode)} 显式开启。
+     */
+    private static volatile FatJarMode fatJarMode = FatJarMode.EXTRACT;
+
+    /**
+     * fat jar 直读模式下的嵌套 JAR 索引，非 fat jar 运行或使用解压模式时为 null。
+     */
+    private static volatile NestedJarIndex nestedJarIndex;
+
+    /**
+     * 以 Spring Boot fat jar 方式运行时，编译器获取 {@code BOOT-INF/lib} 依赖的方式。
+     */
+    public enum FatJarMode {
+        /**
+         * 直接从 fat jar 的嵌套 JAR 中读取类文件，不解压依赖；只有包含注解处理器的依赖（如 lombok）
+         * 会解压到 {@code java.io.tmpdir/tempCompilerDir/processors} 作为 {@code -processorpath}。读取失败时回退为解压模式
+         */
+        NESTED,
+        /**
+         * 将依赖 JAR 解压到临时目录 {@code java.io.tmpdir/tempCompilerDir} 后作为类路径，默认模式
+         */
+        EXTRACT
+    }
+
+    /**
+     * 独立编译进程使用的磁盘类路径，见 {@link #getDiskClasspath()}
+     */
+    private static volatile DiskClasspath remoteDiskClasspath;
+
+    /**
+     * 类路径指纹默认的复查间隔（毫秒）
+     */
+    public static final long DEFAULT_FINGERPRINT_RECHECK_MILLIS = 1000;
+
+    /**
+     * 类路径指纹的复查间隔（毫秒），超过间隔后在后台线程中重新计算，小于等于 0 时只在显式刷新或重新加载类路径时计算。
+     */
+    private static volatile long fingerprintRecheckMillis = DEFAULT_FINGERPRINT_RECHECK_MILLIS;
+
+    /**
+     * 最近一次计算的类路径指纹，类路径快照不变时直接复用。
+     */
+    private static volatile FingerprintSnapshot classpathFingerprint;
+
+    /**
+     * 是否有后台的指纹复查正在进行，同一时刻只复查一次
+     */
+    private static final AtomicBoolean fingerprintRechecking = new AtomicBoolean();
+
+    /**
+     * 后台复查类路径指纹的线程，遍历类路径目录不占用编译线程
+     */
+    private static final ExecutorService FINGERPRINT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hao-classpath-fingerprint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
 
     /**
      * 编译并加载类
@@ -85,7 +263,7 @@ public class CompilerUtil {
      */
     public static Class<?> compileAndLoadClass(String javaCode) throws ClassNotFoundException {
         // 调用重载方法，传入通过代码获取的类名、Java代码和当前线程的上下文类加载器
-        return compileAndLoadClass(getClassNameByCode(javaCode), javaCode, Thread.currentThread().getContextClassLoader(), null);
+        return compileAndLoadClassByCode(javaCode, new CompileOptions());
     }
 
     /**
@@ -100,7 +278,7 @@ public class CompilerUtil {
      */
     public static Class<?> compileAndLoadClass(String javaCode, Writer writer) throws ClassNotFoundException {
         // 调用重载方法，传入通过代码提取的类名、Java代码、当前线程上下文类加载器和输出写入器
-        return compileAndLoadClass(getClassNameByCode(javaCode), javaCode, Thread.currentThread().getContextClassLoader(), writer);
+        return compileAndLoadClassByCode(javaCode, new CompileOptions().setWriter(writer));
     }
 
 
@@ -115,7 +293,7 @@ public class CompilerUtil {
      */
     public static Class<?> compileAndLoadClass(String javaCode, ClassLoader parentClassLoader) throws ClassNotFoundException {
         // 调用重载方法，传入从代码中提取的类名、Java代码和父类加载器
-        return compileAndLoadClass(getClassNameByCode(javaCode), javaCode, parentClassLoader, null);
+        return compileAndLoadClassByCode(javaCode, new CompileOptions().setParentClassLoader(parentClassLoader));
     }
 
     /**
@@ -133,7 +311,7 @@ public class CompilerUtil {
      */
     public static Class<?> compileAndLoadClass(String javaCode, ClassLoader parentClassLoader, Writer writer) throws ClassNotFoundException {
         // 调用重载方法，传入通过Java代码提取的类名
-        return compileAndLoadClass(getClassNameByCode(javaCode), javaCode, parentClassLoader, writer);
+        return compileAndLoadClassByCode(javaCode, new CompileOptions().setParentClassLoader(parentClassLoader).setWriter(writer));
     }
 
 
@@ -201,62 +379,384 @@ public class CompilerUtil {
      * @throws ClassNotFoundException 如果类编译失败或加载失败
      */
     public static Class<?> compileAndLoadClass(String className, String javaCode, ClassLoader parentClassLoader, Writer writer) throws ClassNotFoundException {
+        CompileOptions options = new CompileOptions().setParentClassLoader(parentClassLoader).setWriter(writer);
+        return compileAndLoadClass(className, javaCode, options, new CompileMetrics());
+    }
+
+    /**
+     * 按指定的编译选项编译并加载类，例如显式开启注解处理或关闭类路径裁剪。
+     *
+     * @param javaCode Java 源码
+     * @param options  编译选项
+     * @return 编译并加载的类
+     * @throws ClassNotFoundException 如果类编译失败或加载失败
+     */
+    public static Class<?> compileAndLoadClass(String javaCode, CompileOptions options) throws ClassNotFoundException {
+        return compileAndLoadClassByCode(javaCode, options == null ? new CompileOptions() : options);
+    }
+
+    /**
+     * 从源码中解析类名后编译并加载类，解析耗时计入 {@link CompileMetrics.Phase#SOURCE_PARSE}
+     */
+    private static Class<?> compileAndLoadClassByCode(String javaCode, CompileOptions options) throws ClassNotFoundException {
+        CompileMetrics metrics = new CompileMetrics();
+        long start = System.nanoTime();
+        String className = getClassNameByCode(javaCode);
+        metrics.addPhaseNanos(CompileMetrics.Phase.SOURCE_PARSE, System.nanoTime() - start);
+        return compileAndLoadClass(className, javaCode, options, metrics);
+    }
+
+    /**
+     * 编译并加载单个类，相同 (类名, 源码, 父类加载器, 编译选项) 的并发调用合并为一次编译；
+     * 写入器按引用比较，指定了各自写入器的调用不会合并，各自收到自己的编译信息
+     */
+    private static Class<?> compileAndLoadClass(String className, String javaCode, CompileOptions options, CompileMetrics metrics) throws ClassNotFoundException {
+        // 未指定父类加载器时使用当前线程的上下文类加载器，提前确定以便作为合并编译的 Key
+        ClassLoader parentClassLoader = options.getParentClassLoader() == null
+                ? Thread.currentThread().getContextClassLoader() : options.getParentClassLoader();
+        InFlightKey key = new InFlightKey(className, javaCode, parentClassLoader, options);
+        CompletableFuture<Class<?>> flight = new CompletableFuture<>();
+        CompletableFuture<Class<?>> existing = inFlightCompilations.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedCompileCount.increment();
+            return awaitInFlight(existing);
+        }
+        try {
+            Class<?> aClass = doCompileAndLoadClass(className, javaCode, parentClassLoader, options, metrics);
+            flight.complete(aClass);
+            return aClass;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCompilations.remove(key, flight);
+        }
+    }
+
+    /**
+     * 等待其他线程正在进行的相同编译，失败时抛出与编译线程相同的异常
+     */
+    private static Class<?> awaitInFlight(CompletableFuture<Class<?>> flight) throws ClassNotFoundException {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Class<?> doCompileAndLoadClass(String className, String javaCode, ClassLoader parentClassLoader,
+                                                  CompileOptions options, CompileMetrics metrics) throws ClassNotFoundException {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put(className, javaCode);
+        boolean success = false;
+        try {
+            // 编译（或命中缓存）得到字节码，再交给新的类加载器定义
+            InMemoryClassLoader classLoader = defineClasses(parentClassLoader, compileToByteCode(sources, options, metrics));
+
+            // 使用自定义类加载器加载指定名称的类
+            long start = System.nanoTime();
+            Class<?> aClass = classLoader.loadClass(className);
+            metrics.addPhaseNanos(CompileMetrics.Phase.DEFINE, System.nanoTime() - start);
+
+            // 将加载的类登记到注册表，以便后续使用
+            classRegistry.register(className, aClass);
+            success = true;
+
+            // 返回加载的类
+            return aClass;
+        } finally {
+            recordMetrics(metrics, success);
+        }
+    }
+
+    public static InMemoryClassLoader compileAndLoadClass(String... javaCode) throws ClassNotFoundException {
+        return compileAndLoadClass(null, null, javaCode);
+    }
+
+    public static InMemoryClassLoader compileAndLoadClass(ClassLoader parentClassLoader, String... javaCodes) throws ClassNotFoundException {
+        return compileAndLoadClass(parentClassLoader, null, javaCodes);
+    }
+
+    public static InMemoryClassLoader compileAndLoadClass(ClassLoader parentClassLoader, Writer writer, String... javaCodes) throws ClassNotFoundException {
+        return compileAndLoadClass(new CompileOptions().setParentClassLoader(parentClassLoader).setWriter(writer), javaCodes);
+    }
+
+    /**
+     * 按指定的编译选项将一组源码作为一个编译单元编译并加载（源码之间可以相互引用）。
+     *
+     * @param options   编译选项
+     * @param javaCodes Java 源码
+     * @return 持有全部编译结果的类加载器
+     * @throws ClassNotFoundException 如果类编译失败或加载失败
+     */
+    public static InMemoryClassLoader compileAndLoadClass(CompileOptions options, String... javaCodes) throws ClassNotFoundException {
+        if (options == null) {
+            options = new CompileOptions();
+        }
+        if (ArrayUtil.isEmpty(javaCodes)) {
+            throw new HaoException("javaCode 不能为空");
+        }
+        CompileMetrics metrics = new CompileMetrics();
+        boolean success = false;
+        try {
+            long start = System.nanoTime();
+            Map<String, String> sources = new LinkedHashMap<>();
+            for (String javaCode : javaCodes) {
+                sources.put(getClassNameByCode(javaCode), javaCode);
+            }
+            metrics.addPhaseNanos(CompileMetrics.Phase.SOURCE_PARSE, System.nanoTime() - start);
+            InMemoryClassLoader classLoader = defineClasses(options.getParentClassLoader(), compileToByteCode(sources, options, metrics));
+            start = System.nanoTime();
+            Map<String, Class<?>> classes = classLoader.getClasses();
+            metrics.addPhaseNanos(CompileMetrics.Phase.DEFINE, System.nanoTime() - start);
+            classRegistry.registerAll(classes);
+            success = true;
+            // 返回加载的类
+            return classLoader;
+        } finally {
+            recordMetrics(metrics, success);
+        }
+    }
+
+    /**
+     * 结束计时并把指标交给指标接收器，接收器异常不影响编译结果
+     */
+    private static void recordMetrics(CompileMetrics metrics, boolean success) {
+        CompileMetricsSink sink = compileMetricsSink;
+        if (sink == null) {
+            return;
+        }
+        metrics.finish(success);
+        try {
+            sink.record(metrics);
+        } catch (RuntimeException e) {
+            logger.warn("记录编译指标失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 将一组源码编译为字节码。
+     * <p>
+     * 编译前先以 (源码, 类路径指纹, 编译选项) 计算摘要并查询 {@link CompiledClassCache}，
+     * 命中时直接返回缓存的字节码而不再调用 javac；未命中时执行编译并写入缓存。
+     * </p>
+     * <p>
+     * 编译前通过 {@link SourceImportAnalyzer} 提取源码引用的包，借助 {@link ClassPathIndex} 只把提供这些包的 JAR 交给 javac；
+     * 裁剪后的类路径编译失败时（例如被引用类的父类位于其他 JAR）自动回退到完整类路径重新编译，失败尝试的耗时记为
+     * {@link CompileMetrics.Phase#PRUNED_FALLBACK}；完整类路径编译成功时记住该裁剪结果，之后相同的裁剪结果直接使用完整类路径。
+     * </p>
+     *
+     * @param sources        待编译源码，键为类全限定名，值为源码
+     * @param compileOptions 编译选项（写入器、注解处理与类路径裁剪）
+     * @param metrics        记录字节码来源、javac 各阶段耗时与诊断数量的指标
+     * @return 类全限定名到字节码的映射（包含内部类）
+     */
+    private static Map<String, byte[]> compileToByteCode(Map<String, String> sources, CompileOptions compileOptions, CompileMetrics metrics) {
         // 获取系统自带的 Java 编译器
         if (SYSTEM_COMPILER == null) {
             throw new RuntimeException("无法获取 Java 编译器，请确保使用的是 JDK 而不是 JRE");
         }
+        // 编译期间持有 fat jar 索引的引用，期间切换模式或重新加载类路径不会关闭正在读取的索引
+        NestedJarIndex nestedIndex = acquireNestedJarIndex();
+        try {
+            return compileToByteCode(sources, compileOptions, metrics, nestedIndex);
+        } finally {
+            releaseNestedJarIndex(nestedIndex);
+        }
+    }
 
-        // 构建内存文件管理器：使用 InMemoryJavaFileManager 管理源码与字节码的内存存储
-        InMemoryJavaFileManager fileManager = new InMemoryJavaFileManager(SYSTEM_COMPILER.getStandardFileManager(null, null, null));
-        List<JavaFileObject> compilationUnits = ListUtil.of(new JavaSourceFromString(className, javaCode));
+    /**
+     * 使用指定的 fat jar 索引将一组源码编译为字节码，见 {@link #compileToByteCode(Map, CompileOptions, CompileMetrics)}
+     *
+     * @param nestedIndex fat jar 索引，非 fat jar 直读模式时为 null
+     */
+    private static Map<String, byte[]> compileToByteCode(Map<String, String> sources, CompileOptions compileOptions,
+                                                         CompileMetrics metrics, NestedJarIndex nestedIndex) {
+        // 轻量分析源码引用的包，用于决定是否启用注解处理以及裁剪类路径
+        long start = System.nanoTime();
+        Set<String> referencedPackages = SourceImportAnalyzer.referencedPackages(sources.values());
+        metrics.addPhaseNanos(CompileMetrics.Phase.SOURCE_PARSE, System.nanoTime() - start);
+        Boolean annotationProcessing = compileOptions.getAnnotationProcessing();
+        if (annotationProcessing == null) {
+            annotationProcessing = referencedPackages.stream().anyMatch(name -> name.equals("lombok") || name.startsWith("lombok."));
+        }
+        // 创建一个选项列表，用于配置编译任务的参数，类路径由池中的文件管理器提供，这里不再传入 -cp
+        List<String> options = buildCompileOptions(false, annotationProcessing, nestedIndex);
+
+        // 相同源码、类路径与编译选项的编译结果必然一致，命中缓存时直接复用字节码
+        CompiledClassCache cache = compiledClassCache;
+        String fingerprint = getClasspathFingerprint();
+        String cacheKey = CompiledClassCache.buildKey(fingerprint, options, sources);
+        sources.keySet().forEach(metrics::addClassName);
+        Map<String, byte[]> cached = cache.get(cacheKey);
+        if (cached != null) {
+            metrics.setSource(CompileMetrics.Source.MEMORY_CACHE);
+            metrics.setByteCode(cached);
+            return cached;
+        }
+        // 内存缓存未命中时再查询磁盘上的持久化存储（重启后仍然有效）
+        PersistentClassStore store = persistentClassStore;
+        if (store != null) {
+            Map<String, byte[]> stored = store.get(cacheKey, fingerprint);
+            if (stored != null) {
+                cache.put(cacheKey, stored);
+                metrics.setSource(CompileMetrics.Source.DISK_STORE);
+                metrics.setByteCode(stored);
+                return stored;
+            }
+        }
 
+        // 从池中借出已设置好类路径的标准文件管理器，已打开的 JAR 在多次编译之间得以复用
+        JavaFileManagerPool pool = getFileManagerPool(fingerprint);
+        // fat jar 直读模式下类路径由 NestedJarJavaFileManager 从嵌套 JAR 中提供，已经是按包的内存查找，无需裁剪
+        Map<String, byte[]> classBytes = null;
+        RemoteCompilerPool remotePool = remoteCompilerPool;
+        if (remotePool != null) {
+            // 在独立进程中编译，javac 的内存分配不影响当前进程
+            start = System.nanoTime();
+            classBytes = remotePool.compile(sources, options, getDiskClasspath(), fingerprint, metrics);
+            metrics.addPhaseNanos(CompileMetrics.Phase.REMOTE_COMPILE, System.nanoTime() - start);
+        } else if (nestedIndex == null && compileOptions.isClasspathPruning()) {
+            List<String> prunedClasspath = getPrunedClasspath(pool, referencedPackages);
+            JavaFileManagerPool prunedPool = prunedClasspath == null ? null : getPrunedFileManagerPool(pool, prunedClasspath);
+            if (prunedPool != null) {
+                // 失败的尝试单独记录，只有成功时才并入本次编译的指标
+                CompileMetrics attempt = new CompileMetrics();
+                start = System.nanoTime();
+                try {
+                    classBytes = runCompileTask(prunedPool, null, sources, compileOptions.getWriter(), options, attempt);
+                    metrics.merge(attempt);
+                } catch (HaoException e) {
+                    long wasted = System.nanoTime() - start;
+                    metrics.addPhaseNanos(CompileMetrics.Phase.PRUNED_FALLBACK, wasted);
+                    classBytes = runCompileTask(pool, null, sources, compileOptions.getWriter(), options, metrics);
+                    // 完整类路径编译成功，说明失败是裁剪造成的，记录下来以后直接使用完整类路径
+                    rememberFailedPrunedClasspath(pool, prunedClasspath);
+                    logger.info("裁剪后的类路径编译失败，已回退到完整类路径，额外耗时 {}ms，相同的裁剪结果之后不再裁剪: {}",
+                            TimeUnit.NANOSECONDS.toMillis(wasted), sources.keySet());
+                }
+            }
+        }
+        if (classBytes == null) {
+            classBytes = runCompileTask(pool, nestedIndex, sources, compileOptions.getWriter(), options, metrics);
+        }
+        metrics.setByteCode(classBytes);
+        cache.put(cacheKey, classBytes);
+        if (store != null) {
+            store.put(cacheKey, fingerprint, classBytes);
+        }
+        return classBytes;
+    }
+
+    /**
+     * 获取磁盘上的类路径供独立编译进程使用，fat jar 直读模式下嵌套 JAR 无法被子进程读取，需要先解压依赖。
+     * 结果与类路径快照绑定，只在启用进程池或类路径重新加载后计算一次，之后的编译直接复用。
+     */
+    private static Collection<String> getDiskClasspath() {
+        List<String> entries = ensureClassPath();
+        DiskClasspath current = remoteDiskClasspath;
+        if (current != null && current.classpath == entries) {
+            return current.diskClasspath;
+        }
+        NestedJarIndex nestedIndex = nestedJarIndex;
+        Collection<String> diskClasspath = entries;
+        if (nestedIndex != null) {
+            try {
+                diskClasspath = Collections.unmodifiableList(new ArrayList<>(extractDependencyJarsToTempDir(nestedIndex.getJarPath())));
+            } catch (IOException e) {
+                throw new HaoException("解压依赖失败: " + e.getMessage(), e);
+            }
+        }
+        remoteDiskClasspath = new DiskClasspath(entries, diskClasspath);
+        return diskClasspath;
+    }
+
+    /**
+     * 使用池中的文件管理器执行一次 javac 编译。
+     *
+     * @param pool        文件管理器池
+     * @param nestedIndex fat jar 索引，不为 null 时类路径由嵌套 JAR 提供
+     * @param sources     待编译源码
+     * @param writer      用于输出编译信息的写入器，可为 null
+     * @param options     编译选项
+     * @param metrics     编译指标
+     * @return 类全限定名到字节码的映射
+     * @throws HaoException 编译失败时抛出，包含诊断信息
+     */
+    private static Map<String, byte[]> runCompileTask(JavaFileManagerPool pool, NestedJarIndex nestedIndex, Map<String, String> sources,
+                                                      Writer writer, List<String> options, CompileMetrics metrics) {
+        StandardJavaFileManager standardFileManager = pool.borrow();
+        // 构建内存文件管理器：使用 InMemoryJavaFileManager 管理源码与字节码的内存存储
+        InMemoryJavaFileManager fileManager = nestedIndex == null
+                ? new InMemoryJavaFileManager(standardFileManager, pool.getClassPathIndex())
+                : new InMemoryJavaFileManager(new NestedJarJavaFileManager(standardFileManager, nestedIndex));
+        List<JavaFileObject> compilationUnits = new ArrayList<>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            compilationUnits.add(new JavaSourceFromString(source.getKey(), source.getValue()));
+        }
         // 执行编译任务
         // 构造编译任务：将输入的 Java 源码字符串封装为 JavaFileObject 并设置编译参数
         // 创建一个诊断收集器，用于收集编译过程中的信息
         DiagnosticCollector<? super JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
-        // 创建一个选项列表，用于配置编译任务的参数
-        List<String> options = new ArrayList<>();
-        if (classpath.isEmpty()) {
-            classpath.addAll(loadClassPath());
-        }
-        if (CollUtil.isNotEmpty(classpath)) {
-            options.add("-cp");
-            options.add(StrUtil.join(File.pathSeparator, classpath));
-            /*
-             * 补充了编译时启用 lombok或 其他注解生成库 的内容。java 8 需要系统库添加jdk环境的 tools.jar,在cp中或者jre的lib里面添加都可以
-             * 大于java 8 的环境jdk 默认移除了tools.jar 并且jre中默认集成此环境,无需过多配置就可以使用 注解类生成库 功能。
-             *
-             * -processorpath 指定注解处理器的类路径，用于处理注解类,但是实际测试中有无此配置并没有效果，是否启用注解生成还是看jdk版本和tools.jar.
-             * 这里保留了此配置, 但是基本可以忽略掉, 因为没有效果.
-             */
-            List<String> lombokJar = classpath.stream().filter(q -> q.contains("lombok")).collect(Collectors.toList());
-            if (CollUtil.isNotEmpty(lombokJar)) {
-                options.add("-processorpath");
-                options.add(StrUtil.join(File.pathSeparator, lombokJar));
-            }
-        }
         // 获取一个编译任务实例
-        // 此处省略了SYSTEM_COMPILER和fileManager的初始化过程
         JavaCompiler.CompilationTask task = SYSTEM_COMPILER.getTask(
                 writer, // Writer对象, 用于输出编译信息
                 fileManager, // 文件管理器，负责管理编译过程中的文件
                 diagnosticCollector, // 诊断收集器，收集编译信息
                 options, // 编译选项
-                null, // 不使用类路径入口 (Iterable)
+                null, // 不使用类路径入口(Iterable)
                 compilationUnits); // 编译单元集合，包含需要编译的Java源文件
+        if (compileMetricsSink != null) {
+            // 通过 javac 的 TaskListener 记录语法解析、语义分析与字节码生成各阶段的耗时
+            JavacPhaseListener.attach(task, metrics);
+        }
+        // 编译正常结束（无论成功与否）时文件管理器状态可信，归还到池中；编译过程抛出异常时直接丢弃
+        boolean reusable = false;
         // 尝试执行编译任务
         try {
+            boolean success = task.call();
+            reusable = true;
+            countDiagnostics(diagnosticCollector, metrics);
             // 如果编译失败
-            if (!task.call()) {
+            if (!success) {
                 // 抛出异常，包含编译失败的详细信息
                 // todo 这里可以做一些处理,比如编译失败，如果是jar环境，可以清理掉temp-classpath 重新解压加载，
                 //  但是问题是，如果代码就是引用了找不到的库，这里重复加载，就会消耗系统性能， 磁盘io
                 throw new HaoException("编译失败: " + getDiagnosticMessages(diagnosticCollector));
             }
         } finally {
-            // 确保文件管理器被正确关闭，释放资源
-            IoUtil.close(fileManager);
+            // 共享的标准文件管理器不关闭，而是归还给池
+            if (reusable) {
+                pool.release(standardFileManager);
+            } else {
+                pool.discard(standardFileManager);
+            }
         }
+        Map<String, byte[]> classBytes = new LinkedHashMap<>();
+        for (Map.Entry<String, InMemoryJavaFileManager.ByteCodeJavaFileObject> entry : fileManager.getCompiledClasses().entrySet()) {
+            classBytes.put(entry.getKey(), entry.getValue().getByteCode());
+        }
+        return classBytes;
+    }
+
+    /**
+     * 创建新的 {@link InMemoryClassLoader} 并注册给定的字节码。
+     *
+     * @param parentClassLoader 父类加载器，为 null 时使用当前线程的上下文类加载器
+     * @param classBytes        类全限定名到字节码的映射
+     * @return 持有全部字节码的类加载器
+     */
+    private static InMemoryClassLoader defineClasses(ClassLoader parentClassLoader, Map<String, byte[]> classBytes) {
         // 创建类加载器并加载编译后的类
         // 如果未指定父类加载器，则使用当前线程的上下文类加载器
         if (parentClassLoader == null) {
@@ -267,107 +767,368 @@ public class CompilerUtil {
         InMemoryClassLoader classLoader = new InMemoryClassLoader(parentClassLoader);
 
         // 遍历已编译的类集合，将每个类的字节码添加到类加载器中
-        for (Map.Entry<String, InMemoryJavaFileManager.ByteCodeJavaFileObject> entry : fileManager.getCompiledClasses().entrySet()) {
-            classLoader.addClassBytes(entry.getKey(), entry.getValue().getByteCode());
+        for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+            classLoader.addClassBytes(entry.getKey(), entry.getValue());
         }
+        classRegistry.registerLoader(classLoader);
+        return classLoader;
+    }
 
-        // 使用自定义类加载器加载指定名称的类
-        Class<?> aClass = classLoader.loadClass(className);
+    /**
+     * 构建编译选项，包括类路径（-cp）与注解处理器路径（-processorpath）。
+     * 首次调用时会通过 {@link #loadClassPath()} 初始化类路径快照。
+     *
+     * @param includeClasspath     是否包含 -cp 选项，使用 {@link JavaFileManagerPool} 时类路径已设置在文件管理器上
+     * @param annotationProcessing 是否启用注解处理，关闭时加入 {@code -proc:none}，javac 不再到类路径中查找注解处理器
+     * @param nestedIndex          调用方持有引用的 fat jar 索引，非 fat jar 直读模式时为 null
+     * @return 编译选项列表
+     */
+    private static List<String> buildCompileOptions(boolean includeClasspath, boolean annotationProcessing, NestedJarIndex nestedIndex) {
+        List<String> options = new ArrayList<>();
+        List<String> entries = ensureClassPath();
+        if (!annotationProcessing) {
+            options.add("-proc:none");
+        }
+        if (CollUtil.isNotEmpty(entries)) {
+            if (includeClasspath) {
+                options.add("-cp");
+                options.add(StrUtil.join(File.pathSeparator, entries));
+            }
+            /*
+             * 补充了编译时启用 lombok或 其他注解生成库 的内容。java 8 需要系统库添加jdk环境的 tools.jar,在cp中或者jre的lib里面添加都可以
+             * 大于java 8 的环境jdk 默认移除了tools.jar 并且jre中默认集成此环境,无需过多配置就可以使用 注解类生成库 功能。
+             *
+             * -processorpath 指定注解处理器的类路径，用于处理注解类,但是实际测试中有无此配置并没有效果，是否启用注解生成还是看jdk版本和tools.jar.
+             * 这里保留了此配置, 但是基本可以忽略掉, 因为没有效果.
+             */
+            List<String> lombokJar = nestedIndex == null
+                    ? entries.stream().filter(q -> q.contains("lombok")).collect(Collectors.toList())
+                    : getNestedProcessorPath(nestedIndex, annotationProcessing);
+            if (annotationProcessing && CollUtil.isNotEmpty(lombokJar)) {
+                options.add("-processorpath");
+                options.add(StrUtil.join(File.pathSeparator, lombokJar));
+            }
+        }
+        return options;
+    }
 
-        // 将加载的类缓存起来，以便后续使用
-        classCache.put(className, aClass);
+    /**
+     * fat jar 直读模式下注解处理器的路径：嵌套 JAR 中的类无法被注解处理器的类加载器加载，
+     * 这里把声明了注解处理器的依赖单独解压，解压失败时不启用注解处理器路径。
+     *
+     * @param nestedIndex          fat jar 索引
+     * @param annotationProcessing 是否启用注解处理，未启用时不解压
+     * @return 注解处理器 JAR 路径
+     */
+    private static List<String> getNestedProcessorPath(NestedJarIndex nestedIndex, boolean annotationProcessing) {
+        if (!annotationProcessing || nestedIndex.getProcessorLibs().isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return nestedIndex.extractProcessorPath(new File(tmpdir + File.separator + "tempCompilerDir", "processors"));
+        } catch (IOException e) {
+            logger.warn("解压注解处理器失败，本次编译不启用注解处理器: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
 
-        // 返回加载的类
-        return aClass;
+    /**
+     * 首次编译时初始化类路径快照。并行编译时多个线程可能同时进入，这里加锁保证只加载一次；
+     * 类路径在局部集合中加载完成后才发布，其他线程读到的快照总是完整的。
+     * 调用方已向 {@link #classpath} 写入条目时直接以这些条目作为快照。
+     *
+     * @return 不可变的类路径快照
+     */
+    private static List<String> ensureClassPath() {
+        List<String> snapshot = classpathSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (CLASSPATH_LOCK) {
+            snapshot = classpathSnapshot;
+            if (snapshot == null) {
+                synchronized (classpath) {
+                    classpathSeeded = !classpath.isEmpty();
+                    if (classpathSeeded) {
+                        snapshot = Collections.unmodifiableList(new ArrayList<>(classpath));
+                    }
+                }
+                if (!classpathSeeded) {
+                    snapshot = Collections.unmodifiableList(new ArrayList<>(loadClassPath()));
+                    synchronized (classpath) {
+                        classpath.addAll(snapshot);
+                    }
+                }
+                classpathSnapshot = snapshot;
+            }
+            return snapshot;
+        }
     }
 
-    public static InMemoryClassLoader compileAndLoadClass(String... javaCode) throws ClassNotFoundException {
-        return compileAndLoadClass(null, null, javaCode);
+    /**
+     * 丢弃类路径快照，下次编译时重新加载；调用方预先写入了 {@link #classpath} 时按该集合的当前内容重新建立快照。
+     * 类路径指纹与文件管理器池随快照一起重新计算。
+     */
+    public static void reloadClassPath() {
+        synchronized (CLASSPATH_LOCK) {
+            resetClassPath();
+        }
     }
 
-    public static InMemoryClassLoader compileAndLoadClass(ClassLoader parentClassLoader, String... javaCodes) throws ClassNotFoundException {
-        return compileAndLoadClass(parentClassLoader, null, javaCodes);
+    /**
+     * 在 {@link #CLASSPATH_LOCK} 内清空类路径快照，调用方写入的类路径保留
+     */
+    private static void resetClassPath() {
+        classpathSnapshot = null;
+        synchronized (classpath) {
+            if (!classpathSeeded) {
+                classpath.clear();
+            }
+        }
     }
 
-    public static InMemoryClassLoader compileAndLoadClass(ClassLoader parentClassLoader, Writer writer, String... javaCodes) throws ClassNotFoundException {
-        if (ArrayUtil.isEmpty(javaCodes)) {
-            throw new HaoException("javaCode 不能为空");
+    /**
+     * 获取编译使用的类路径，首次调用时加载。
+     *
+     * @return 不可变的类路径快照，fat jar 直读模式下只包含主 JAR 自身
+     */
+    public static List<String> getClassPath() {
+        return ensureClassPath();
+    }
+
+    /**
+     * 计算当前类路径的指纹。
+     * <p>
+     * 指纹由每个类路径条目的内容签名计算 SHA-256 得到，见 {@link ClasspathFingerprint}：
+     * 目录递归汇总其中每个文件的大小与修改时间，JAR 汇总其条目的 CRC，从 fat jar 解压的依赖直接使用解压清单中记录的 CRC。
+     * 依赖 JAR 被替换或 {@code target/classes} 中的类重新编译后指纹随之变化，从而使基于指纹的编译缓存自动失效。
+     * 每个类路径快照只在首次调用时同步计算一次；之后总是直接返回上一次的结果，超过复查间隔（见 {@link #setFingerprintRecheckMillis(long)}）
+     * 时在后台线程中重新计算，调用线程（包括命中缓存的编译）不会遍历类路径目录。因此类路径中的文件变化后，
+     * 最长约一个复查间隔加一次计算的耗时后缓存才失效；需要立即生效时调用 {@link #refreshClasspathFingerprint()}。
+     * </p>
+     *
+     * @return 十六进制形式的类路径指纹
+     */
+    public static String getClasspathFingerprint() {
+        List<String> entries = ensureClassPath();
+        FingerprintSnapshot current = classpathFingerprint;
+        if (current == null || current.classpath != entries) {
+            return computeClasspathFingerprint(entries);
         }
-        // 获取系统自带的 Java 编译器
-        if (SYSTEM_COMPILER == null) {
-            throw new RuntimeException("无法获取 Java 编译器，请确保使用的是 JDK 而不是 JRE");
+        long interval = fingerprintRecheckMillis;
+        if (interval > 0 && System.currentTimeMillis() - current.checkedAt >= interval
+                && fingerprintRechecking.compareAndSet(false, true)) {
+            try {
+                FINGERPRINT_EXECUTOR.execute(() -> {
+                    try {
+                        computeClasspathFingerprint(entries);
+                    } catch (RuntimeException e) {
+                        logger.warn("计算类路径指纹失败: {}", e.getMessage());
+                    } finally {
+                        fingerprintRechecking.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                fingerprintRechecking.set(false);
+                throw e;
+            }
         }
+        return current.fingerprint;
+    }
 
-        // 构建内存文件管理器：使用 InMemoryJavaFileManager 管理源码与字节码的内存存储
-        InMemoryJavaFileManager fileManager = new InMemoryJavaFileManager(SYSTEM_COMPILER.getStandardFileManager(null, null, null));
-        List<JavaFileObject> compilationUnits = new ArrayList<>();
-        for (String javaCode : javaCodes) {
-            String className = getClassNameByCode(javaCode);
-            compilationUnits.add(new JavaSourceFromString(className, javaCode));
+    /**
+     * 立即在当前线程重新计算类路径指纹，例如替换了类路径中的文件后需要马上使编译缓存失效时调用。
+     *
+     * @return 十六进制形式的类路径指纹
+     */
+    public static String refreshClasspathFingerprint() {
+        return computeClasspathFingerprint(ensureClassPath());
+    }
+
+    /**
+     * 计算指定类路径快照的指纹并发布，类路径已经重新加载时不覆盖新快照的指纹
+     */
+    private static String computeClasspathFingerprint(List<String> entries) {
+        long now = System.currentTimeMillis();
+        String fingerprint = ClasspathFingerprint.compute(entries, extractedSignatures);
+        if (classpathSnapshot == entries) {
+            classpathFingerprint = new FingerprintSnapshot(entries, fingerprint, now);
         }
-        // 执行编译任务
-        // 构造编译任务：将输入的 Java 源码字符串封装为 JavaFileObject 并设置编译参数
-        // 创建一个诊断收集器，用于收集编译过程中的信息
-        DiagnosticCollector<? super JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
-        // 创建一个选项列表，用于配置编译任务的参数
-        List<String> options = new ArrayList<>();
-        if (classpath.isEmpty()) {
-            classpath.addAll(loadClassPath());
+        return fingerprint;
+    }
+
+    public static long getFingerprintRecheckMillis() {
+        return fingerprintRecheckMillis;
+    }
+
+    /**
+     * 设置类路径指纹的复查间隔。
+     *
+     * @param fingerprintRecheckMillis 复查间隔（毫秒），小于等于 0 时不再定期复查，只在 {@link #refreshClasspathFingerprint()}
+     *                                 或 {@link #reloadClassPath()} 后重新计算，适用于类路径在运行期间不会变化的部署
+     */
+    public static void setFingerprintRecheckMillis(long fingerprintRecheckMillis) {
+        CompilerUtil.fingerprintRecheckMillis = fingerprintRecheckMillis;
+    }
+
+    /**
+     * 获取与当前类路径一致的文件管理器池，类路径指纹变化时重建池并关闭旧池。
+     *
+     * @param fingerprint 当前类路径指纹
+     * @return 文件管理器池
+     */
+    private static JavaFileManagerPool getFileManagerPool(String fingerprint) {
+        JavaFileManagerPool pool = fileManagerPool;
+        if (pool != null && pool.getFingerprint().equals(fingerprint)) {
+            return pool;
         }
-        if (CollUtil.isNotEmpty(classpath)) {
-            options.add("-cp");
-            options.add(StrUtil.join(File.pathSeparator, classpath));
-            /*
-             * 补充了编译时启用 lombok或 其他注解生成库 的内容。java 8 需要系统库添加jdk环境的 tools.jar,在cp中或者jre的lib里面添加都可以
-             * 大于java 8 的环境jdk 默认移除了tools.jar 并且jre中默认集成此环境,无需过多配置就可以使用 注解类生成库 功能。
-             *
-             * -processorpath 指定注解处理器的类路径，用于处理注解类,但是实际测试中有无此配置并没有效果，是否启用注解生成还是看jdk版本和tools.jar.
-             * 这里保留了此配置, 但是基本可以忽略掉, 因为没有效果.
-             */
-            List<String> lombokJar = classpath.stream().filter(q -> q.contains("lombok")).collect(Collectors.toList());
-            if (CollUtil.isNotEmpty(lombokJar)) {
-                options.add("-processorpath");
-                options.add(StrUtil.join(File.pathSeparator, lombokJar));
+        synchronized (FILE_MANAGER_POOL_LOCK) {
+            pool = fileManagerPool;
+            if (pool == null || !pool.getFingerprint().equals(fingerprint)) {
+                JavaFileManagerPool oldPool = pool;
+                // fat jar 直读模式下类路径由嵌套 JAR 索引提供，池中的文件管理器无需设置类路径
+                Collection<String> poolClasspath = nestedJarIndex == null ? ensureClassPath() : Collections.<String>emptyList();
+                pool = new JavaFileManagerPool(SYSTEM_COMPILER, poolClasspath, fingerprint, JavaFileManagerPool.DEFAULT_MAX_IDLE);
+                fileManagerPool = pool;
+                if (oldPool != null) {
+                    oldPool.close();
+                }
+                prunedFileManagerPools.values().forEach(JavaFileManagerPool::close);
+                prunedFileManagerPools.clear();
+                failedPrunedClasspaths.clear();
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * 根据源码引用的包计算裁剪后的类路径。
+     *
+     * @param pool               完整类路径的文件管理器池
+     * @param referencedPackages 源码引用的包
+     * @return 裁剪后的类路径，无法裁剪（没有索引、需要全部条目或该裁剪结果曾经编译失败）时返回 null
+     */
+    private static List<String> getPrunedClasspath(JavaFileManagerPool pool, Set<String> referencedPackages) {
+        ClassPathIndex index = pool.getClassPathIndex();
+        if (index == null) {
+            return null;
+        }
+        Set<String> required = new HashSet<>();
+        for (String packageName : referencedPackages) {
+            required.addAll(index.getEntries(packageName));
+        }
+        // 保持完整类路径中的顺序，同名类的查找结果与完整类路径一致
+        List<String> prunedClasspath = index.getClasspath().stream().filter(required::contains).collect(Collectors.toList());
+        if (prunedClasspath.size() >= index.getClasspath().size() || failedPrunedClasspaths.contains(prunedClasspath)) {
+            return null;
+        }
+        return prunedClasspath;
+    }
+
+    /**
+     * 记录编译失败的裁剪类路径，并关闭其文件管理器池
+     *
+     * @param pool            完整类路径的文件管理器池
+     * @param prunedClasspath 裁剪后的类路径
+     */
+    private static void rememberFailedPrunedClasspath(JavaFileManagerPool pool, List<String> prunedClasspath) {
+        synchronized (FILE_MANAGER_POOL_LOCK) {
+            if (fileManagerPool != pool) {
+                return;
+            }
+            if (failedPrunedClasspaths.size() >= MAX_FAILED_PRUNED_CLASSPATHS) {
+                failedPrunedClasspaths.clear();
+            }
+            failedPrunedClasspaths.add(prunedClasspath);
+            JavaFileManagerPool prunedPool = prunedFileManagerPools.remove(prunedClasspath);
+            if (prunedPool != null) {
+                prunedPool.close();
             }
         }
-        // 获取一个编译任务实例
-        // 此处省略了SYSTEM_COMPILER和fileManager的初始化过程
-        JavaCompiler.CompilationTask task = SYSTEM_COMPILER.getTask(
-                writer, // Writer对象, 用于输出编译信息
-                fileManager, // 文件管理器，负责管理编译过程中的文件
-                diagnosticCollector, // 诊断收集器，收集编译信息
-                options, // 编译选项
-                null, // 不使用类路径入口(Iterable)
-                compilationUnits); // 编译单元集合，包含需要编译的Java源文件
-        // 尝试执行编译任务
-        try {
-            // 如果编译失败
-            if (!task.call()) {
-                // 抛出异常，包含编译失败的详细信息
-                // todo 这里可以做一些处理,比如编译失败，如果是jar环境，可以清理掉temp-classpath 重新解压加载，
-                //  但是问题是，如果代码就是引用了找不到的库，这里重复加载，就会消耗系统性能， 磁盘io
-                throw new HaoException("编译失败: " + getDiagnosticMessages(diagnosticCollector));
+    }
+
+    /**
+     * 获取裁剪后类路径对应的文件管理器池。
+     *
+     * @param pool            完整类路径的文件管理器池
+     * @param prunedClasspath 裁剪后的类路径
+     * @return 裁剪后的文件管理器池，完整类路径已经变化时返回 null
+     */
+    private static JavaFileManagerPool getPrunedFileManagerPool(JavaFileManagerPool pool, List<String> prunedClasspath) {
+        ClassPathIndex index = pool.getClassPathIndex();
+        synchronized (FILE_MANAGER_POOL_LOCK) {
+            if (fileManagerPool != pool) {
+                // 类路径已经变化，本次直接使用完整类路径
+                return null;
             }
-        } finally {
-            // 确保文件管理器被正确关闭，释放资源
-            IoUtil.close(fileManager);
+            JavaFileManagerPool prunedPool = prunedFileManagerPools.get(prunedClasspath);
+            if (prunedPool == null) {
+                prunedPool = new JavaFileManagerPool(SYSTEM_COMPILER, prunedClasspath, pool.getFingerprint(), JavaFileManagerPool.DEFAULT_MAX_IDLE, index);
+                prunedFileManagerPools.put(prunedClasspath, prunedPool);
+            }
+            return prunedPool;
         }
-        // 创建类加载器并加载编译后的类
-        // 如果未指定父类加载器，则使用当前线程的上下文类加载器
-        if (parentClassLoader == null) {
-            parentClassLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    /**
+     * 预热编译环境：加载类路径（jar 环境下读取或解压依赖）、计算类路径指纹并创建文件管理器池，
+     * 使首次编译不再承担这些一次性开销。可在应用启动时于后台线程调用。
+     */
+    public static void warmUp() {
+        if (SYSTEM_COMPILER == null) {
+            return;
         }
+        ensureClassPath();
+        getFileManagerPool(getClasspathFingerprint());
+    }
 
-        // 创建自定义的类加载器实例，用于加载内存中的字节码
-        InMemoryClassLoader classLoader = new InMemoryClassLoader(parentClassLoader);
+    /**
+     * 获取当前的文件管理器池，可用于查看池中空闲与已创建的文件管理器数量。
+     *
+     * @return 文件管理器池，尚未编译过任何源码时返回 null
+     */
+    public static JavaFileManagerPool getFileManagerPool() {
+        return fileManagerPool;
+    }
 
-        // 遍历已编译的类集合，将每个类的字节码添加到类加载器中
-        for (Map.Entry<String, InMemoryJavaFileManager.ByteCodeJavaFileObject> entry : fileManager.getCompiledClasses().entrySet()) {
-            classLoader.addClassBytes(entry.getKey(), entry.getValue().getByteCode());
+    /**
+     * 获取编译结果缓存，可用于查看命中率或临时关闭缓存。
+     *
+     * @return 编译结果缓存
+     */
+    public static CompiledClassCache getCompiledClassCache() {
+        return compiledClassCache;
+    }
+
+    /**
+     * 替换编译结果缓存，例如需要调整最大条目数时。
+     *
+     * @param cache 新的编译结果缓存，不能为 null
+     */
+    public static void setCompiledClassCache(CompiledClassCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache 不能为 null");
         }
-        classCache.putAll(classLoader.getClasses());
-        // 返回加载的类
-        return classLoader;
+        compiledClassCache = cache;
+    }
+
+    /**
+     * 获取持久化编译结果存储。
+     *
+     * @return 持久化存储，未启用时返回 null
+     */
+    public static PersistentClassStore getPersistentClassStore() {
+        return persistentClassStore;
+    }
+
+    /**
+     * 启用持久化编译结果存储，编译前会在内存缓存之后查询该目录，编译后写入该目录。
+     * 存储记录了类路径指纹，依赖发生变化后会自动清空。
+     *
+     * @param storeDir 存储目录，为空时关闭持久化存储
+     */
+    public static void setPersistentClassStore(String storeDir) {
+        persistentClassStore = StrUtil.isEmpty(storeDir) ? null : new PersistentClassStore(storeDir);
     }
 
     public static void compileToLocalFile(String tempDirName, Writer writer, String... javaCodes) throws IOException {
@@ -389,39 +1150,24 @@ public class CompilerUtil {
         // 创建一个诊断收集器，用于收集编译过程中的信息
         DiagnosticCollector<? super JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
         // 创建一个选项列表，用于配置编译任务的参数
-        List<String> options = new ArrayList<>();
-        if (classpath.isEmpty()) {
-            classpath.addAll(loadClassPath());
-        }
-        if (CollUtil.isNotEmpty(classpath)) {
-            options.add("-cp");
-            options.add(StrUtil.join(File.pathSeparator, classpath));
-            /*
-             * 补充了编译时启用 lombok或 其他注解生成库 的内容。java 8 需要系统库添加jdk环境的 tools.jar,在cp中或者jre的lib里面添加都可以
-             * 大于java 8 的环境jdk 默认移除了tools.jar 并且jre中默认集成此环境,无需过多配置就可以使用 注解类生成库 功能。
-             *
-             * -processorpath 指定注解处理器的类路径，用于处理注解类,但是实际测试中有无此配置并没有效果，是否启用注解生成还是看jdk版本和tools.jar.
-             * 这里保留了此配置, 但是基本可以忽略掉, 因为没有效果.
-             */
-            List<String> lombokJar = classpath.stream().filter(q -> q.contains("lombok")).collect(Collectors.toList());
-            if (CollUtil.isNotEmpty(lombokJar)) {
-                options.add("-processorpath");
-                options.add(StrUtil.join(File.pathSeparator, lombokJar));
-            }
-        }
-        options.add("-d");
-        options.add(outputDir.getAbsolutePath());
-        // 获取一个编译任务实例
-        // 此处省略了SYSTEM_COMPILER和fileManager的初始化过程
-        JavaCompiler.CompilationTask task = SYSTEM_COMPILER.getTask(
-                writer, // Writer对象, 用于输出编译信息
-                null, // 文件管理器，负责管理编译过程中的文件
-                diagnosticCollector, // 诊断收集器，收集编译信息
-                options, // 编译选项
-                null, // 不使用类路径入口(Iterable)
-                compilationUnits); // 编译单元集合，包含需要编译的Java源文件
+        // fat jar 直读模式下需要由 NestedJarJavaFileManager 提供依赖，其余情况使用编译器默认的文件管理器
+        NestedJarIndex nestedIndex = acquireNestedJarIndex();
+        JavaFileManager fileManager = null;
         // 尝试执行编译任务
         try {
+            List<String> options = buildCompileOptions(true, true, nestedIndex);
+            options.add("-d");
+            options.add(outputDir.getAbsolutePath());
+            fileManager = nestedIndex == null ? null
+                    : new NestedJarJavaFileManager(SYSTEM_COMPILER.getStandardFileManager(null, null, null), nestedIndex);
+            // 获取一个编译任务实例
+            JavaCompiler.CompilationTask task = SYSTEM_COMPILER.getTask(
+                    writer, // Writer对象, 用于输出编译信息
+                    fileManager, // 文件管理器，负责管理编译过程中的文件
+                    diagnosticCollector, // 诊断收集器，收集编译信息
+                    options, // 编译选项
+                    null, // 不使用类路径入口(Iterable)
+                    compilationUnits); // 编译单元集合，包含需要编译的Java源文件
             // 如果编译失败
             if (!task.call()) {
                 // 抛出异常，包含编译失败的详细信息
@@ -431,26 +1177,176 @@ public class CompilerUtil {
             }
         } finally {
             // 确保文件管理器被正确关闭，释放资源
-            // IoUtil.close(fileManager);
+            IoUtil.close(fileManager);
+            releaseNestedJarIndex(nestedIndex);
+        }
+    }
+
+    /**
+     * 获取当前 fat jar 索引并持有一个引用，使用完毕后必须调用 {@link #releaseNestedJarIndex(NestedJarIndex)}。
+     * 索引总是先被替换再被关闭，引用失败说明读到的是已被替换的旧索引，重新读取即可。
+     *
+     * @return fat jar 索引，非 fat jar 直读模式时为 null
+     */
+    private static NestedJarIndex acquireNestedJarIndex() {
+        for (; ; ) {
+            NestedJarIndex index = nestedJarIndex;
+            if (index == null || index.retain()) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * 释放 {@link #acquireNestedJarIndex()} 持有的引用
+     *
+     * @param index fat jar 索引，可以为 null
+     */
+    private static void releaseNestedJarIndex(NestedJarIndex index) {
+        if (index != null) {
+            index.release();
+        }
+    }
+
+
+    /**
+     * 获取动态类注册表，可用于查看存活的类加载器数量、字节码大小等元空间相关统计。
+     *
+     * @return 动态类注册表
+     */
+    public static DynamicClassRegistry getClassRegistry() {
+        return classRegistry;
+    }
+
+    /**
+     * 从注册表中卸载指定的动态类，调用方不再持有该类及其实例后，类与其类加载器即可被回收。
+     *
+     * @param className 完整类名（含包路径）
+     * @return 存在并被移除时返回 true
+     */
+    public static boolean unloadClass(String className) {
+        return classRegistry.unload(className);
+    }
+
+    /**
+     * 获取独立编译进程池。
+     *
+     * @return 独立编译进程池，未启用时返回 null
+     */
+    public static RemoteCompilerPool getRemoteCompilerPool() {
+        return remoteCompilerPool;
+    }
+
+    /**
+     * 启用或关闭独立编译进程。启用后缓存未命中的编译在常驻的子进程中执行，只把字节码传回当前进程定义，
+     * 避免大型编译在当前进程中触发 Full GC。替换或关闭时原来的进程池会被关闭。
+     * <p>
+     * 子进程只能读取磁盘上的类路径：以 fat jar 直读模式（{@link FatJarMode#NESTED}）运行时，
+     * 启用进程池时会把 {@code BOOT-INF/lib} 下的依赖解压到临时目录，与解压模式使用相同的目录与增量清单。
+     * </p>
+     *
+     * @param pool 独立编译进程池，为 null 时关闭，恢复为进程内编译
+     */
+    public static void setRemoteCompilerPool(RemoteCompilerPool pool) {
+        if (pool != null && SYSTEM_COMPILER != null) {
+            // 启用时一次性准备好子进程使用的磁盘类路径，编译时不再解压
+            getDiskClasspath();
         }
+        RemoteCompilerPool oldPool = remoteCompilerPool;
+        remoteCompilerPool = pool;
+        if (oldPool != null && oldPool != pool) {
+            oldPool.close();
+        }
+    }
+
+    /**
+     * 获取因等待正在进行的相同编译而省去的编译次数。
+     *
+     * @return 合并的编译次数
+     */
+    public static long getCoalescedCompileCount() {
+        return coalescedCompileCount.sum();
     }
 
+    /**
+     * 获取编译指标接收器，默认为 {@link RollingCompileMetricsSink}。
+     *
+     * @return 编译指标接收器，未启用时返回 null
+     */
+    public static CompileMetricsSink getCompileMetricsSink() {
+        return compileMetricsSink;
+    }
+
+    /**
+     * 替换编译指标接收器，例如转发到外部监控系统。
+     *
+     * @param sink 编译指标接收器，为 null 时关闭编译指标（同时不再注册 javac 阶段监听）
+     */
+    public static void setCompileMetricsSink(CompileMetricsSink sink) {
+        compileMetricsSink = sink;
+    }
 
     /**
-     * 根据指定的类名从缓存中获取对应的 Class 对象，并通过反射创建其实例。
+     * 根据指定的类名从注册表中获取对应的 Class 对象，并通过反射创建其实例。
      *
      * @param className 完整类名（含包路径）
      * @param params    构造函数所需的参数列表，用于匹配相应的构造方法
      * @return 返回创建的类实例
      */
     public static Object createInstance(String className, Object... params) {
-        Class<?> clazz = classCache.get(className);
+        Class<?> clazz = classRegistry.get(className);
         if (clazz == null) {
             throw new IllegalArgumentException("Class not found: " + className);
         }
         return ReflectUtil.newInstance(clazz, params);
     }
 
+    /**
+     * 编译实现了指定接口的源码，返回强类型的实例工厂。
+     * <p>
+     * 与 {@link #createInstance(String, Object...)} 每次通过反射查找构造函数不同，
+     * 工厂在创建时解析一次构造函数的 {@link java.lang.invoke.MethodHandle}，之后创建实例与调用接口方法都没有反射开销，
+     * 适合在规则计算等热点路径上反复使用。源码中的类必须是公共的、带公共无参构造函数。
+     * </p>
+     *
+     * @param javaCode Java 源码
+     * @param type     目标接口类型，编译时的父类加载器必须能够加载该类型
+     * @param <T>      目标接口类型
+     * @return 强类型的实例工厂
+     * @throws ClassNotFoundException 如果类编译失败或加载失败
+     */
+    public static <T> TypedClassFactory<T> compileFactory(String javaCode, Class<T> type) throws ClassNotFoundException {
+        return compileFactory(javaCode, type, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * 编译实现了指定接口的源码，返回强类型的实例工厂。
+     *
+     * @param javaCode          Java 源码
+     * @param type              目标接口类型
+     * @param parentClassLoader 父类加载器，必须能够加载目标接口类型
+     * @param <T>               目标接口类型
+     * @return 强类型的实例工厂
+     * @throws ClassNotFoundException 如果类编译失败或加载失败
+     */
+    public static <T> TypedClassFactory<T> compileFactory(String javaCode, Class<T> type, ClassLoader parentClassLoader) throws ClassNotFoundException {
+        Class<?> clazz = compileAndLoadClass(javaCode, parentClassLoader);
+        return new TypedClassFactory<>(type, clazz);
+    }
+
+    /**
+     * 编译实现了指定接口的源码，并以接口类型返回一个实例。
+     *
+     * @param javaCode Java 源码
+     * @param type     目标接口类型
+     * @param <T>      目标接口类型
+     * @return 目标接口类型的实例
+     * @throws ClassNotFoundException 如果类编译失败或加载失败
+     */
+    public static <T> T compileInstance(String javaCode, Class<T> type) throws ClassNotFoundException {
+        return compileFactory(javaCode, type).get();
+    }
+
 
     /**
      * 将编译过程中收集到的诊断信息转换为可读的字符串形式。
@@ -463,6 +1359,22 @@ public class CompilerUtil {
         return diagnostics.stream().map(String::valueOf).collect(Collectors.joining(System.lineSeparator()));
     }
 
+    /**
+     * 统计编译过程中产生的错误与警告数量
+     */
+    private static void countDiagnostics(DiagnosticCollector<? super JavaFileObject> collector, CompileMetrics metrics) {
+        int errors = 0;
+        int warnings = 0;
+        for (Diagnostic<?> diagnostic : collector.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors++;
+            } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                warnings++;
+            }
+        }
+        metrics.setDiagnosticCounts(errors, warnings);
+    }
+
 
     /**
      * 获取当前应用运行时所需的类路径（classpath），用于动态编译时指定依赖。
@@ -483,6 +1395,14 @@ public class CompilerUtil {
         ApplicationHome home = new ApplicationHome(SpringRunUtil.startUpClass);
         String jarBaseFile = home.getSource().getPath();
         if (jarBaseFile.endsWith(".jar")) {
+            if (fatJarMode == FatJarMode.NESTED) {
+                try {
+                    return loadNestedJarClassPath(jarBaseFile);
+                } catch (Exception e) {
+                    // 读取嵌套 JAR 失败时回退到解压模式
+                    logger.warn("无法直接读取 fat jar 中的依赖，回退为解压模式: {}", e.getMessage());
+                }
+            }
             try {
                 return extractDependencyJarsToTempDir(jarBaseFile);
             } catch (Exception e) {
@@ -493,6 +1413,24 @@ public class CompilerUtil {
         }
     }
 
+    /**
+     * 为 fat jar 建立 {@link NestedJarIndex}，编译时直接从嵌套 JAR 中读取类文件，无需解压。
+     *
+     * @param jarBaseFile 当前应用主 JAR 文件的路径
+     * @return 仅包含主 JAR 自身的类路径集合，用于计算类路径指纹
+     * @throws IOException 如果主 JAR 无法读取
+     */
+    private static TreeSet<String> loadNestedJarClassPath(String jarBaseFile) throws IOException {
+        File jarFile = new File(URLDecoder.decode(jarBaseFile, "UTF-8"));
+        NestedJarIndex index = NestedJarIndex.build(jarFile.getAbsolutePath(), Thread.currentThread().getContextClassLoader());
+        NestedJarIndex oldIndex = nestedJarIndex;
+        nestedJarIndex = index;
+        IoUtil.close(oldIndex);
+        TreeSet<String> classpath = new TreeSet<>();
+        classpath.add(jarFile.getAbsolutePath());
+        return classpath;
+    }
+
     /**
      * 从指定的 JAR 包中提取依赖的外部 JAR 文件到临时目录，并构建类路径。
      *
@@ -500,16 +1438,17 @@ public class CompilerUtil {
      * 此方法主要用于在以 JAR 包方式运行时，将嵌套的依赖 JAR 提取到系统临时目录（如 tempCompilerDir），
      * 确保编译器可以正确加载这些依赖库。该方法是线程安全的（synchronized），避免并发执行导致资源冲突。
      * </p>
+     * <p>
+     * 提取是增量的：临时目录中维护一份清单（{@value #EXTRACT_MANIFEST_NAME}），记录每个依赖 JAR 在 fat jar 中的 CRC 与大小。
+     * 新的 JVM 启动时只重新提取发生变化或缺失的依赖，并删除 fat jar 中已不存在的依赖，未变化的依赖直接复用；
+     * 需要提取的依赖按 CPU 核数并行写出，先写入临时文件再移动到目标位置，避免中途失败留下不完整的 JAR。
+     * </p>
      *
      * @param jarBaseFile 当前应用主 JAR 文件的路径
      * @return 包含所有依赖 JAR 路径的有序集合（TreeSet），包含主 JAR 自身
      * @throws IOException 如果提取过程中发生 I/O 错误
      */
     public static synchronized TreeSet<String> extractDependencyJarsToTempDir(String jarBaseFile) throws IOException {
-        //创建或复用已存在的临时目录用于存放提取出的依赖 JAR 文件。
-        //如果是首次提取（jarFileIsExtract == false），则清空旧目录并重新创建；
-        //如果非首次提取且目录存在，则尝试复用已有文件以提升性能，避免重复 I/O 操作。
-        //该逻辑确保在多线程环境下仅解压一次，并通过 classpath 缓存加速后续调用。
         File tempDir = new File(tmpdir + File.separator + "tempCompilerDir");
 
         // 存储临时目录的绝对路径供外部访问
@@ -519,47 +1458,158 @@ public class CompilerUtil {
         TreeSet<String> classpath = new TreeSet<>();
 
         if (jarFileIsExtract) {
-            // 非首次提取：尝试复用已存在的依赖 JAR 文件
-            if (tempDir.exists() || tempDir.isDirectory()) {
-                File[] files = tempDir.listFiles();
+            // 当前 JVM 已提取过：直接复用已存在的依赖 JAR 文件
+            File[] files = tempDir.listFiles((dir, name) -> name.endsWith(".jar"));
+            if (ArrayUtil.isNotEmpty(files)) {
                 for (File file : files) {
                     if (file.isFile()) {
                         classpath.add(file.getAbsolutePath());
                     }
                 }
-                if (CollUtil.isNotEmpty(classpath)) {
-                    // 若已有可用依赖路径，直接返回缓存结果
-                    classpath.add(jarBaseFile);
-                    return classpath;
-                }
+                // 若已有可用依赖路径，直接返回缓存结果
+                classpath.add(jarBaseFile);
+                return classpath;
             }
         }
-        // 若目录为空或不存在，清理后重建目录
-        FileUtil.del(tempDir);
-        tempDir.mkdir();
+        FileUtil.mkdir(tempDir);
 
         // 获取当前 jar 文件路径
         File jarFile = new File(URLDecoder.decode(jarBaseFile, "UTF-8"));
+        Map<String, String> oldManifest = readExtractManifest(tempDir);
+        Map<String, String> newManifest = new TreeMap<>();
+        LongAdder extracted = new LongAdder();
 
         try (JarFile jar = new JarFile(jarFile)) {
+            List<JarEntry> libEntries = new ArrayList<>();
             Enumeration<JarEntry> entries = jar.entries();
             while (entries.hasMoreElements()) {
                 JarEntry entry = entries.nextElement();
-                if (entry.getName().startsWith("BOOT-INF/lib/") && entry.getName().endsWith(".jar")) {
-                    // 提取每个依赖 jar 到 tempDir
-                    File dest = new File(tempDir, entry.getName().replace("BOOT-INF/lib/", ""));
-                    try (InputStream is = jar.getInputStream(entry)) {
-                        Files.copy(is, dest.toPath());
-                    }
-                    classpath.add(dest.getAbsolutePath());
+                if (entry.getName().startsWith(NestedJarIndex.LIB_PREFIX) && entry.getName().endsWith(".jar")) {
+                    libEntries.add(entry);
+                    newManifest.put(libName(entry), entrySignature(entry));
                 }
             }
+            try {
+                // 各依赖之间互不影响，并行提取发生变化的依赖
+                libEntries.parallelStream().forEach(entry -> {
+                    String name = libName(entry);
+                    File dest = new File(tempDir, name);
+                    if (isExtractUpToDate(entry, dest, oldManifest.get(name))) {
+                        return;
+                    }
+                    try {
+                        extractEntry(jar, entry, dest);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    extracted.increment();
+                });
+            } catch (UncheckedIOException e) {
+                // 提取失败时清单保持原状，已成功写出的依赖在下次提取时按 CRC 重新校验
+                throw e.getCause();
+            }
+            for (JarEntry entry : libEntries) {
+                classpath.add(new File(tempDir, libName(entry)).getAbsolutePath());
+            }
         }
+
+        // 删除 fat jar 中已不存在的旧依赖，避免旧版本的类被编译器看到
+        File[] staleFiles = tempDir.listFiles((dir, name) -> name.endsWith(".jar") && !newManifest.containsKey(name));
+        if (staleFiles != null) {
+            for (File staleFile : staleFiles) {
+                FileUtil.del(staleFile);
+            }
+        }
+        writeExtractManifest(tempDir, newManifest);
+        Map<String, String> signatures = new HashMap<>();
+        newManifest.forEach((name, signature) -> signatures.put(new File(tempDir, name).getAbsolutePath(), "extracted:" + signature));
+        extractedSignatures = Collections.unmodifiableMap(signatures);
+        logger.debug("依赖 JAR 提取完成，共 {} 个，重新提取 {} 个，删除过期 {} 个",
+                newManifest.size(), extracted.sum(), staleFiles == null ? 0 : staleFiles.length);
+
         classpath.add(jarFile.getAbsolutePath());
         jarFileIsExtract = true;
         return classpath;
     }
 
+    /**
+     * 依赖 JAR 在临时目录中的文件名
+     */
+    private static String libName(JarEntry entry) {
+        return entry.getName().substring(NestedJarIndex.LIB_PREFIX.length());
+    }
+
+    /**
+     * 依赖 JAR 在清单中的签名：CRC 与解压后的大小
+     */
+    private static String entrySignature(JarEntry entry) {
+        return Long.toHexString(entry.getCrc()) + ":" + entry.getSize();
+    }
+
+    /**
+     * 判断临时目录中的依赖是否与 fat jar 中的一致。CRC 或大小未知时视为已变化。
+     */
+    private static boolean isExtractUpToDate(JarEntry entry, File dest, String oldSignature) {
+        if (entry.getCrc() == -1 || entry.getSize() == -1) {
+            return false;
+        }
+        return entrySignature(entry).equals(oldSignature) && dest.isFile() && dest.length() == entry.getSize();
+    }
+
+    /**
+     * 将依赖写入同目录下的临时文件，写完后再移动到目标位置
+     */
+    private static void extractEntry(JarFile jar, JarEntry entry, File dest) throws IOException {
+        Path target = dest.toPath();
+        Path temp = Files.createTempFile(target.getParent(), dest.getName(), ".tmp");
+        try {
+            try (InputStream is = jar.getInputStream(entry)) {
+                Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 读取提取清单，每行格式为 {@code 文件名\tCRC:大小}，清单不存在或损坏时返回空清单
+     */
+    private static Map<String, String> readExtractManifest(File tempDir) {
+        Map<String, String> manifest = new HashMap<>();
+        File file = new File(tempDir, EXTRACT_MANIFEST_NAME);
+        if (!file.isFile()) {
+            return manifest;
+        }
+        try {
+            for (String line : FileUtil.readUtf8Lines(file)) {
+                int index = line.indexOf('\t');
+                if (index > 0) {
+                    manifest.put(line.substring(0, index), line.substring(index + 1));
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("读取依赖提取清单失败，将重新提取全部依赖: {}", e.getMessage());
+            manifest.clear();
+        }
+        return manifest;
+    }
+
+    /**
+     * 写出提取清单，同样先写临时文件再移动，保证清单与已提取的文件一致
+     */
+    private static void writeExtractManifest(File tempDir, Map<String, String> manifest) throws IOException {
+        List<String> lines = new ArrayList<>(manifest.size());
+        manifest.forEach((name, signature) -> lines.add(name + "\t" + signature));
+        File temp = new File(tempDir, EXTRACT_MANIFEST_NAME + ".tmp");
+        FileUtil.writeUtf8Lines(lines, temp);
+        Files.move(temp.toPath(), new File(tempDir, EXTRACT_MANIFEST_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
     /**
      * 加载本地类路径，用于在非 JAR 包运行模式下获取所有可用的依赖路径。
      *
@@ -682,4 +1732,98 @@ public class CompilerUtil {
     public static String getTempDirName() {
         return tempDirName;
     }
-}
\ No newline at end of file
+
+    public static FatJarMode getFatJarMode() {
+        return fatJarMode;
+    }
+
+    /**
+     * 设置以 fat jar 方式运行时获取依赖的方式。模式发生变化时清空已加载的类路径，下次编译时按新模式重新加载。
+     * 正在进行的编译持有旧的 fat jar 索引的引用，旧索引在这些编译结束后才关闭。
+     *
+     * @param mode fat jar 依赖获取方式
+     */
+    public static void setFatJarMode(FatJarMode mode) {
+        if (mode == null || mode == fatJarMode) {
+            return;
+        }
+        synchronized (CLASSPATH_LOCK) {
+            fatJarMode = mode;
+            resetClassPath();
+            NestedJarIndex oldIndex = nestedJarIndex;
+            nestedJarIndex = null;
+            IoUtil.close(oldIndex);
+        }
+    }
+
+    /**
+     * 类路径快照及其对应的磁盘类路径
+     */
+    private static final class DiskClasspath {
+        private final List<String> classpath;
+        private final Collection<String> diskClasspath;
+
+        DiskClasspath(List<String> classpath, Collection<String> diskClasspath) {
+            this.classpath = classpath;
+            this.diskClasspath = diskClasspath;
+        }
+    }
+
+    /**
+     * 类路径指纹及其对应的类路径快照与计算时间
+     */
+    private static final class FingerprintSnapshot {
+        private final List<String> classpath;
+        private final String fingerprint;
+        private final long checkedAt;
+
+        FingerprintSnapshot(List<String> classpath, String fingerprint, long checkedAt) {
+            this.classpath = classpath;
+            this.fingerprint = fingerprint;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * 合并编译的 Key，父类加载器按引用比较
+     */
+    private static final class InFlightKey {
+        private final String className;
+        private final String javaCode;
+        private final ClassLoader parentClassLoader;
+        private final Writer writer;
+        private final Boolean annotationProcessing;
+        private final boolean classpathPruning;
+        private final int hash;
+
+        InFlightKey(String className, String javaCode, ClassLoader parentClassLoader, CompileOptions options) {
+            this.className = className;
+            this.javaCode = javaCode;
+            this.parentClassLoader = parentClassLoader;
+            this.writer = options.getWriter();
+            this.annotationProcessing = options.getAnnotationProcessing();
+            this.classpathPruning = options.isClasspathPruning();
+            this.hash = Objects.hash(className, javaCode, System.identityHashCode(parentClassLoader),
+                    System.identityHashCode(writer), annotationProcessing, classpathPruning);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof InFlightKey)) {
+                return false;
+            }
+            InFlightKey other = (InFlightKey) o;
+            return hash == other.hash && parentClassLoader == other.parentClassLoader && writer == other.writer
+                    && classpathPruning == other.classpathPruning && Objects.equals(annotationProcessing, other.annotationProcessing)
+                    && className.equals(other.className) && javaCode.equals(other.javaCode);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.hao.core.compiler;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 动态编译类的注册表，替代原先永久持有全部类的静态 Map。
+ * <p>
+ * 每个类名对应一个带版本号的条目，重复注册同名类时版本号递增，旧版本不再被注册表引用。
+ * 注册表只对最近使用的 {@code maxStrongEntries} 个类保持强引用，超出部分以及被替换的旧版本仅以弱引用持有，
+ * 调用方不再使用后，其 {@link InMemoryClassLoader} 及加载的类可以被垃圾回收，元空间随之释放。
+ * 通过 {@link #unload(String)} 可以显式移除某个类。
+ * </p>
+ * <p>
+ * 注册表同时以弱引用跟踪定义过的类加载器，用于统计仍存活的类加载器数量、类数量与其持有的字节码大小，
+ * 这些数据可以近似反映动态编译对元空间的占用。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class DynamicClassRegistry {
+
+    /**
+     * 默认强引用持有的最大类数量
+     */
+    public static final int DEFAULT_MAX_STRONG_ENTRIES = 1024;
+
+    /**
+     * 类名 -> 当前版本条目（弱引用）
+     */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * 最近使用的类（强引用），按访问顺序排列，超出上限时淘汰最久未使用的类
+     */
+    private final LinkedHashMap<String, Class<?>> strongEntries;
+
+    /**
+     * 定义过动态类的类加载器（弱引用）
+     */
+    private final Set<Reference<InMemoryClassLoader>> loaders = new HashSet<>();
+
+    /**
+     * 已被回收的类加载器引用
+     */
+    private final ReferenceQueue<InMemoryClassLoader> loaderQueue = new ReferenceQueue<>();
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private final int maxStrongEntries;
+
+    /**
+     * 使用默认上限创建注册表。
+     */
+    public DynamicClassRegistry() {
+        this(DEFAULT_MAX_STRONG_ENTRIES);
+    }
+
+    /**
+     * 创建注册表。
+     *
+     * @param maxStrongEntries 强引用持有的最大类数量
+     */
+    public DynamicClassRegistry(int maxStrongEntries) {
+        if (maxStrongEntries <= 0) {
+            throw new IllegalArgumentException("maxStrongEntries 必须大于 0");
+        }
+        this.maxStrongEntries = maxStrongEntries;
+        this.strongEntries = new LinkedHashMap<String, Class<?>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Class<?>> eldest) {
+                return size() > DynamicClassRegistry.this.maxStrongEntries;
+            }
+        };
+    }
+
+    /**
+     * 注册类加载器，用于统计存活的类加载器与字节码大小。
+     *
+     * @param classLoader 内存类加载器
+     */
+    public synchronized void registerLoader(InMemoryClassLoader classLoader) {
+        expungeLoaders();
+        loaders.add(new WeakReference<>(classLoader, loaderQueue));
+    }
+
+    /**
+     * 注册类，同名类已存在时替换为新版本。
+     *
+     * @param className 类的全限定名
+     * @param clazz     类对象
+     * @return 新版本号
+     */
+    public synchronized long register(String className, Class<?> clazz) {
+        long version = versionSequence.incrementAndGet();
+        entries.put(className, new Entry(clazz, version));
+        strongEntries.put(className, clazz);
+        return version;
+    }
+
+    /**
+     * 批量注册类。
+     *
+     * @param classes 类名与类对象的映射
+     */
+    public synchronized void registerAll(Map<String, Class<?>> classes) {
+        classes.forEach(this::register);
+    }
+
+    /**
+     * 获取类的当前版本。被淘汰出强引用区但尚未回收的类会重新提升为最近使用。
+     *
+     * @param className 类的全限定名
+     * @return 类对象，不存在或已被回收时返回 null
+     */
+    public synchronized Class<?> get(String className) {
+        Entry entry = entries.get(className);
+        if (entry == null) {
+            return null;
+        }
+        Class<?> clazz = entry.classRef.get();
+        if (clazz == null) {
+            entries.remove(className);
+            return null;
+        }
+        strongEntries.put(className, clazz);
+        return clazz;
+    }
+
+    /**
+     * 获取类的当前版本号。
+     *
+     * @param className 类的全限定名
+     * @return 版本号，不存在时返回 -1
+     */
+    public synchronized long getVersion(String className) {
+        Entry entry = entries.get(className);
+        return entry == null || entry.classRef.get() == null ? -1 : entry.version;
+    }
+
+    /**
+     * 显式卸载类，注册表不再持有该类，调用方释放引用后类与其类加载器即可被回收。
+     *
+     * @param className 类的全限定名
+     * @return 存在并被移除时返回 true
+     */
+    public synchronized boolean unload(String className) {
+        strongEntries.remove(className);
+        return entries.remove(className) != null;
+    }
+
+    /**
+     * 清空注册表。
+     */
+    public synchronized void clear() {
+        strongEntries.clear();
+        entries.clear();
+    }
+
+    /**
+     * 获取注册表中的类数量（包括仅被弱引用持有、尚未回收的类）。
+     *
+     * @return 类数量
+     */
+    public synchronized int size() {
+        entries.values().removeIf(entry -> entry.classRef.get() == null);
+        return entries.size();
+    }
+
+    /**
+     * 获取强引用持有的类数量。
+     *
+     * @return 强引用类数量
+     */
+    public synchronized int getStrongCount() {
+        return strongEntries.size();
+    }
+
+    public int getMaxStrongEntries() {
+        return maxStrongEntries;
+    }
+
+    /**
+     * 获取仍存活（未被回收）的动态类加载器数量。
+     *
+     * @return 存活的类加载器数量
+     */
+    public synchronized int getLiveLoaderCount() {
+        expungeLoaders();
+        int count = 0;
+        for (Reference<InMemoryClassLoader> ref : loaders) {
+            if (ref.get() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取存活的类加载器中持有的类数量。
+     *
+     * @return 类数量
+     */
+    public synchronized int getLiveClassCount() {
+        expungeLoaders();
+        int count = 0;
+        for (Reference<InMemoryClassLoader> ref : loaders) {
+            InMemoryClassLoader loader = ref.get();
+            if (loader != null) {
+                count += loader.classBytes.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取存活的类加载器中持有的字节码总大小。
+     *
+     * @return 字节数
+     */
+    public synchronized long getLiveByteCodeSize() {
+        expungeLoaders();
+        long size = 0;
+        for (Reference<InMemoryClassLoader> ref : loaders) {
+            InMemoryClassLoader loader = ref.get();
+            if (loader != null) {
+                size += loader.getByteCodeSize();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamicClassRegistry{classes=" + size() + ", strong=" + getStrongCount() + "/" + maxStrongEntries
+                + ", liveLoaders=" + getLiveLoaderCount() + ", liveClasses=" + getLiveClassCount()
+                + ", byteCodeSize=" + getLiveByteCodeSize() + "}";
+    }
+
+    /**
+     * 移除已被回收的类加载器引用
+     */
+    private void expungeLoaders() {
+        Reference<? extends InMemoryClassLoader> ref;
+        while ((ref = loaderQueue.poll()) != null) {
+            loaders.remove(ref);
+        }
+    }
+
+    /**
+     * 类的某个版本
+     */
+    private static class Entry {
+        private final WeakReference<Class<?>> classRef;
+        private final long version;
+
+        Entry(Class<?> clazz, long version) {
+            this.classRef = new WeakReference<>(clazz);
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package org.hao.core.compiler;
+
+import org.hao.core.exception.HaoException;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 支持热替换的动态类注册表。
+ * <p>
+ * 每个名称对应一个 {@link AtomicReference}，指向该名称当前生效的部署（编译出的实现类及其实例）。
+ * 调用方每次通过名称解析实现，读取只是一次 volatile 读，不加锁、不阻塞。
+ * {@link #deploy(String, String)} 在 {@link CompilerService} 的线程中编译新版本，编译完成后原子地替换引用，
+ * 调用方下一次解析即得到新版本；编译失败时旧版本继续生效。
+ * </p>
+ * <p>
+ * 被替换的旧版本不再被注册表强引用：通过 {@link #call(String, Function)} 执行的调用会登记进入与退出，
+ * 旧版本上的调用全部结束（排空）后，只要调用方没有继续持有旧实例，其类与类加载器即可被回收。
+ * 注册表以弱引用跟踪已退役的版本，用于观察排空与回收情况。
+ * </p>
+ *
+ * <pre>
+ * HotSwapRegistry&lt;IntUnaryOperator&gt; registry = new HotSwapRegistry&lt;&gt;(IntUnaryOperator.class, compilerService);
+ * registry.deploy("double", javaCode).join();
+ * int result = registry.call("double", op -&gt; op.applyAsInt(21));
+ * </pre>
+ *
+ * @param <T> 实现类需要实现的接口类型
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class HotSwapRegistry<T> {
+
+    private final Class<T> type;
+
+    private final CompilerService compilerService;
+
+    private final ConcurrentHashMap<String, AtomicReference<Deployment<T>>> slots = new ConcurrentHashMap<>();
+
+    /**
+     * 部署版本号，按提交顺序递增，用于丢弃晚于新版本完成编译的旧提交
+     */
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    /**
+     * 已退役、尚未被回收的版本
+     */
+    private final List<WeakReference<Deployment<T>>> retired = new ArrayList<>();
+
+    /**
+     * 构造函数
+     *
+     * @param type            实现类需要实现的接口类型
+     * @param compilerService 在后台执行编译的编译服务
+     */
+    public HotSwapRegistry(Class<T> type, CompilerService compilerService) {
+        this.type = type;
+        this.compilerService = compilerService;
+    }
+
+    /**
+     * 在后台编译并部署新版本，立即返回。编译完成后原子地替换该名称当前的版本。
+     * <p>
+     * 同一名称并发部署时以后提交的为准：先提交的版本若晚于后提交的版本完成编译，不会再覆盖，
+     * 返回的部署 {@link Deployment#isActive()} 为 false。
+     * </p>
+     *
+     * @param name     名称
+     * @param javaCode 实现类源码，需要有公共无参构造函数并实现 {@code T}
+     * @return 完成时返回本次部署；编译或实例化失败时异常完成，当前版本保持不变
+     */
+    public CompletableFuture<Deployment<T>> deploy(String name, String javaCode) {
+        long version = versionSequence.incrementAndGet();
+        return compilerService.submitClass(javaCode)
+                .thenApply(clazz -> swap(name, new Deployment<>(name, version, new TypedClassFactory<>(type, clazz))));
+    }
+
+    /**
+     * 获取名称当前对应的实现实例。只有一次 volatile 读，不阻塞。
+     * <p>
+     * 通过该方法取得的实例不参与排空计数，调用方不应长期持有，否则旧版本无法被回收；需要排空语义时使用 {@link #call(String, Function)}。
+     * </p>
+     *
+     * @param name 名称
+     * @return 当前实例
+     * @throws HaoException 名称尚未部署时抛出
+     */
+    public T get(String name) {
+        return current(name).instance;
+    }
+
+    /**
+     * 在名称当前对应的实现上执行一次调用，调用期间登记为该版本的在途调用。
+     * 调用开始后即使发生替换，本次调用仍在旧版本上完成。
+     *
+     * @param name     名称
+     * @param function 对实现的调用
+     * @param <R>      返回值类型
+     * @return 调用结果
+     * @throws HaoException 名称尚未部署时抛出
+     */
+    public <R> R call(String name, Function<? super T, ? extends R> function) {
+        Deployment<T> deployment;
+        while (true) {
+            deployment = current(name);
+            deployment.inFlight.increment();
+            // 读取与登记之间版本可能已退役，此时排空检查可能已经看到计数为 0，改用新版本
+            if (deployment.active) {
+                break;
+            }
+            deployment.inFlight.decrement();
+        }
+        try {
+            return function.apply(deployment.instance);
+        } finally {
+            deployment.inFlight.decrement();
+        }
+    }
+
+    /**
+     * 获取名称当前生效的部署。
+     *
+     * @param name 名称
+     * @return 当前部署，名称尚未部署时返回 null
+     */
+    public Deployment<T> getDeployment(String name) {
+        AtomicReference<Deployment<T>> slot = slots.get(name);
+        return slot == null ? null : slot.get();
+    }
+
+    /**
+     * 移除名称，当前版本随之退役。
+     *
+     * @param name 名称
+     * @return 被移除的部署，名称不存在时返回 null
+     */
+    public Deployment<T> remove(String name) {
+        AtomicReference<Deployment<T>> slot = slots.remove(name);
+        Deployment<T> deployment = slot == null ? null : slot.get();
+        if (deployment != null) {
+            retire(deployment);
+        }
+        return deployment;
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(slots.keySet());
+    }
+
+    /**
+     * 获取已退役但尚未被回收的版本数量，持续增长说明有调用方长期持有旧实例。
+     *
+     * @return 存活的旧版本数量
+     */
+    public int getRetiredLiveCount() {
+        synchronized (retired) {
+            expungeRetired();
+            return retired.size();
+        }
+    }
+
+    /**
+     * 获取已退役但仍有在途调用的版本数量。
+     *
+     * @return 未排空的旧版本数量
+     */
+    public int getDrainingCount() {
+        int count = 0;
+        synchronized (retired) {
+            expungeRetired();
+            for (WeakReference<Deployment<T>> reference : retired) {
+                Deployment<T> deployment = reference.get();
+                if (deployment != null && !deployment.isDrained()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private Deployment<T> current(String name) {
+        AtomicReference<Deployment<T>> slot = slots.get(name);
+        Deployment<T> deployment = slot == null ? null : slot.get();
+        if (deployment == null) {
+            throw new HaoException("未部署: " + name);
+        }
+        return deployment;
+    }
+
+    private Deployment<T> swap(String name, Deployment<T> deployment) {
+        // 写路径在 compute 中完成，与 remove 互斥；读路径只读取槽位引用，不受影响
+        slots.compute(name, (key, slot) -> {
+            AtomicReference<Deployment<T>> target = slot == null ? new AtomicReference<>() : slot;
+            Deployment<T> current = target.get();
+            if (current != null && current.version > deployment.version) {
+                // 更新的版本已经生效，本次提交作废
+                deployment.active = false;
+                return target;
+            }
+            target.set(deployment);
+            if (current != null) {
+                retire(current);
+            }
+            return target;
+        });
+        return deployment;
+    }
+
+    private void retire(Deployment<T> deployment) {
+        deployment.active = false;
+        synchronized (retired) {
+            expungeRetired();
+            retired.add(new WeakReference<>(deployment));
+        }
+    }
+
+    private void expungeRetired() {
+        Iterator<WeakReference<Deployment<T>>> iterator = retired.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 某个名称的一个已部署版本
+     *
+     * @param <T> 接口类型
+     */
+    public static final class Deployment<T> {
+        private final String name;
+        private final long version;
+        private final TypedClassFactory<T> factory;
+        private final T instance;
+        private final long deployedAt = System.currentTimeMillis();
+        private final LongAdder inFlight = new LongAdder();
+        private volatile boolean active = true;
+
+        Deployment(String name, long version, TypedClassFactory<T> factory) {
+            this.name = name;
+            this.version = version;
+            this.factory = factory;
+            this.instance = factory.get();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Class<? extends T> getImplClass() {
+            return factory.getImplClass();
+        }
+
+        public T getInstance() {
+            return instance;
+        }
+
+        public long getDeployedAt() {
+            return deployedAt;
+        }
+
+        /**
+         * 是否为该名称当前生效的版本
+         */
+        public boolean isActive() {
+            return active;
+        }
+
+        /**
+         * 获取通过 {@link HotSwapRegistry#call(String, Function)} 进入、尚未返回的调用数
+         */
+        public long getInFlightCount() {
+            return inFlight.sum();
+        }
+
+        /**
+         * 已退役且没有在途调用
+         */
+        public boolean isDrained() {
+            return !active && inFlight.sum() == 0;
+        }
+
+        /**
+         * 等待旧版本上的在途调用全部结束。
+         *
+         * @param timeout 超时时间
+         * @param unit    时间单位
+         * @return 在超时前排空返回 true
+         * @throws InterruptedException 等待时被中断
+         */
+        public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isDrained()) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "Deployment{name=" + name + ", version=" + version + ", class=" + factory.getImplClass().getName()
+                    + ", active=" + active + ", inFlight=" + inFlight.sum() + '}';
+        }
+    }
+}
@@ -33,6 +33,19 @@ public class InMemoryClassLoader extends ClassLoader {
         classBytes.put(className, bytes);
     }
 
+    /**
+     * 获取该类加载器持有的字节码总大小
+     *
+     * @return 字节数
+     */
+    public long getByteCodeSize() {
+        long size = 0;
+        for (byte[] bytes : classBytes.values()) {
+            size += bytes.length;
+        }
+        return size;
+    }
+
     /**
      * 查找并加载指定名称的类
      *
@@ -44,6 +57,11 @@ public class InMemoryClassLoader extends ClassLoader {
     protected Class<?> findClass(String name) throws ClassNotFoundException {
         byte[] bytes = classBytes.get(name);
         if (bytes != null) {
+            // 加载其他类时可能已经连带定义了该类（如父类、内部类），重复定义会抛出 LinkageError
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded != null) {
+                return loaded;
+            }
             return defineClass(name, bytes, 0, bytes.length);
         }
         return super.findClass(name); // 委托给父类加载器
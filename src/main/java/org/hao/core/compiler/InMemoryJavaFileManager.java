@@ -16,12 +16,27 @@ public class InMemoryJavaFileManager extends ForwardingJavaFileManager<JavaFileM
      */
     private final Map<String, ByteCodeJavaFileObject> compiledClasses = new HashMap<>();
 
+    /**
+     * 类路径索引，为 null 时所有查找都委托给被包装的文件管理器
+     */
+    private final ClassPathIndex classPathIndex;
+
     /**
      * 构造函数，初始化内存Java文件管理器
      * @param fileManager 被包装的原始Java文件管理器
      */
     public InMemoryJavaFileManager(JavaFileManager fileManager) {
+        this(fileManager, null);
+    }
+
+    /**
+     * 构造函数，初始化带类路径索引的内存Java文件管理器
+     * @param fileManager 被包装的原始Java文件管理器
+     * @param classPathIndex 类路径索引，用于在内存中排除类路径里不存在的包
+     */
+    public InMemoryJavaFileManager(JavaFileManager fileManager, ClassPathIndex classPathIndex) {
         super(fileManager);
+        this.classPathIndex = classPathIndex;
     }
 
     /**
@@ -43,6 +58,11 @@ public class InMemoryJavaFileManager extends ForwardingJavaFileManager<JavaFileM
      */
     @Override
     public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+        // 类路径中不存在的包（如 java.lang 等平台类所在的包）直接返回空结果，无需逐个扫描 JAR
+        if (classPathIndex != null && !recurse && location == StandardLocation.CLASS_PATH
+                && !classPathIndex.containsPackage(packageName)) {
+            return Collections.emptyList();
+        }
         Iterable<JavaFileObject> list = super.list(location, packageName, kinds, recurse);
         return list;
     }
@@ -0,0 +1,205 @@
+package org.hao.core.compiler;
+
+import cn.hutool.core.io.IoUtil;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * {@link StandardJavaFileManager} 对象池。
+ * <p>
+ * 标准文件管理器会打开并索引类路径中的每个 JAR，创建成本很高，但本身不是线程安全的。
+ * 该池为每个并发编译任务借出一个独占的文件管理器，用完归还后供后续编译复用，
+ * 这样已打开的 JAR 与其目录结构在多次编译之间得以保留。
+ * 类路径在创建文件管理器时通过 {@link StandardLocation#CLASS_PATH} 一次性设置，编译选项中无需再传入 {@code -cp}。
+ * 同时持有一份 {@link ClassPathIndex}，供 {@link InMemoryJavaFileManager} 在内存中快速排除不存在的包。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class JavaFileManagerPool implements Closeable {
+
+    /**
+     * 默认最多保留的空闲文件管理器数量
+     */
+    public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+    private final JavaCompiler compiler;
+
+    /**
+     * 类路径条目对应的文件
+     */
+    private final List<File> classpathFiles;
+
+    /**
+     * 类路径指纹，用于判断池是否仍与当前类路径一致
+     */
+    private final String fingerprint;
+
+    /**
+     * 类路径索引
+     */
+    private final ClassPathIndex classPathIndex;
+
+    /**
+     * 类路径为空时是否仍显式设置为空（而不是使用编译器默认的 java.class.path）
+     */
+    private final boolean explicitClasspath;
+
+    /**
+     * 空闲的文件管理器
+     */
+    private final ConcurrentLinkedDeque<StandardJavaFileManager> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * 最多保留的空闲文件管理器数量，超出时归还的文件管理器会被直接关闭
+     */
+    private final int maxIdle;
+
+    /**
+     * 累计创建的文件管理器数量
+     */
+    private final AtomicInteger created = new AtomicInteger();
+
+    private volatile boolean closed = false;
+
+    /**
+     * 构造函数，创建文件管理器池并建立类路径索引。
+     *
+     * @param compiler    Java 编译器
+     * @param classpath   类路径条目
+     * @param fingerprint 类路径指纹
+     * @param maxIdle     最多保留的空闲文件管理器数量
+     */
+    public JavaFileManagerPool(JavaCompiler compiler, Collection<String> classpath, String fingerprint, int maxIdle) {
+        this(compiler, classpath, fingerprint, maxIdle,
+                // 类路径为空时编译器使用 java.class.path，此时索引无法反映真实类路径，不建立索引
+                classpath.isEmpty() ? null : ClassPathIndex.build(classpath), false);
+    }
+
+    /**
+     * 构造函数，使用已有的类路径索引创建只包含部分类路径条目的文件管理器池（例如按 import 裁剪后的类路径）。
+     * 类路径为空时同样显式设置为空，不会退回到 java.class.path。
+     *
+     * @param compiler       Java 编译器
+     * @param classpath      类路径条目
+     * @param fingerprint    类路径指纹
+     * @param maxIdle        最多保留的空闲文件管理器数量
+     * @param classPathIndex 完整类路径的索引
+     */
+    public JavaFileManagerPool(JavaCompiler compiler, Collection<String> classpath, String fingerprint, int maxIdle, ClassPathIndex classPathIndex) {
+        this(compiler, classpath, fingerprint, maxIdle, classPathIndex, true);
+    }
+
+    private JavaFileManagerPool(JavaCompiler compiler, Collection<String> classpath, String fingerprint, int maxIdle,
+                                ClassPathIndex classPathIndex, boolean explicitClasspath) {
+        this.compiler = compiler;
+        this.classpathFiles = classpath.stream().map(File::new).collect(Collectors.toList());
+        this.fingerprint = fingerprint;
+        this.maxIdle = Math.max(1, maxIdle);
+        this.classPathIndex = classPathIndex;
+        this.explicitClasspath = explicitClasspath;
+    }
+
+    /**
+     * 借出一个文件管理器，没有空闲实例时新建。
+     *
+     * @return 独占使用的标准文件管理器
+     */
+    public StandardJavaFileManager borrow() {
+        StandardJavaFileManager fileManager = idle.pollFirst();
+        if (fileManager != null) {
+            return fileManager;
+        }
+        fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            // 类路径为空时保持编译器默认行为（使用 java.class.path）
+            if (explicitClasspath || !classpathFiles.isEmpty()) {
+                fileManager.setLocation(StandardLocation.CLASS_PATH, classpathFiles);
+            }
+        } catch (IOException e) {
+            IoUtil.close(fileManager);
+            throw new UncheckedIOException(e);
+        }
+        created.incrementAndGet();
+        return fileManager;
+    }
+
+    /**
+     * 归还文件管理器。池已关闭或空闲数量已满时直接关闭该文件管理器。
+     *
+     * @param fileManager 之前借出的文件管理器
+     */
+    public void release(StandardJavaFileManager fileManager) {
+        if (fileManager == null) {
+            return;
+        }
+        if (closed || idle.size() >= maxIdle) {
+            IoUtil.close(fileManager);
+            return;
+        }
+        idle.offerFirst(fileManager);
+    }
+
+    /**
+     * 丢弃文件管理器（例如编译过程中出现异常、状态不可信时），不再放回池中。
+     *
+     * @param fileManager 之前借出的文件管理器
+     */
+    public void discard(StandardJavaFileManager fileManager) {
+        IoUtil.close(fileManager);
+    }
+
+    /**
+     * 获取类路径索引。
+     *
+     * @return 类路径索引，类路径为空时返回 null
+     */
+    public ClassPathIndex getClassPathIndex() {
+        return classPathIndex;
+    }
+
+    /**
+     * 获取池中文件管理器使用的类路径条目数量。
+     *
+     * @return 类路径条目数量
+     */
+    public int getClasspathSize() {
+        return classpathFiles.size();
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * 关闭池中全部空闲的文件管理器，正在使用的文件管理器归还时会被关闭。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        StandardJavaFileManager fileManager;
+        while ((fileManager = idle.pollFirst()) != null) {
+            IoUtil.close(fileManager);
+        }
+    }
+}
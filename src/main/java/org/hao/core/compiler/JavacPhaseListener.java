@@ -0,0 +1,141 @@
+package org.hao.core.compiler;
+
+import javax.tools.JavaCompiler;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 通过 javac 的 {@code com.sun.source.util.TaskListener} 记录编译各阶段的耗时。
+ * <p>
+ * JDK 8 中 {@code com.sun.source} 位于 tools.jar，不在编译类路径上，因此这里通过反射与动态代理注册监听器，
+ * 运行时编译器不是 javac（或不支持监听）时静默跳过，不影响编译本身。
+ * javac 对每个编译单元分别触发开始/结束事件，同一阶段在多个编译单元上交错执行时按最外层的开始与结束计时。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+class JavacPhaseListener implements InvocationHandler {
+
+    private static final Class<?> TASK_LISTENER_CLASS;
+    private static final Method ADD_TASK_LISTENER;
+    private static final Method GET_KIND;
+
+    static {
+        Class<?> listenerClass = null;
+        Method addTaskListener = null;
+        Method getKind = null;
+        try {
+            ClassLoader loader = CompilerUtil.SYSTEM_COMPILER == null ? null : CompilerUtil.SYSTEM_COMPILER.getClass().getClassLoader();
+            listenerClass = Class.forName("com.sun.source.util.TaskListener", false, loader);
+            Class<?> javacTaskClass = Class.forName("com.sun.source.util.JavacTask", false, loader);
+            Class<?> taskEventClass = Class.forName("com.sun.source.util.TaskEvent", false, loader);
+            addTaskListener = javacTaskClass.getMethod("addTaskListener", listenerClass);
+            getKind = taskEventClass.getMethod("getKind");
+        } catch (Exception | LinkageError e) {
+            // 非 javac 编译器，无法记录阶段耗时
+            listenerClass = null;
+        }
+        TASK_LISTENER_CLASS = listenerClass;
+        ADD_TASK_LISTENER = addTaskListener;
+        GET_KIND = getKind;
+    }
+
+    private final CompileMetrics metrics;
+
+    /**
+     * 各阶段当前未结束的事件数量
+     */
+    private final Map<CompileMetrics.Phase, Integer> depth = new EnumMap<>(CompileMetrics.Phase.class);
+
+    /**
+     * 各阶段最外层事件的开始时间
+     */
+    private final Map<CompileMetrics.Phase, Long> startNanos = new EnumMap<>(CompileMetrics.Phase.class);
+
+    private JavacPhaseListener(CompileMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 为编译任务注册阶段计时监听器。
+     *
+     * @param task    编译任务
+     * @param metrics 记录耗时的指标对象
+     * @return 注册成功返回 true
+     */
+    static boolean attach(JavaCompiler.CompilationTask task, CompileMetrics metrics) {
+        if (TASK_LISTENER_CLASS == null || !ADD_TASK_LISTENER.getDeclaringClass().isInstance(task)) {
+            return false;
+        }
+        try {
+            Object listener = Proxy.newProxyInstance(TASK_LISTENER_CLASS.getClassLoader(),
+                    new Class<?>[]{TASK_LISTENER_CLASS}, new JavacPhaseListener(metrics));
+            ADD_TASK_LISTENER.invoke(task, listener);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("started".equals(name) || "finished".equals(name)) {
+            CompileMetrics.Phase phase = toPhase(GET_KIND.invoke(args[0]));
+            if (phase != null) {
+                onEvent(phase, "started".equals(name));
+            }
+            return null;
+        }
+        switch (name) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "JavacPhaseListener";
+            default:
+                return null;
+        }
+    }
+
+    private void onEvent(CompileMetrics.Phase phase, boolean started) {
+        long now = System.nanoTime();
+        int current = depth.getOrDefault(phase, 0);
+        if (started) {
+            if (current == 0) {
+                startNanos.put(phase, now);
+            }
+            depth.put(phase, current + 1);
+        } else if (current > 0) {
+            depth.put(phase, current - 1);
+            if (current == 1) {
+                metrics.addPhaseNanos(phase, now - startNanos.get(phase));
+            }
+        }
+    }
+
+    /**
+     * 将 TaskEvent.Kind 映射为编译阶段，不关心的事件返回 null
+     */
+    private static CompileMetrics.Phase toPhase(Object kind) {
+        switch (String.valueOf(kind)) {
+            case "PARSE":
+                return CompileMetrics.Phase.PARSE;
+            case "ENTER":
+                return CompileMetrics.Phase.ENTER;
+            case "ANNOTATION_PROCESSING":
+                return CompileMetrics.Phase.ANNOTATION_PROCESSING;
+            case "ANALYZE":
+                return CompileMetrics.Phase.ANALYZE;
+            case "GENERATE":
+                return CompileMetrics.Phase.GENERATE;
+            default:
+                return null;
+        }
+    }
+}
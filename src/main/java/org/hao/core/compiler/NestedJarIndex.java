@@ -0,0 +1,419 @@
+package org.hao.core.compiler;
+
+import cn.hutool.core.io.IoUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Spring Boot 可执行 JAR（fat jar）的内存索引。
+ * <p>
+ * 直接读取 fat jar 中的 {@code BOOT-INF/classes/} 与 {@code BOOT-INF/lib/*.jar}（zip 中的 zip），
+ * 记录每个包下有哪些类文件，编译时由 {@link NestedJarJavaFileManager} 按需提供类文件内容，
+ * 从而无需把依赖 JAR 解压到临时目录。索引只保存类名，不保存字节码；读取类文件时：
+ * <ul>
+ *     <li>{@code BOOT-INF/classes/} 下的类直接从外层 JAR 随机读取；</li>
+ *     <li>嵌套 JAR 中的类优先通过应用类加载器（Spring Boot 的 LaunchedURLClassLoader 支持嵌套 JAR 随机访问）读取，
+ *     只采用 URL 指向该条目所在嵌套 JAR 的资源，避免读到其他 JAR 中的同名类；读取不到时再顺序扫描对应的嵌套 JAR。</li>
+ * </ul>
+ * </p>
+ * <p>
+ * 注解处理器无法从内存中的类文件加载，扫描时会记录声明了 {@value #PROCESSOR_SERVICE} 的嵌套 JAR（如 lombok），
+ * 由 {@link #extractProcessorPath(File)} 单独解压后作为 {@code -processorpath}。
+ * </p>
+ * <p>
+ * 索引按引用计数关闭：创建者持有一个引用，{@link #close()} 释放该引用；编译期间通过 {@link #retain()} 与 {@link #release()}
+ * 持有额外的引用，最后一个引用释放时才关闭 fat jar，切换模式或重新加载类路径不会影响正在读取嵌套条目的编译。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class NestedJarIndex implements Closeable {
+
+    static final String CLASSES_PREFIX = "BOOT-INF/classes/";
+    static final String LIB_PREFIX = "BOOT-INF/lib/";
+    static final String PROCESSOR_SERVICE = "META-INF/services/javax.annotation.processing.Processor";
+
+    /**
+     * 外层 fat jar，读取 BOOT-INF/classes 与扫描嵌套 JAR 时使用，JarFile 自身是线程安全的
+     */
+    private final JarFile jarFile;
+
+    /**
+     * 用于读取嵌套 JAR 中资源的类加载器
+     */
+    private final ClassLoader resourceLoader;
+
+    /**
+     * 包名 -> 该包下的类文件（BOOT-INF/classes 在前，依赖 JAR 按其在 fat jar 中的顺序在后）
+     */
+    private final Map<String, List<Entry>> packageIndex;
+
+    /**
+     * 包含注解处理器的嵌套 JAR 文件名
+     */
+    private final List<String> processorLibs;
+
+    /**
+     * 已解压的注解处理器路径，首次调用 {@link #extractProcessorPath(File)} 时生成
+     */
+    private volatile List<String> processorPath;
+
+    /**
+     * 引用计数，创建者持有初始的一个引用，降为 0 时关闭 fat jar
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    /**
+     * 创建者的引用是否已通过 {@link #close()} 释放
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private NestedJarIndex(JarFile jarFile, ClassLoader resourceLoader, Map<String, List<Entry>> packageIndex, List<String> processorLibs) {
+        this.jarFile = jarFile;
+        this.resourceLoader = resourceLoader;
+        this.packageIndex = packageIndex;
+        this.processorLibs = Collections.unmodifiableList(processorLibs);
+    }
+
+    /**
+     * 扫描 fat jar 并建立索引，各嵌套 JAR 并行扫描。
+     *
+     * @param jarPath        fat jar 的路径
+     * @param resourceLoader 用于读取嵌套 JAR 资源的类加载器，通常为应用的上下文类加载器
+     * @return fat jar 索引
+     * @throws IOException 如果 fat jar 无法读取
+     */
+    public static NestedJarIndex build(String jarPath, ClassLoader resourceLoader) throws IOException {
+        JarFile jarFile = new JarFile(new File(jarPath));
+        try {
+            List<Entry> classEntries = new ArrayList<>();
+            List<JarEntry> libEntries = new ArrayList<>();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith(CLASSES_PREFIX) && isClassFile(name)) {
+                    classEntries.add(new Entry(null, name.substring(CLASSES_PREFIX.length())));
+                } else if (name.startsWith(LIB_PREFIX) && name.endsWith(".jar")) {
+                    libEntries.add(entry);
+                }
+            }
+            // 并行扫描嵌套 JAR，collect 保证结果顺序与 fat jar 中的顺序一致
+            List<LibScan> libScans = libEntries.parallelStream()
+                    .map(entry -> scanNestedJar(jarFile, entry))
+                    .collect(Collectors.toList());
+
+            Map<String, List<Entry>> packageIndex = new HashMap<>();
+            for (Entry entry : classEntries) {
+                packageIndex.computeIfAbsent(entry.packageName, k -> new ArrayList<>()).add(entry);
+            }
+            List<String> processorLibs = new ArrayList<>();
+            for (LibScan libScan : libScans) {
+                for (Entry entry : libScan.entries) {
+                    packageIndex.computeIfAbsent(entry.packageName, k -> new ArrayList<>()).add(entry);
+                }
+                if (libScan.processor) {
+                    processorLibs.add(libScan.libName);
+                }
+            }
+            return new NestedJarIndex(jarFile, resourceLoader, packageIndex, processorLibs);
+        } catch (RuntimeException e) {
+            IoUtil.close(jarFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 获取指定包下的类文件。
+     *
+     * @param packageName 包名
+     * @param recurse     是否包含子包
+     * @return 类文件条目
+     */
+    public List<Entry> list(String packageName, boolean recurse) {
+        if (!recurse) {
+            List<Entry> entries = packageIndex.get(packageName);
+            return entries == null ? Collections.emptyList() : entries;
+        }
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        List<Entry> result = new ArrayList<>();
+        packageIndex.forEach((name, entries) -> {
+            if (name.equals(packageName) || name.startsWith(prefix)) {
+                result.addAll(entries);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 根据类的二进制名称查找类文件，存在多个同名类时返回类路径中靠前的一个。
+     *
+     * @param binaryName 类的二进制名称，例如 {@code org.hao.core.StrUtil}
+     * @return 类文件条目，不存在时返回 null
+     */
+    public Entry find(String binaryName) {
+        int index = binaryName.lastIndexOf('.');
+        String packageName = index < 0 ? "" : binaryName.substring(0, index);
+        for (Entry entry : list(packageName, false)) {
+            if (entry.binaryName.equals(binaryName)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取 fat jar 的路径。
+     *
+     * @return fat jar 的路径
+     */
+    public String getJarPath() {
+        return jarFile.getName();
+    }
+
+    /**
+     * 获取索引中的包数量。
+     *
+     * @return 包数量
+     */
+    public int getPackageCount() {
+        return packageIndex.size();
+    }
+
+    /**
+     * 获取包含注解处理器的嵌套 JAR 文件名。
+     *
+     * @return 嵌套 JAR 文件名，按其在 fat jar 中的顺序
+     */
+    public List<String> getProcessorLibs() {
+        return processorLibs;
+    }
+
+    /**
+     * 将包含注解处理器的嵌套 JAR 解压到指定目录，作为编译时的 {@code -processorpath}。
+     * 只在首次调用时解压，目录中已存在大小一致的文件时直接复用。
+     *
+     * @param dir 解压目录
+     * @return 解压后的 JAR 绝对路径，没有注解处理器时返回空列表
+     * @throws IOException 如果解压失败
+     */
+    public List<String> extractProcessorPath(File dir) throws IOException {
+        List<String> path = processorPath;
+        if (path != null) {
+            return path;
+        }
+        synchronized (this) {
+            if (processorPath != null) {
+                return processorPath;
+            }
+            path = new ArrayList<>();
+            for (String libName : processorLibs) {
+                JarEntry libEntry = jarFile.getJarEntry(LIB_PREFIX + libName);
+                File dest = new File(dir, libName);
+                if (!dest.isFile() || dest.length() != libEntry.getSize()) {
+                    Files.createDirectories(dir.toPath());
+                    File temp = File.createTempFile(libName, ".tmp", dir);
+                    try (InputStream in = jarFile.getInputStream(libEntry)) {
+                        Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        Files.move(temp.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    } finally {
+                        Files.deleteIfExists(temp.toPath());
+                    }
+                }
+                path.add(dest.getAbsolutePath());
+            }
+            processorPath = Collections.unmodifiableList(path);
+            return processorPath;
+        }
+    }
+
+    /**
+     * 打开类文件内容。
+     *
+     * @param entry 类文件条目
+     * @return 类文件输入流
+     * @throws IOException 如果类文件无法读取
+     */
+    InputStream open(Entry entry) throws IOException {
+        if (entry.libName == null) {
+            JarEntry jarEntry = jarFile.getJarEntry(CLASSES_PREFIX + entry.resourceName);
+            if (jarEntry == null) {
+                throw new IOException("类文件不存在: " + CLASSES_PREFIX + entry.resourceName);
+            }
+            return jarFile.getInputStream(jarEntry);
+        }
+        if (resourceLoader != null) {
+            InputStream in = openFromResourceLoader(entry);
+            if (in != null) {
+                return in;
+            }
+        }
+        // 类加载器读取不到时，顺序扫描对应的嵌套 JAR
+        JarEntry libEntry = jarFile.getJarEntry(LIB_PREFIX + entry.libName);
+        if (libEntry == null) {
+            throw new IOException("依赖不存在: " + LIB_PREFIX + entry.libName);
+        }
+        try (ZipInputStream zis = new ZipInputStream(jarFile.getInputStream(libEntry))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zis.getNextEntry()) != null) {
+                if (zipEntry.getName().equals(entry.resourceName)) {
+                    return new ByteArrayInputStream(IoUtil.readBytes(zis, false));
+                }
+            }
+        }
+        throw new IOException("类文件不存在: " + entry);
+    }
+
+    /**
+     * 增加一个引用，使用完毕后必须调用 {@link #release()}。
+     *
+     * @return 是否成功，索引已经关闭时返回 false
+     */
+    boolean retain() {
+        for (; ; ) {
+            int count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放一个引用，最后一个引用释放时关闭 fat jar。
+     */
+    void release() {
+        if (refCount.decrementAndGet() == 0) {
+            IoUtil.close(jarFile);
+        }
+    }
+
+    /**
+     * 释放创建者持有的引用，多次调用只释放一次；仍有编译持有引用时，fat jar 在这些编译结束后关闭。
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    /**
+     * 通过类加载器读取条目所在嵌套 JAR 中的资源。类加载器上的同名资源可能来自其他 JAR，
+     * 因此只采用 URL 中包含 {@code BOOT-INF/lib/<libName>!/} 的资源，Spring Boot 各版本的嵌套 JAR URL 均包含该片段。
+     *
+     * @return 资源输入流，类加载器中没有该嵌套 JAR 的资源时返回 null
+     */
+    private InputStream openFromResourceLoader(Entry entry) throws IOException {
+        String marker = LIB_PREFIX + entry.libName + "!/";
+        Enumeration<URL> urls = resourceLoader.getResources(entry.resourceName);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            if (url.toString().contains(marker)) {
+                return url.openStream();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 扫描单个嵌套 JAR 中的类文件，读取失败时忽略该 JAR。
+     */
+    private static LibScan scanNestedJar(JarFile jarFile, JarEntry libEntry) {
+        String libName = libEntry.getName().substring(LIB_PREFIX.length());
+        List<Entry> entries = new ArrayList<>();
+        boolean processor = false;
+        try (ZipInputStream zis = new ZipInputStream(jarFile.getInputStream(libEntry))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zis.getNextEntry()) != null) {
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                if (isClassFile(zipEntry.getName())) {
+                    entries.add(new Entry(libName, zipEntry.getName()));
+                } else if (PROCESSOR_SERVICE.equals(zipEntry.getName())) {
+                    processor = true;
+                }
+            }
+        } catch (IOException e) {
+            // 损坏的嵌套 JAR 不参与编译
+        }
+        return new LibScan(libName, entries, processor);
+    }
+
+    private static boolean isClassFile(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/");
+    }
+
+    /**
+     * 单个嵌套 JAR 的扫描结果
+     */
+    private static final class LibScan {
+        private final String libName;
+        private final List<Entry> entries;
+        private final boolean processor;
+
+        LibScan(String libName, List<Entry> entries, boolean processor) {
+            this.libName = libName;
+            this.entries = entries;
+            this.processor = processor;
+        }
+    }
+
+    /**
+     * fat jar 中的一个类文件
+     */
+    public static class Entry {
+        /**
+         * 所在嵌套 JAR 的文件名，位于 BOOT-INF/classes 时为 null
+         */
+        final String libName;
+        /**
+         * 资源名称，例如 {@code org/hao/core/StrUtil.class}
+         */
+        final String resourceName;
+        /**
+         * 类的二进制名称，例如 {@code org.hao.core.StrUtil}
+         */
+        final String binaryName;
+        /**
+         * 包名
+         */
+        final String packageName;
+
+        Entry(String libName, String resourceName) {
+            this.libName = libName;
+            this.resourceName = resourceName;
+            this.binaryName = resourceName.substring(0, resourceName.length() - ".class".length()).replace('/', '.');
+            int index = binaryName.lastIndexOf('.');
+            this.packageName = index < 0 ? "" : binaryName.substring(0, index);
+        }
+
+        public String getBinaryName() {
+            return binaryName;
+        }
+
+        @Override
+        public String toString() {
+            return (libName == null ? CLASSES_PREFIX : LIB_PREFIX + libName + "!/") + resourceName;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.hao.core.compiler;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 直接从 Spring Boot fat jar 的嵌套 JAR 中提供类文件的文件管理器。
+ * <p>
+ * 对 {@link StandardLocation#CLASS_PATH} 的查找完全由 {@link NestedJarIndex} 在内存中应答，
+ * 平台类（JDK 自带类）与输出等其余位置仍委托给被包装的标准文件管理器。
+ * 这样编译动态代码时无需把 {@code BOOT-INF/lib} 下的依赖解压到临时目录。
+ * </p>
+ * <p>
+ * 注解处理器不从内存中的类路径加载：{@link CompilerUtil} 会把包含注解处理器的嵌套 JAR 解压后通过 {@code -processorpath} 传入，
+ * {@link StandardLocation#ANNOTATION_PROCESSOR_PATH} 的类加载器由被包装的标准文件管理器创建，
+ * 见 {@link NestedJarIndex#extractProcessorPath(java.io.File)}。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class NestedJarJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+    private final NestedJarIndex nestedJarIndex;
+
+    /**
+     * 构造函数
+     *
+     * @param fileManager    被包装的标准文件管理器
+     * @param nestedJarIndex fat jar 索引
+     */
+    public NestedJarJavaFileManager(JavaFileManager fileManager, NestedJarIndex nestedJarIndex) {
+        super(fileManager);
+        this.nestedJarIndex = nestedJarIndex;
+    }
+
+    @Override
+    public boolean hasLocation(Location location) {
+        return location == StandardLocation.CLASS_PATH || super.hasLocation(location);
+    }
+
+    /**
+     * 列出类路径中指定包下的类文件，类路径的查找只由 fat jar 索引应答。
+     */
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+        if (location != StandardLocation.CLASS_PATH) {
+            return super.list(location, packageName, kinds, recurse);
+        }
+        if (!kinds.contains(JavaFileObject.Kind.CLASS)) {
+            return new ArrayList<>();
+        }
+        List<NestedJarIndex.Entry> entries = nestedJarIndex.list(packageName, recurse);
+        List<JavaFileObject> result = new ArrayList<>(entries.size());
+        for (NestedJarIndex.Entry entry : entries) {
+            result.add(new NestedClassFileObject(nestedJarIndex, entry));
+        }
+        return result;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof NestedClassFileObject) {
+            return ((NestedClassFileObject) file).entry.getBinaryName();
+        }
+        return super.inferBinaryName(location, file);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        if (a instanceof NestedClassFileObject || b instanceof NestedClassFileObject) {
+            return a.toUri().equals(b.toUri());
+        }
+        return super.isSameFile(a, b);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForInput(Location location, String className, JavaFileObject.Kind kind) throws IOException {
+        if (location == StandardLocation.CLASS_PATH) {
+            NestedJarIndex.Entry entry = kind == JavaFileObject.Kind.CLASS ? nestedJarIndex.find(className) : null;
+            return entry == null ? null : new NestedClassFileObject(nestedJarIndex, entry);
+        }
+        return super.getJavaFileForInput(location, className, kind);
+    }
+
+    /**
+     * fat jar 中的类文件对象，内容在编译器真正需要时才读取
+     */
+    static class NestedClassFileObject extends SimpleJavaFileObject {
+        private final NestedJarIndex nestedJarIndex;
+        private final NestedJarIndex.Entry entry;
+
+        NestedClassFileObject(NestedJarIndex nestedJarIndex, NestedJarIndex.Entry entry) {
+            super(toUri(entry), Kind.CLASS);
+            this.nestedJarIndex = nestedJarIndex;
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return nestedJarIndex.open(entry);
+        }
+
+        private static URI toUri(NestedJarIndex.Entry entry) {
+            String jar = entry.libName == null ? "classes" : entry.libName;
+            try {
+                return new URI("nested", null, "/" + jar + "/" + entry.resourceName, null);
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+}
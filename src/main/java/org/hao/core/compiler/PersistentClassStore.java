@@ -0,0 +1,262 @@
+package org.hao.core.compiler;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 持久化的编译结果存储，用于在 JVM 重启后复用已编译的动态类，缩短冷启动时间。
+ * <p>
+ * 目录结构如下：
+ * <pre>
+ * storeDir/
+ *   ├── fingerprint          类路径指纹（按依赖内容计算，重新解压依赖不会改变指纹）与 JDK 版本，任一变化时整个存储自动失效
+ *   ├── index                索引文件，每行 "编译键 \t 类名 \t 字节码摘要"
+ *   └── classes/
+ *         └── {sha256}.class 按字节码内容寻址的类文件
+ * </pre>
+ * 索引文件在打开时通过内存映射一次性读入内存；写入时以追加方式写索引，并使用文件锁避免多个进程同时写入。
+ * 类文件按内容摘要命名，相同字节码只保存一份，写入时先写临时文件再原子移动，保证读到的文件总是完整的。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class PersistentClassStore {
+    private static final Logger logger = LoggerFactory.getLogger(PersistentClassStore.class);
+
+    private static final String FINGERPRINT_FILE = "fingerprint";
+    private static final String INDEX_FILE = "index";
+    private static final String CLASSES_DIR = "classes";
+
+    /**
+     * 存储根目录
+     */
+    private final File storeDir;
+
+    /**
+     * 类文件目录
+     */
+    private final File classesDir;
+
+    /**
+     * 索引文件
+     */
+    private final File indexFile;
+
+    /**
+     * 内存中的索引：编译键 -> (类名 -> 字节码摘要)
+     */
+    private final Map<String, Map<String, String>> index = new ConcurrentHashMap<>();
+
+    /**
+     * 当前存储对应的指纹，由类路径指纹与 {@link CompiledClassCache#JDK_IDENTITY} 组成
+     */
+    private volatile String fingerprint;
+
+    /**
+     * 打开（或创建）指定目录下的持久化存储。
+     *
+     * @param storeDir 存储根目录
+     */
+    public PersistentClassStore(String storeDir) {
+        this.storeDir = new File(storeDir);
+        this.classesDir = new File(this.storeDir, CLASSES_DIR);
+        this.indexFile = new File(this.storeDir, INDEX_FILE);
+        FileUtil.mkdir(this.classesDir);
+        File fingerprintFile = new File(this.storeDir, FINGERPRINT_FILE);
+        this.fingerprint = fingerprintFile.isFile() ? StrUtil.trim(FileUtil.readUtf8String(fingerprintFile)) : null;
+        loadIndex();
+    }
+
+    /**
+     * 根据编译键读取持久化的字节码。
+     *
+     * @param key                  编译键，见 {@link CompiledClassCache#buildKey}
+     * @param classpathFingerprint 当前类路径指纹，与存储中的指纹不一致或 JDK 发生变化时存储整体失效
+     * @return 类名到字节码的映射，未命中或类文件损坏时返回 null
+     */
+    public Map<String, byte[]> get(String key, String classpathFingerprint) {
+        checkFingerprint(classpathFingerprint);
+        Map<String, String> entries = index.get(key);
+        if (entries == null) {
+            return null;
+        }
+        Map<String, byte[]> classBytes = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                File classFile = new File(classesDir, entry.getValue() + ".class");
+                byte[] bytes = Files.readAllBytes(classFile.toPath());
+                if (!entry.getValue().equals(digest(bytes))) {
+                    throw new IOException("类文件内容与摘要不一致: " + classFile);
+                }
+                classBytes.put(entry.getKey(), bytes);
+            }
+        } catch (IOException e) {
+            // 类文件缺失或损坏时丢弃该条索引，回退到重新编译
+            logger.warn("读取持久化编译结果失败，将重新编译: {}", e.getMessage());
+            index.remove(key);
+            return null;
+        }
+        return classBytes;
+    }
+
+    /**
+     * 持久化一次编译产生的全部字节码。
+     *
+     * @param key                  编译键
+     * @param classpathFingerprint 当前类路径指纹
+     * @param classBytes           类名到字节码的映射
+     */
+    public synchronized void put(String key, String classpathFingerprint, Map<String, byte[]> classBytes) {
+        checkFingerprint(classpathFingerprint);
+        if (index.containsKey(key) || classBytes == null || classBytes.isEmpty()) {
+            return;
+        }
+        Map<String, String> entries = new LinkedHashMap<>();
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+                String blobName = digest(entry.getValue());
+                writeBlob(blobName, entry.getValue());
+                entries.put(entry.getKey(), blobName);
+                lines.append(key).append('\t').append(entry.getKey()).append('\t').append(blobName).append('\n');
+            }
+            appendIndex(lines.toString());
+            index.put(key, Collections.unmodifiableMap(entries));
+        } catch (IOException e) {
+            // 持久化失败不影响本次编译结果，仅记录日志
+            logger.warn("写入持久化编译结果失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清空存储中的全部索引与类文件。
+     */
+    public synchronized void clear() {
+        index.clear();
+        FileUtil.del(indexFile);
+        FileUtil.clean(classesDir);
+    }
+
+    /**
+     * 获取已持久化的编译单元数量。
+     *
+     * @return 索引中的编译键数量
+     */
+    public int size() {
+        return index.size();
+    }
+
+    public File getStoreDir() {
+        return storeDir;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 校验类路径指纹与 JDK 版本，不一致时清空存储并记录新的指纹。
+     * 换用其他 JDK 后旧的类文件可能无法加载（例如降级后出现 {@link UnsupportedClassVersionError}），同样整体失效。
+     */
+    private void checkFingerprint(String classpathFingerprint) {
+        if (classpathFingerprint == null) {
+            return;
+        }
+        String storeFingerprint = classpathFingerprint + ";jdk=" + CompiledClassCache.JDK_IDENTITY;
+        if (storeFingerprint.equals(fingerprint)) {
+            return;
+        }
+        synchronized (this) {
+            if (storeFingerprint.equals(fingerprint)) {
+                return;
+            }
+            if (fingerprint != null) {
+                logger.info("类路径指纹或 JDK 版本发生变化，清空持久化编译结果: {}", storeDir.getAbsolutePath());
+            }
+            clear();
+            FileUtil.writeUtf8String(storeFingerprint, new File(storeDir, FINGERPRINT_FILE));
+            fingerprint = storeFingerprint;
+        }
+    }
+
+    /**
+     * 通过内存映射读取索引文件并构建内存索引，格式不正确的行直接忽略。
+     */
+    private void loadIndex() {
+        if (!indexFile.isFile() || indexFile.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+             FileChannel channel = file.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            String content = StandardCharsets.UTF_8.decode(buffer).toString();
+            for (String line : content.split("\n")) {
+                String[] parts = line.split("\t");
+                if (parts.length != 3) {
+                    continue;
+                }
+                index.computeIfAbsent(parts[0], k -> new LinkedHashMap<>()).put(parts[1], parts[2]);
+            }
+        } catch (IOException e) {
+            logger.warn("读取持久化编译索引失败，忽略已有索引: {}", e.getMessage());
+            index.clear();
+        }
+    }
+
+    /**
+     * 以追加方式写入索引，写入期间持有文件锁，避免多个进程交错写入。
+     */
+    private void appendIndex(String lines) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+             FileChannel channel = file.getChannel();
+             FileLock ignored = channel.lock()) {
+            channel.position(channel.size());
+            ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * 写入类文件，已存在相同内容的文件时直接复用。
+     */
+    private void writeBlob(String blobName, byte[] bytes) throws IOException {
+        File target = new File(classesDir, blobName + ".class");
+        if (target.isFile() && target.length() == bytes.length) {
+            return;
+        }
+        File temp = File.createTempFile(blobName, ".tmp", classesDir);
+        try {
+            Files.write(temp.toPath(), bytes);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtil.del(temp);
+        }
+    }
+
+    private static String digest(byte[] bytes) {
+        MessageDigest digest = CompiledClassCache.newSha256();
+        return HexUtil.encodeHexStr(digest.digest(bytes));
+    }
+}
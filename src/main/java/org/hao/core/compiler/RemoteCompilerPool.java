@@ -0,0 +1,479 @@
+package org.hao.core.compiler;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
+import org.hao.core.exception.HaoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 独立编译进程池，将 javac 编译委托给常驻的本地 JVM 子进程。
+ * <p>
+ * 大型编译会在当前 JVM 中分配数百 MB 的临时对象并触发 Full GC，影响接口延迟。启用该池后，
+ * {@link CompilerUtil} 在缓存未命中时把源码通过管道发送给子进程（{@link CompileWorkerMain}）编译，
+ * 只把编译出的字节码传回当前进程，再由 {@link InMemoryClassLoader} 定义。
+ * </p>
+ * <ul>
+ *     <li>子进程常驻复用，首次使用时按需启动，最多 {@code poolSize} 个，每个子进程同一时间只处理一个请求；</li>
+ *     <li>子进程崩溃（管道断开）时丢弃并重新拉起，本次请求在新进程上重试一次；</li>
+ *     <li>单次编译超过 {@code compileTimeoutMillis} 未返回时强制结束子进程并抛出异常，不再重试，下次借出时启动新进程，
+ *     避免卡住的子进程一直占用许可；</li>
+ *     <li>类路径变化时子进程按新的类路径重新启动；</li>
+ *     <li>子进程只能读取磁盘上的类路径，fat jar 直读模式下在 {@link CompilerUtil#setRemoteCompilerPool(RemoteCompilerPool)} 时把依赖解压到临时目录。</li>
+ * </ul>
+ *
+ * <pre>
+ * CompilerUtil.setRemoteCompilerPool(new RemoteCompilerPool(2, Arrays.asList("-Xmx512m")));
+ * </pre>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class RemoteCompilerPool implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RemoteCompilerPool.class);
+
+    private static final String WORKER_PACKAGE_PATH = "org/hao/core/compiler/";
+
+    /**
+     * 默认的单次编译超时时间（毫秒）
+     */
+    public static final long DEFAULT_COMPILE_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * 编译超时检查线程，所有进程池共用
+     */
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hao-compile-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int poolSize;
+
+    /**
+     * 单次编译的超时时间（毫秒），小于等于 0 时不限制
+     */
+    private final long compileTimeoutMillis;
+
+    private final List<String> jvmArgs;
+
+    /**
+     * 控制同时进行的远程编译数，不超过子进程数量
+     */
+    private final Semaphore permits;
+
+    /**
+     * 空闲的子进程
+     */
+    private final LinkedBlockingDeque<Worker> idle = new LinkedBlockingDeque<>();
+
+    /**
+     * 全部存活的子进程，关闭池时统一销毁
+     */
+    private final Set<Worker> workers = Collections.synchronizedSet(new HashSet<>());
+
+    private final AtomicInteger startCount = new AtomicInteger();
+
+    private final LongAdder restartCount = new LongAdder();
+
+    private final LongAdder compileCount = new LongAdder();
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * 子进程的类路径目录（存放 {@link CompileWorkerMain} 的类文件）
+     */
+    private volatile File workerClassDir;
+
+    private volatile boolean closed = false;
+
+    /**
+     * 构造函数，单次编译超时时间为 {@value #DEFAULT_COMPILE_TIMEOUT_MILLIS} 毫秒
+     *
+     * @param poolSize 子进程数量
+     * @param jvmArgs  子进程的 JVM 参数，例如 {@code -Xmx512m}，可为 null
+     */
+    public RemoteCompilerPool(int poolSize, List<String> jvmArgs) {
+        this(poolSize, jvmArgs, DEFAULT_COMPILE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param poolSize             子进程数量
+     * @param jvmArgs              子进程的 JVM 参数，例如 {@code -Xmx512m}，可为 null
+     * @param compileTimeoutMillis 单次编译的超时时间（毫秒），超时后结束子进程，小于等于 0 时不限制
+     */
+    public RemoteCompilerPool(int poolSize, List<String> jvmArgs, long compileTimeoutMillis) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize 必须大于 0");
+        }
+        this.poolSize = poolSize;
+        this.jvmArgs = jvmArgs == null ? Collections.emptyList() : new ArrayList<>(jvmArgs);
+        this.permits = new Semaphore(poolSize, true);
+        this.compileTimeoutMillis = compileTimeoutMillis;
+    }
+
+    /**
+     * 在子进程中编译一组源码。
+     *
+     * @param sources     待编译源码，键为类全限定名，值为源码
+     * @param options     编译选项（不含类路径）
+     * @param classpath   编译类路径，必须是磁盘上的 JAR 或目录
+     * @param fingerprint 类路径指纹，子进程的类路径与之不一致时重新启动
+     * @param metrics     编译指标，记录诊断数量
+     * @return 类全限定名到字节码的映射
+     * @throws HaoException 编译失败、编译超时或子进程无法启动时抛出
+     */
+    public Map<String, byte[]> compile(Map<String, String> sources, List<String> options, Collection<String> classpath,
+                                       String fingerprint, CompileMetrics metrics) {
+        if (closed) {
+            throw new HaoException("编译进程池已关闭");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HaoException("等待编译进程时被中断", e);
+        }
+        try {
+            compileCount.increment();
+            Worker worker = borrow(classpath, fingerprint);
+            try {
+                return compileOn(worker, sources, options, metrics);
+            } catch (IOException e) {
+                // 子进程崩溃，丢弃后在新进程上重试一次
+                destroy(worker);
+                restartCount.increment();
+                logger.warn("编译进程异常退出，重新启动: {}", e.getMessage());
+            }
+            worker = borrow(classpath, fingerprint);
+            try {
+                return compileOn(worker, sources, options, metrics);
+            } catch (IOException e) {
+                destroy(worker);
+                throw new HaoException("编译进程异常退出: " + e.getMessage(), e);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * 获取当前存活的子进程数量。
+     *
+     * @return 子进程数量
+     */
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * 获取累计启动的子进程数量。
+     *
+     * @return 启动次数
+     */
+    public int getStartCount() {
+        return startCount.get();
+    }
+
+    /**
+     * 获取因子进程崩溃而重新启动的次数。
+     *
+     * @return 重启次数
+     */
+    public long getRestartCount() {
+        return restartCount.sum();
+    }
+
+    public long getCompileCount() {
+        return compileCount.sum();
+    }
+
+    /**
+     * 获取因超时而被结束的编译次数。
+     *
+     * @return 超时次数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getCompileTimeoutMillis() {
+        return compileTimeoutMillis;
+    }
+
+    /**
+     * 关闭池并结束全部子进程。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List<Worker> snapshot;
+        synchronized (workers) {
+            snapshot = new ArrayList<>(workers);
+        }
+        snapshot.forEach(this::destroy);
+        idle.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteCompilerPool{poolSize=" + poolSize + ", workers=" + getWorkerCount() + ", starts=" + getStartCount()
+                + ", restarts=" + getRestartCount() + ", compiles=" + getCompileCount() + ", timeouts=" + getTimeoutCount() + "}";
+    }
+
+    /**
+     * 借出一个与当前类路径一致的子进程，没有可用子进程时启动新进程
+     */
+    private Worker borrow(Collection<String> classpath, String fingerprint) {
+        Worker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            if (worker.isAlive() && worker.fingerprint.equals(fingerprint)) {
+                return worker;
+            }
+            destroy(worker);
+        }
+        try {
+            worker = new Worker(startProcess(), fingerprint);
+            workers.add(worker);
+            worker.handshake(classpath);
+            startCount.incrementAndGet();
+            return worker;
+        } catch (IOException e) {
+            if (worker != null) {
+                destroy(worker);
+            }
+            throw new HaoException("启动编译进程失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 在指定子进程上编译，正常返回（包括编译失败）时归还子进程，通信异常时由调用方丢弃。
+     * 编译期间由超时检查线程计时，超时后强制结束子进程，阻塞的读取随之以异常返回。
+     */
+    private Map<String, byte[]> compileOn(Worker worker, Map<String, String> sources, List<String> options, CompileMetrics metrics) throws IOException {
+        worker.compiling.set(true);
+        ScheduledFuture<?> deadline = compileTimeoutMillis > 0
+                ? WATCHDOG.schedule(worker::expire, compileTimeoutMillis, TimeUnit.MILLISECONDS) : null;
+        Map<String, byte[]> classBytes;
+        try {
+            classBytes = worker.compile(sources, options, metrics);
+        } catch (HaoException e) {
+            finishCompile(worker, deadline);
+            release(worker);
+            throw e;
+        } catch (IOException e) {
+            finishCompile(worker, deadline);
+            throw e;
+        }
+        finishCompile(worker, deadline);
+        release(worker);
+        return classBytes;
+    }
+
+    /**
+     * 结束计时。子进程已因超时被结束时丢弃该子进程并抛出异常，超时的编译不在新进程上重试
+     */
+    private void finishCompile(Worker worker, ScheduledFuture<?> deadline) {
+        boolean inTime = worker.compiling.compareAndSet(true, false);
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        if (!inTime) {
+            destroy(worker);
+            timeoutCount.increment();
+            throw new HaoException("编译超过 " + compileTimeoutMillis + "ms 未完成，已结束编译进程");
+        }
+    }
+
+    private void release(Worker worker) {
+        if (closed) {
+            destroy(worker);
+        } else {
+            idle.offerFirst(worker);
+        }
+    }
+
+    private void destroy(Worker worker) {
+        workers.remove(worker);
+        idle.remove(worker);
+        worker.destroy();
+    }
+
+    private Process startProcess() throws IOException {
+        String javaHome = System.getProperty("java.home");
+        File java = new File(javaHome, "bin" + File.separator + "java");
+        List<String> command = new ArrayList<>();
+        command.add(java.getAbsolutePath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(getWorkerClassDir().getAbsolutePath());
+        command.add(CompileWorkerMain.class.getName());
+        return new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * 把 {@link CompileWorkerMain} 的类文件复制到临时目录，作为子进程的类路径。
+     * 目录名包含类文件的摘要，不同版本的程序互不覆盖。
+     */
+    private File getWorkerClassDir() throws IOException {
+        File dir = workerClassDir;
+        if (dir != null && dir.isDirectory()) {
+            return dir;
+        }
+        synchronized (this) {
+            if (workerClassDir != null && workerClassDir.isDirectory()) {
+                return workerClassDir;
+            }
+            Map<String, byte[]> classFiles = new LinkedHashMap<>();
+            MessageDigest digest = CompiledClassCache.newSha256();
+            ClassLoader loader = CompileWorkerMain.class.getClassLoader();
+            for (String name : CompileWorkerMain.WORKER_CLASSES) {
+                String resource = WORKER_PACKAGE_PATH + name + ".class";
+                try (InputStream in = loader.getResourceAsStream(resource)) {
+                    if (in == null) {
+                        throw new FileNotFoundException("找不到编译进程类文件: " + resource);
+                    }
+                    byte[] bytes = IoUtil.readBytes(in);
+                    classFiles.put(resource, bytes);
+                    digest.update(bytes);
+                }
+            }
+            String version = HexUtil.encodeHexStr(digest.digest()).substring(0, 16);
+            dir = new File(System.getProperty("java.io.tmpdir"), "haoCompileWorker" + File.separator + version);
+            for (Map.Entry<String, byte[]> entry : classFiles.entrySet()) {
+                File target = new File(dir, entry.getKey());
+                if (target.isFile() && target.length() == entry.getValue().length) {
+                    continue;
+                }
+                FileUtil.mkParentDirs(target);
+                File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+                Files.write(temp.toPath(), entry.getValue());
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            workerClassDir = dir;
+            return dir;
+        }
+    }
+
+    /**
+     * 一个编译子进程
+     */
+    private static class Worker {
+        private final Process process;
+        private final String fingerprint;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+
+        /**
+         * 是否正在编译，编译结束与超时检查通过 CAS 竞争，只有一方生效
+         */
+        private final AtomicBoolean compiling = new AtomicBoolean();
+
+        Worker(Process process, String fingerprint) {
+            this.process = process;
+            this.fingerprint = fingerprint;
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        /**
+         * 发送类路径并等待子进程就绪
+         */
+        void handshake(Collection<String> classpath) throws IOException {
+            out.writeInt(classpath.size());
+            for (String entry : classpath) {
+                CompileWorkerMain.writeString(out, entry);
+            }
+            out.flush();
+            if (in.readInt() != CompileWorkerMain.READY) {
+                throw new IOException("编译进程握手失败");
+            }
+        }
+
+        Map<String, byte[]> compile(Map<String, String> sources, List<String> options, CompileMetrics metrics) throws IOException {
+            out.writeInt(CompileWorkerMain.OP_COMPILE);
+            out.writeInt(options.size());
+            for (String option : options) {
+                CompileWorkerMain.writeString(out, option);
+            }
+            out.writeInt(sources.size());
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                CompileWorkerMain.writeString(out, source.getKey());
+                CompileWorkerMain.writeString(out, source.getValue());
+            }
+            out.flush();
+
+            boolean success = in.readBoolean();
+            metrics.setDiagnosticCounts(in.readInt(), in.readInt());
+            if (!success) {
+                throw new HaoException("编译失败: " + CompileWorkerMain.readString(in));
+            }
+            int classCount = in.readInt();
+            Map<String, byte[]> classBytes = new LinkedHashMap<>();
+            for (int i = 0; i < classCount; i++) {
+                String className = CompileWorkerMain.readString(in);
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classBytes.put(className, bytes);
+            }
+            return classBytes;
+        }
+
+        boolean isAlive() {
+            return process.isAlive();
+        }
+
+        /**
+         * 编译超时：仍在编译时强制结束子进程
+         */
+        void expire() {
+            if (compiling.compareAndSet(true, false)) {
+                process.destroyForcibly();
+            }
+        }
+
+        void destroy() {
+            try {
+                out.writeInt(CompileWorkerMain.OP_EXIT);
+                out.flush();
+            } catch (IOException e) {
+                // 子进程已退出
+            }
+            IoUtil.close(out);
+            IoUtil.close(in);
+            process.destroy();
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+}
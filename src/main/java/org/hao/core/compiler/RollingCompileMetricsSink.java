@@ -0,0 +1,147 @@
+package org.hao.core.compiler;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 默认的编译指标接收器，以滚动直方图汇总最近的编译指标。
+ * <p>
+ * 分别统计总耗时、各阶段耗时（纳秒）与单次编译产生的字节码大小，另外累计编译次数、失败次数、
+ * 缓存命中次数与诊断信息数量，可用于评估单个节点的编译能力。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class RollingCompileMetricsSink implements CompileMetricsSink {
+
+    private final RollingHistogram totalNanos;
+
+    private final RollingHistogram byteCodeSize;
+
+    private final Map<CompileMetrics.Phase, RollingHistogram> phaseNanos = new EnumMap<>(CompileMetrics.Phase.class);
+
+    private final LongAdder compileCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder cacheHitCount = new LongAdder();
+
+    private final LongAdder errorCount = new LongAdder();
+
+    private final LongAdder warningCount = new LongAdder();
+
+    public RollingCompileMetricsSink() {
+        this(RollingHistogram.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 每个直方图保留的样本数
+     */
+    public RollingCompileMetricsSink(int capacity) {
+        this.totalNanos = new RollingHistogram(capacity);
+        this.byteCodeSize = new RollingHistogram(capacity);
+        for (CompileMetrics.Phase phase : CompileMetrics.Phase.values()) {
+            phaseNanos.put(phase, new RollingHistogram(capacity));
+        }
+    }
+
+    @Override
+    public void record(CompileMetrics metrics) {
+        compileCount.increment();
+        if (!metrics.isSuccess()) {
+            failureCount.increment();
+        }
+        if (metrics.getSource() != CompileMetrics.Source.COMPILED) {
+            cacheHitCount.increment();
+        }
+        errorCount.add(metrics.getErrorCount());
+        warningCount.add(metrics.getWarningCount());
+        totalNanos.record(metrics.getTotalNanos());
+        if (metrics.isSuccess()) {
+            byteCodeSize.record(metrics.getByteCodeSize());
+        }
+        metrics.getPhaseNanos().forEach((phase, nanos) -> phaseNanos.get(phase).record(nanos));
+    }
+
+    /**
+     * 获取总耗时直方图（纳秒）。
+     *
+     * @return 总耗时直方图
+     */
+    public RollingHistogram getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * 获取某个阶段的耗时直方图（纳秒），只包含执行了该阶段的编译。
+     *
+     * @param phase 阶段
+     * @return 阶段耗时直方图
+     */
+    public RollingHistogram getPhaseNanos(CompileMetrics.Phase phase) {
+        return phaseNanos.get(phase);
+    }
+
+    /**
+     * 获取单次编译字节码大小直方图（字节）。
+     *
+     * @return 字节码大小直方图
+     */
+    public RollingHistogram getByteCodeSize() {
+        return byteCodeSize;
+    }
+
+    public long getCompileCount() {
+        return compileCount.sum();
+    }
+
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHitCount.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    public long getWarningCount() {
+        return warningCount.sum();
+    }
+
+    /**
+     * 清空全部统计。
+     */
+    public void reset() {
+        totalNanos.clear();
+        byteCodeSize.clear();
+        phaseNanos.values().forEach(RollingHistogram::clear);
+        compileCount.reset();
+        failureCount.reset();
+        cacheHitCount.reset();
+        errorCount.reset();
+        warningCount.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RollingCompileMetricsSink{compiles=").append(getCompileCount())
+                .append(", failures=").append(getFailureCount())
+                .append(", cacheHits=").append(getCacheHitCount())
+                .append(", errors=").append(getErrorCount())
+                .append(", warnings=").append(getWarningCount())
+                .append(", totalNanos=").append(totalNanos);
+        phaseNanos.forEach((phase, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                builder.append(", ").append(phase).append("Nanos=").append(histogram);
+            }
+        });
+        return builder.append(", byteCodeSize=").append(byteCodeSize).append('}').toString();
+    }
+}
@@ -0,0 +1,151 @@
+package org.hao.core.compiler;
+
+import java.util.Arrays;
+
+/**
+ * 滚动直方图，只保留最近 {@code capacity} 个样本，用于统计近期的分位数。
+ * <p>
+ * 样本保存在环形数组中，新样本覆盖最旧的样本；分位数在查询时对快照排序计算，
+ * 写入开销为常数，适合记录编译耗时这类频率不高但需要观察长尾的指标。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class RollingHistogram {
+
+    /**
+     * 默认保留的样本数
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final long[] samples;
+
+    /**
+     * 下一个写入位置
+     */
+    private int position;
+
+    /**
+     * 当前保留的样本数
+     */
+    private int size;
+
+    /**
+     * 累计记录的样本数（包括已被覆盖的）
+     */
+    private long totalCount;
+
+    public RollingHistogram() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 保留的样本数
+     */
+    public RollingHistogram(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity 必须大于 0");
+        }
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * 记录一个样本。
+     *
+     * @param value 样本值
+     */
+    public synchronized void record(long value) {
+        samples[position] = value;
+        position = (position + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        totalCount++;
+    }
+
+    /**
+     * 计算近期样本的分位数。
+     *
+     * @param percentile 分位，取值 0~100，例如 99 表示 p99
+     * @return 分位数，没有样本时返回 0
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = snapshot();
+        if (snapshot.length == 0) {
+            return 0;
+        }
+        Arrays.sort(snapshot);
+        int index = (int) Math.ceil(percentile / 100.0 * snapshot.length) - 1;
+        return snapshot[Math.min(snapshot.length - 1, Math.max(0, index))];
+    }
+
+    /**
+     * 获取近期样本的平均值。
+     *
+     * @return 平均值，没有样本时返回 0
+     */
+    public double getMean() {
+        long[] snapshot = snapshot();
+        if (snapshot.length == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (long value : snapshot) {
+            sum += value;
+        }
+        return (double) sum / snapshot.length;
+    }
+
+    /**
+     * 获取近期样本的最大值。
+     *
+     * @return 最大值，没有样本时返回 0
+     */
+    public long getMax() {
+        long max = 0;
+        for (long value : snapshot()) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    /**
+     * 获取当前保留的样本数。
+     *
+     * @return 样本数
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * 获取累计记录的样本数。
+     *
+     * @return 累计样本数
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * 清空样本。
+     */
+    public synchronized void clear() {
+        position = 0;
+        size = 0;
+        totalCount = 0;
+    }
+
+    private synchronized long[] snapshot() {
+        return Arrays.copyOf(samples, size);
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + getTotalCount() + ", mean=" + Math.round(getMean()) + ", p50=" + getPercentile(50)
+                + ", p95=" + getPercentile(95) + ", p99=" + getPercentile(99) + ", max=" + getMax() + "}";
+    }
+}
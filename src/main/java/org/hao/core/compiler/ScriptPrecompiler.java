@@ -0,0 +1,337 @@
+package org.hao.core.compiler;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import org.hao.core.exception.HaoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动时在后台预编译脚本源码。
+ * <p>
+ * 首个用到动态规则的请求需要承担类路径加载（或依赖解压）与完整编译的开销。预编译器在应用启动时
+ * 扫描配置的目录或类路径前缀下的 {@code .java} 文件，通过 {@link CompilerService} 在后台并行编译，
+ * 全部完成后通过 {@link #getReady()} 发布就绪状态。
+ * </p>
+ * <p>
+ * 请求线程通过 {@link #awaitClass(String)} 或 {@link #compile(String)} 获取类：对应源码正在编译时等待同一个编译结果，
+ * 不会重复编译。直接调用 {@link CompilerUtil#compileAndLoadClass(String)} 编译相同源码时，
+ * 同样会合并到正在进行的预编译上。
+ * </p>
+ * <p>
+ * 扫描读取源码后先登记全部类名，再提交编译；扫描结束前调用 {@link #awaitClass(String)} 会等待扫描完成（见 {@link #getScanFuture()}），
+ * 不会因为类名尚未登记而返回 null。编译服务使用 {@link CompilerService.SaturationPolicy#BLOCK} 时，
+ * 提交在登记之外进行，队列已满时阻塞的只是提交线程，不会阻塞对同一类名的登记与查询。
+ * </p>
+ * 位置格式：
+ * <ul>
+ *     <li>{@code classpath:rules/}：扫描类路径（包括 JAR）中该前缀下的全部 {@code .java} 文件；</li>
+ *     <li>其余按文件系统目录处理，递归扫描其中的 {@code .java} 文件。</li>
+ * </ul>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class ScriptPrecompiler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ScriptPrecompiler.class);
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    private final CompilerService compilerService;
+
+    /**
+     * 类名 -> 该类当前（最近一次提交的源码）的编译结果
+     */
+    private final ConcurrentHashMap<String, Compilation> compilations = new ConcurrentHashMap<>();
+
+    /**
+     * 全部预编译任务完成（无论成功与否）时完成
+     */
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    /**
+     * 扫描完成（全部类名已登记）时完成，未调用 {@link #start(Collection)} 时视为已完成
+     */
+    private volatile CompletableFuture<Void> scanned = CompletableFuture.completedFuture(null);
+
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    private volatile int sourceCount;
+
+    /**
+     * 构造函数
+     *
+     * @param compilerService 执行编译的编译服务
+     */
+    public ScriptPrecompiler(CompilerService compilerService) {
+        this.compilerService = compilerService;
+    }
+
+    /**
+     * 在后台扫描并编译给定位置下的源码，立即返回。
+     *
+     * @param locations 目录或 {@code classpath:} 前缀
+     * @return 全部预编译任务完成时完成的 Future
+     */
+    public CompletableFuture<Void> start(Collection<String> locations) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<Void> scanning = new CompletableFuture<>();
+        scanned = scanning;
+        CompletableFuture.runAsync(() -> {
+            List<String> sources = scan(locations);
+            sourceCount = sources.size();
+            // 先登记全部类名，请求线程从此可以等待对应的编译结果
+            List<Compilation> registered = new ArrayList<>(sources.size());
+            for (String source : sources) {
+                try {
+                    registered.add(register(CompilerUtil.getClassNameByCode(source), source));
+                } catch (RuntimeException e) {
+                    // 无法解析类名等错误只影响当前源码
+                    failedCount.incrementAndGet();
+                    logger.warn("预编译源码失败: {}", e.getMessage());
+                }
+            }
+            scanning.complete(null);
+            // 提前加载类路径、建立文件管理器池，没有源码时也能消除首个请求的初始化开销
+            CompilerUtil.warmUp();
+            List<CompletableFuture<Class<?>>> futures = new ArrayList<>(registered.size());
+            for (Compilation compilation : registered) {
+                try {
+                    // 已被请求线程认领的编译由请求线程提交
+                    if (compilation.claim()) {
+                        submit(compilation);
+                    }
+                } catch (RuntimeException e) {
+                    failedCount.incrementAndGet();
+                    logger.warn("提交预编译 {} 失败: {}", compilation.className, e.getMessage());
+                }
+                futures.add(compilation.future);
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .whenComplete((v, e) -> {
+                        logger.info("脚本预编译完成，共 {} 个，失败 {} 个，耗时 {}ms",
+                                sourceCount, failedCount.get(), System.currentTimeMillis() - start);
+                        ready.complete(null);
+                    });
+        }, runnable -> {
+            Thread thread = new Thread(runnable, "hao-precompiler");
+            thread.setDaemon(true);
+            thread.start();
+        }).exceptionally(e -> {
+            logger.warn("脚本预编译失败: {}", e.getMessage());
+            scanning.complete(null);
+            ready.complete(null);
+            return null;
+        });
+        return ready;
+    }
+
+    /**
+     * 编译源码。同名类的相同源码正在编译或已编译时直接复用其结果，不会重复编译。
+     *
+     * @param javaCode Java 源码
+     * @return 编译结果
+     */
+    public CompletableFuture<Class<?>> compile(String javaCode) {
+        Compilation compilation = register(CompilerUtil.getClassNameByCode(javaCode), javaCode);
+        if (compilation.claim()) {
+            submit(compilation);
+        }
+        return compilation.future;
+    }
+
+    /**
+     * 获取预编译的类，类正在编译时等待其完成。
+     *
+     * @param className 类的全限定名
+     * @return 编译后的类，没有对应源码时返回 null
+     * @throws HaoException 编译失败时抛出
+     */
+    public Class<?> awaitClass(String className) {
+        Compilation compilation = compilations.get(className);
+        CompletableFuture<Void> scanning = scanned;
+        if (compilation == null && !scanning.isDone()) {
+            // 扫描尚未登记全部类名，等待扫描结束后再查找，避免调用方自行编译出重复的类
+            scanning.join();
+            compilation = compilations.get(className);
+        }
+        if (compilation == null) {
+            return null;
+        }
+        try {
+            return compilation.future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            throw cause instanceof HaoException ? (HaoException) cause : new HaoException("编译失败: " + className, cause);
+        }
+    }
+
+    /**
+     * 获取扫描状态，扫描到的源码全部登记类名后完成，此后 {@link #awaitClass(String)} 不再等待扫描。
+     *
+     * @return 扫描 Future
+     */
+    public CompletableFuture<Void> getScanFuture() {
+        return scanned;
+    }
+
+    /**
+     * 获取就绪状态，全部预编译任务完成时完成。
+     *
+     * @return 就绪 Future
+     */
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * 等待预编译完成。
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 在超时前完成返回 true
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            ready.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 获取扫描到的源码数量。
+     *
+     * @return 源码数量
+     */
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 获取已登记的类名。
+     *
+     * @return 类名集合
+     */
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(compilations.keySet());
+    }
+
+    @Override
+    public void close() {
+        compilerService.close();
+    }
+
+    /**
+     * 登记类名对应的编译。同名类的相同源码已登记且未失败时返回已有的编译，否则登记一个尚未提交的新编译。
+     * 登记只在 Map 中替换占位对象，不在 compute 内提交编译。
+     */
+    private Compilation register(String className, String javaCode) {
+        return compilations.compute(className, (name, current) -> {
+            if (current != null && current.source.equals(javaCode) && !current.future.isCompletedExceptionally()) {
+                return current;
+            }
+            return new Compilation(name, javaCode);
+        });
+    }
+
+    /**
+     * 向编译服务提交已认领的编译，编译结果转发到登记的 Future。提交被拒绝时登记的 Future 以同一异常结束
+     */
+    private void submit(Compilation compilation) {
+        CompletableFuture<Class<?>> future;
+        try {
+            future = compilerService.submitClass(compilation.source);
+        } catch (RuntimeException e) {
+            compilation.future.completeExceptionally(e);
+            throw e;
+        }
+        future.whenComplete((clazz, e) -> {
+            if (e != null) {
+                failedCount.incrementAndGet();
+                logger.warn("预编译 {} 失败: {}", compilation.className, e.getMessage());
+                compilation.future.completeExceptionally(e);
+            } else {
+                compilation.future.complete(clazz);
+            }
+        });
+    }
+
+    /**
+     * 读取全部位置下的 .java 源码，无法读取的位置记录警告后跳过
+     */
+    private static List<String> scan(Collection<String> locations) {
+        List<String> sources = new ArrayList<>();
+        for (String location : locations) {
+            if (StrUtil.isBlank(location)) {
+                continue;
+            }
+            try {
+                if (location.startsWith(CLASSPATH_PREFIX)) {
+                    String prefix = StrUtil.removeSuffix(StrUtil.removePrefix(location.substring(CLASSPATH_PREFIX.length()), "/"), "/");
+                    String pattern = "classpath*:" + (prefix.isEmpty() ? "" : prefix + "/") + "**/*.java";
+                    for (Resource resource : new PathMatchingResourcePatternResolver().getResources(pattern)) {
+                        try (InputStream in = resource.getInputStream()) {
+                            sources.add(IoUtil.read(in, StandardCharsets.UTF_8));
+                        }
+                    }
+                } else {
+                    for (File file : FileUtil.loopFiles(location, file -> file.getName().endsWith(".java"))) {
+                        sources.add(FileUtil.readUtf8String(file));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("扫描脚本源码失败 {}: {}", location, e.getMessage());
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * 某个类的一次编译
+     */
+    private static class Compilation {
+        private final String className;
+        private final String source;
+        private final CompletableFuture<Class<?>> future = new CompletableFuture<>();
+
+        /**
+         * 是否已有线程负责提交，登记后由第一个认领的线程提交
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Compilation(String className, String source) {
+            this.className = className;
+            this.source = source;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.hao.core.compiler;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 编译前的轻量源码分析，提取源码引用到的包名。
+ * <p>
+ * 只做词法层面的扫描（去掉注释与字符串后匹配 {@code package}、{@code import} 语句与代码中的全限定类名），
+ * 不构建语法树，开销远小于一次完整解析。结果用于从 {@link ClassPathIndex} 中挑选真正需要的 JAR，
+ * 被引用类的父类等间接依赖不会被识别，因此裁剪后的类路径编译失败时需要回退到完整类路径。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class SourceImportAnalyzer {
+
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("\\bpackage\\s+([\\w.]+)\\s*;");
+
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("\\bimport\\s+(?:static\\s+)?([\\w.]+)(\\s*\\.\\s*\\*)?\\s*;");
+
+    /**
+     * 代码中的全限定类名：若干小写开头的包名段，后接一个大写开头的类名段
+     */
+    private static final Pattern QUALIFIED_NAME_PATTERN = Pattern.compile("(?<![\\w.])((?:[a-z_$][\\w$]*\\.)+)[A-Z][\\w$]*");
+
+    private SourceImportAnalyzer() {
+    }
+
+    /**
+     * 提取一组源码引用到的包名，包括源码自身所在的包与 {@code java.lang}。
+     *
+     * @param sources Java 源码
+     * @return 包名集合
+     */
+    public static Set<String> referencedPackages(Collection<String> sources) {
+        Set<String> packages = new LinkedHashSet<>();
+        packages.add("java.lang");
+        for (String source : sources) {
+            collectPackages(stripCommentsAndLiterals(source), packages);
+        }
+        return packages;
+    }
+
+    private static void collectPackages(String code, Set<String> packages) {
+        Matcher matcher = PACKAGE_PATTERN.matcher(code);
+        if (matcher.find()) {
+            packages.add(matcher.group(1));
+        } else {
+            packages.add("");
+        }
+        matcher = IMPORT_PATTERN.matcher(code);
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            // import a.b.*; 中的 a.b 可能是包，也可能是类（导入其内部类）
+            packages.add(matcher.group(2) != null && !hasTypeSegment(name) ? name : packageOf(name));
+        }
+        matcher = QUALIFIED_NAME_PATTERN.matcher(code);
+        while (matcher.find()) {
+            String prefix = matcher.group(1);
+            packages.add(prefix.substring(0, prefix.length() - 1));
+        }
+    }
+
+    /**
+     * 取名称中第一个大写开头的段之前的部分作为包名，例如 {@code org.hao.core.StrUtil.format} 返回 {@code org.hao.core}
+     */
+    private static String packageOf(String name) {
+        String[] segments = name.split("\\.");
+        StringBuilder builder = new StringBuilder();
+        for (String segment : segments) {
+            if (!segment.isEmpty() && Character.isUpperCase(segment.charAt(0))) {
+                break;
+            }
+            if (builder.length() > 0) {
+                builder.append('.');
+            }
+            builder.append(segment);
+        }
+        return builder.length() == 0 ? name : builder.toString();
+    }
+
+    private static boolean hasTypeSegment(String name) {
+        for (String segment : name.split("\\.")) {
+            if (!segment.isEmpty() && Character.isUpperCase(segment.charAt(0))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 用空格替换注释、字符串与字符字面量，避免其中的内容被误认为类名
+     */
+    static String stripCommentsAndLiterals(String source) {
+        StringBuilder builder = new StringBuilder(source.length());
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i);
+            char next = i + 1 < length ? source.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                while (i < length && source.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && next == '*') {
+                int end = source.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                builder.append(' ');
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < length && source.charAt(i) != c) {
+                    if (source.charAt(i) == '\\') {
+                        i++;
+                    }
+                    i++;
+                }
+                i++;
+                builder.append(' ');
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,609 @@
+package org.hao.core.expression;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把表达式中的纯算术子集翻译为 Java 源码。
+ * <p>
+ * 支持的语法：数字字面量、变量、{@code + - * / %}、一元正负号、括号，以及参数与返回值均为
+ * {@code double/int/long} 的静态全局函数调用（如 {@link ExpressionBuiltInFunc#power(double, double)}）。
+ * 变量优先使用调用方预先绑定的槽位，其余按首次出现的顺序追加，全部运算以 double 进行。
+ * 出现其他语法（比较、逻辑、字符串、属性访问、赋值等）时 {@link #parse} 返回 null，由调用方回退到 MVEL。
+ * </p>
+ * <p>
+ * 解析时对语法树做编译期优化：操作数全为常量的运算与纯函数调用（内置函数与 {@link Math}，{@code random} 除外）
+ * 在编译期折叠为常量；生成代码时，重复出现的非平凡子表达式只计算一次，保存在局部变量中复用。
+ * 优化不改变结果：折叠与运行时同样以 double 计算，含非纯函数的子表达式不折叠也不合并。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+final class ArithmeticCodeGenerator {
+
+    private final String expression;
+
+    private final Map<String, Method> functions;
+
+    private final Set<String> reservedNames;
+
+    /**
+     * 变量名 -&gt; 槽位
+     */
+    private final Map<String, Integer> slots = new LinkedHashMap<>();
+
+    /**
+     * 表达式实际引用的变量，不含只是预先绑定的变量
+     */
+    private final Set<String> referencedVariables = new LinkedHashSet<>();
+
+    /**
+     * 表达式调用的函数
+     */
+    private final Set<String> calledFunctions = new LinkedHashSet<>();
+
+    private int pos;
+
+    private Node root;
+
+    private int foldedConstants;
+
+    private ArithmeticCodeGenerator(String expression, Map<String, Method> functions, Set<String> reservedNames) {
+        this.expression = expression;
+        this.functions = functions;
+        this.reservedNames = reservedNames;
+    }
+
+    /**
+     * 解析并优化表达式。
+     *
+     * @param expression    表达式
+     * @param functions     可调用的全局函数
+     * @param reservedNames 不能作为数值变量的名称（例如全局变量）
+     * @param boundSlots    预先绑定的变量，下标即槽位，可为空
+     * @return 解析结果，表达式超出算术子集时返回 null
+     */
+    static ArithmeticCodeGenerator parse(String expression, Map<String, Method> functions, Set<String> reservedNames,
+                                         String... boundSlots) {
+        ArithmeticCodeGenerator generator = new ArithmeticCodeGenerator(expression, functions, reservedNames);
+        try {
+            for (String name : boundSlots) {
+                generator.slot(name);
+            }
+            generator.root = generator.parseExpression();
+            generator.skipWhitespace();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return generator.pos == expression.length() ? generator : null;
+    }
+
+    /**
+     * 生成实现 {@link NumericEvaluator} 的类的源码。
+     *
+     * @param className 生成类的全限定名
+     * @return 源码
+     */
+    String generateSource(String className) {
+        int dot = className.lastIndexOf('.');
+        // 列在循环外取到局部变量，循环体只有数组读写与算术，便于 JIT 消除边界检查并展开
+        StringBuilder columns = new StringBuilder();
+        for (int i = 0; i < slots.size(); i++) {
+            columns.append("        double[] c").append(i).append(" = columns[").append(i).append("];\n");
+        }
+        return "package " + className.substring(0, dot) + ";\n\n"
+                + "public final class " + className.substring(dot + 1) + " implements " + NumericEvaluator.class.getName() + " {\n"
+                + "    @Override\n"
+                + "    public double evaluate(double[] s) {\n"
+                + new Emitter("s[%d]").emit("        return ", "        ")
+                + "    }\n\n"
+                + "    @Override\n"
+                + "    public double evaluate(long[] s) {\n"
+                // long 槽位先转换为 double，避免整数除法与溢出改变语义
+                + new Emitter("((double) s[%d])").emit("        return ", "        ")
+                + "    }\n\n"
+                + "    @Override\n"
+                + "    public void evaluate(double[][] columns, double[] out, int from, int to) {\n"
+                + columns
+                + "        for (int i = from; i < to; i++) {\n"
+                + new Emitter("c%d[i]").emit("            out[i] = ", "            ")
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    /**
+     * 获取变量，下标即槽位
+     */
+    String[] getVariables() {
+        return slots.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * 获取表达式实际引用的变量，按首次出现的顺序
+     */
+    Set<String> getReferencedVariables() {
+        return referencedVariables;
+    }
+
+    /**
+     * 获取表达式调用的函数，包括被折叠的调用
+     */
+    Set<String> getFunctions() {
+        return calledFunctions;
+    }
+
+    /**
+     * 获取编译期折叠的运算与函数调用次数
+     */
+    int getFoldedConstants() {
+        return foldedConstants;
+    }
+
+    /**
+     * 获取公共子表达式消除省去的计算次数
+     */
+    int getEliminatedSubexpressions() {
+        Map<String, Integer> counts = new HashMap<>();
+        countSubexpressions(root, counts);
+        int eliminated = 0;
+        for (int count : counts.values()) {
+            eliminated += count - 1;
+        }
+        return eliminated;
+    }
+
+    /**
+     * 整个表达式是否折叠为常量
+     */
+    boolean isConstant() {
+        return root.kind == Kind.NUMBER;
+    }
+
+    double getConstantValue() {
+        return root.value;
+    }
+
+    /**
+     * 获取优化后的表达式
+     */
+    String getOptimizedExpression() {
+        return render(root, true);
+    }
+
+    /**
+     * expr := term (('+' | '-') term)*
+     */
+    private Node parseExpression() {
+        Node left = parseTerm();
+        while (true) {
+            char op = peek();
+            if (op != '+' && op != '-') {
+                return left;
+            }
+            pos++;
+            left = binary(op, left, parseTerm());
+        }
+    }
+
+    /**
+     * term := unary (('*' | '/' | '%') unary)*
+     */
+    private Node parseTerm() {
+        Node left = parseUnary();
+        while (true) {
+            char op = peek();
+            if (op != '*' && op != '/' && op != '%') {
+                return left;
+            }
+            pos++;
+            // ** 等 MVEL 特有的运算符不在子集内
+            if (peek() == '*') {
+                throw new IllegalArgumentException("unsupported operator");
+            }
+            left = binary(op, left, parseUnary());
+        }
+    }
+
+    /**
+     * unary := ('+' | '-') unary | primary
+     */
+    private Node parseUnary() {
+        char c = peek();
+        if (c == '+') {
+            pos++;
+            return parseUnary();
+        }
+        if (c == '-') {
+            pos++;
+            Node operand = parseUnary();
+            if (operand.kind == Kind.NUMBER) {
+                return Node.number(-operand.value);
+            }
+            return new Node(Kind.NEGATE, '-', 0, null, null, operand);
+        }
+        return parsePrimary();
+    }
+
+    /**
+     * primary := number | identifier '(' args ')' | identifier | '(' expr ')'
+     */
+    private Node parsePrimary() {
+        char c = peek();
+        if (c == '(') {
+            pos++;
+            Node inner = parseExpression();
+            expect(')');
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+            String name = parseIdentifier();
+            if (peek() == '(') {
+                pos++;
+                return parseCall(name);
+            }
+            referencedVariables.add(name);
+            return new Node(Kind.VARIABLE, '\0', slot(name), name, null);
+        }
+        throw new IllegalArgumentException("unexpected character at " + pos);
+    }
+
+    private Node parseNumber() {
+        int start = pos;
+        while (pos < expression.length() && (Character.isDigit(expression.charAt(pos)) || expression.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (pos < expression.length() && (expression.charAt(pos) == 'e' || expression.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < expression.length() && (expression.charAt(pos) == '+' || expression.charAt(pos) == '-')) {
+                pos++;
+            }
+            while (pos < expression.length() && Character.isDigit(expression.charAt(pos))) {
+                pos++;
+            }
+        }
+        // 数字后紧跟字母（类型后缀、十六进制等）不在子集内
+        if (pos < expression.length() && Character.isJavaIdentifierPart(expression.charAt(pos))) {
+            throw new IllegalArgumentException("unsupported literal");
+        }
+        return Node.number(Double.parseDouble(expression.substring(start, pos)));
+    }
+
+    private String parseIdentifier() {
+        int start = pos;
+        pos++;
+        while (pos < expression.length() && Character.isJavaIdentifierPart(expression.charAt(pos))) {
+            pos++;
+        }
+        return expression.substring(start, pos);
+    }
+
+    private Node parseCall(String name) {
+        Method method = functions.get(name);
+        if (method == null || !Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(method.getModifiers())
+                || !isNumeric(method.getReturnType())) {
+            throw new IllegalArgumentException("unsupported function " + name);
+        }
+        List<Node> args = new ArrayList<>();
+        if (peek() != ')') {
+            do {
+                args.add(parseExpression());
+            } while (accept(','));
+        }
+        expect(')');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length != args.size()) {
+            throw new IllegalArgumentException("argument count mismatch " + name);
+        }
+        for (Class<?> parameterType : parameterTypes) {
+            if (!isNumeric(parameterType)) {
+                throw new IllegalArgumentException("unsupported parameter " + name);
+            }
+        }
+        calledFunctions.add(name);
+        Node call = new Node(Kind.CALL, '\0', 0, name, method, args.toArray(new Node[0]));
+        if (!call.pure) {
+            return call;
+        }
+        for (Node arg : args) {
+            if (arg.kind != Kind.NUMBER) {
+                return call;
+            }
+        }
+        try {
+            Object[] values = new Object[args.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = narrow(args.get(i).value, parameterTypes[i]);
+            }
+            double value = ((Number) method.invoke(null, values)).doubleValue();
+            foldedConstants++;
+            return Node.number(value);
+        } catch (ReflectiveOperationException e) {
+            // 折叠失败时保留调用，由运行时给出相同的行为
+            return call;
+        }
+    }
+
+    private Node binary(char op, Node left, Node right) {
+        if (left.kind == Kind.NUMBER && right.kind == Kind.NUMBER) {
+            foldedConstants++;
+            switch (op) {
+                case '+':
+                    return Node.number(left.value + right.value);
+                case '-':
+                    return Node.number(left.value - right.value);
+                case '*':
+                    return Node.number(left.value * right.value);
+                case '/':
+                    return Node.number(left.value / right.value);
+                default:
+                    return Node.number(left.value % right.value);
+            }
+        }
+        return new Node(Kind.BINARY, op, 0, null, null, left, right);
+    }
+
+    private int slot(String name) {
+        if (reservedNames.contains(name) || "true".equals(name) || "false".equals(name) || "null".equals(name)) {
+            throw new IllegalArgumentException("unsupported identifier " + name);
+        }
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = slots.size();
+            slots.put(name, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * 统计可合并的子表达式出现的次数，重复出现的子表达式内部不再重复统计
+     */
+    private static void countSubexpressions(Node node, Map<String, Integer> counts) {
+        if (node.isShareable()) {
+            Integer count = counts.get(node.key);
+            counts.put(node.key, count == null ? 1 : count + 1);
+            if (count != null) {
+                return;
+            }
+        }
+        for (Node child : node.children) {
+            countSubexpressions(child, counts);
+        }
+    }
+
+    private static String render(Node node, boolean top) {
+        switch (node.kind) {
+            case NUMBER:
+                return node.value < 0 || isNegativeZero(node.value) ? "(" + node.value + ")" : String.valueOf(node.value);
+            case VARIABLE:
+                return node.name;
+            case NEGATE:
+                return top ? "-" + render(node.children[0], false) : "(-" + render(node.children[0], false) + ")";
+            case CALL:
+                StringBuilder call = new StringBuilder(node.name).append('(');
+                for (int i = 0; i < node.children.length; i++) {
+                    call.append(i > 0 ? ", " : "").append(render(node.children[i], true));
+                }
+                return call.append(')').toString();
+            default:
+                String binary = render(node.children[0], false) + " " + node.op + " " + render(node.children[1], false);
+                return top ? binary : "(" + binary + ")";
+        }
+    }
+
+    private static String literal(double value) {
+        if (Double.isNaN(value)) {
+            return "java.lang.Double.NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "java.lang.Double.POSITIVE_INFINITY" : "java.lang.Double.NEGATIVE_INFINITY";
+        }
+        return value < 0 || isNegativeZero(value) ? "(" + value + ")" : Double.toString(value);
+    }
+
+    private static boolean isNegativeZero(double value) {
+        return Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(-0D);
+    }
+
+    /**
+     * 按参数类型截断，与生成代码中的类型转换一致
+     */
+    private static Object narrow(double value, Class<?> type) {
+        if (type == int.class) {
+            return (int) value;
+        }
+        if (type == long.class) {
+            return (long) value;
+        }
+        return value;
+    }
+
+    private static boolean isNumeric(Class<?> type) {
+        return type == double.class || type == int.class || type == long.class;
+    }
+
+    /**
+     * 纯函数：相同参数总是返回相同结果且没有副作用，可以在编译期折叠，也可以合并重复调用
+     */
+    private static boolean isPure(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        return (declaringClass == ExpressionBuiltInFunc.class || declaringClass == Math.class || declaringClass == StrictMath.class)
+                && !"random".equals(method.getName());
+    }
+
+    private char peek() {
+        skipWhitespace();
+        return pos < expression.length() ? expression.charAt(pos) : '\0';
+    }
+
+    private boolean accept(char c) {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) {
+            throw new IllegalArgumentException("expected " + c + " at " + pos);
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private enum Kind {
+        NUMBER, VARIABLE, NEGATE, BINARY, CALL
+    }
+
+    /**
+     * 语法树节点
+     */
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        final Kind kind;
+        final char op;
+        final double value;
+        final int slot;
+        final String name;
+        final Method method;
+        final Node[] children;
+        /**
+         * 子树中没有非纯函数
+         */
+        final boolean pure;
+        /**
+         * 结构相同的子树具有相同的 key，用于识别公共子表达式
+         */
+        final String key;
+
+        Node(Kind kind, char op, int slot, String name, Method method, Node... children) {
+            this(kind, op, 0, slot, name, method, children);
+        }
+
+        private Node(Kind kind, char op, double value, int slot, String name, Method method, Node[] children) {
+            this.kind = kind;
+            this.op = op;
+            this.value = value;
+            this.slot = slot;
+            this.name = name;
+            this.method = method;
+            this.children = children == null ? NO_CHILDREN : children;
+            boolean pure = method == null || isPure(method);
+            StringBuilder key = new StringBuilder();
+            if (kind == Kind.NUMBER) {
+                key.append(Double.doubleToRawLongBits(value)).append('d');
+            } else if (kind == Kind.VARIABLE) {
+                key.append('$').append(slot);
+            } else {
+                key.append(kind == Kind.CALL ? name : String.valueOf(op)).append('(');
+                for (Node child : this.children) {
+                    pure &= child.pure;
+                    key.append(child.key).append(',');
+                }
+                key.append(')');
+            }
+            this.pure = pure;
+            this.key = key.toString();
+        }
+
+        static Node number(double value) {
+            return new Node(Kind.NUMBER, '\0', value, 0, null, null, null);
+        }
+
+        /**
+         * 可以合并的子表达式：含运算且没有非纯函数
+         */
+        boolean isShareable() {
+            return pure && kind != Kind.NUMBER && kind != Kind.VARIABLE;
+        }
+    }
+
+    /**
+     * 以给定的变量写法生成方法体，重复的子表达式提取为局部变量
+     */
+    private final class Emitter {
+        private final String slotFormat;
+        private final Map<String, Integer> counts = new HashMap<>();
+        private final Map<String, String> locals = new HashMap<>();
+        private final StringBuilder statements = new StringBuilder();
+        private String indent;
+
+        Emitter(String slotFormat) {
+            this.slotFormat = slotFormat;
+            countSubexpressions(root, counts);
+        }
+
+        /**
+         * 生成方法体
+         *
+         * @param resultPrefix 结果语句的前缀，如 {@code return }
+         * @param indent       语句的缩进
+         * @return 方法体
+         */
+        String emit(String resultPrefix, String indent) {
+            this.indent = indent;
+            String result = code(root);
+            return statements + resultPrefix + result + ";\n";
+        }
+
+        private String code(Node node) {
+            String local = locals.get(node.key);
+            if (local != null) {
+                return local;
+            }
+            String code;
+            switch (node.kind) {
+                case NUMBER:
+                    return literal(node.value);
+                case VARIABLE:
+                    return String.format(slotFormat, node.slot);
+                case NEGATE:
+                    // 与操作数之间加空格，避免生成 "--"
+                    code = "(- " + code(node.children[0]) + ")";
+                    break;
+                case CALL:
+                    StringBuilder call = new StringBuilder("(double) ")
+                            .append(node.method.getDeclaringClass().getName().replace('$', '.'))
+                            .append('.').append(node.method.getName()).append('(');
+                    Class<?>[] parameterTypes = node.method.getParameterTypes();
+                    for (int i = 0; i < parameterTypes.length; i++) {
+                        if (i > 0) {
+                            call.append(", ");
+                        }
+                        // 参数为 int/long 时按 MVEL 的类型转换截断
+                        call.append(parameterTypes[i] == double.class ? "" : "(" + parameterTypes[i].getName() + ") ")
+                                .append(code(node.children[i]));
+                    }
+                    code = call.append(')').toString();
+                    break;
+                default:
+                    code = "(" + code(node.children[0]) + " " + node.op + " " + code(node.children[1]) + ")";
+            }
+            Integer count = counts.get(node.key);
+            if (node.isShareable() && count != null && count > 1) {
+                local = "t" + locals.size();
+                statements.append(indent).append("double ").append(local).append(" = ").append(code).append(";\n");
+                locals.put(node.key, local);
+                return local;
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.hao.core.expression;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 表达式的静态分析结果，通过 {@link ExpressionUtil#analyze(String)} 获取。
+ * <p>
+ * 报告表达式引用的变量与全局函数，调用方可以据此只查询表达式需要的数据。
+ * 属于纯算术子集的表达式还会报告编译期优化的结果：折叠的常量运算、消除的公共子表达式以及优化后的表达式。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class ExpressionAnalysis {
+
+    private final String expression;
+
+    private final List<String> variables;
+
+    private final List<String> functions;
+
+    private final boolean arithmetic;
+
+    private final String optimizedExpression;
+
+    private final int foldedConstants;
+
+    private final int eliminatedSubexpressions;
+
+    private final Double constantValue;
+
+    ExpressionAnalysis(String expression, List<String> variables, List<String> functions, boolean arithmetic,
+                       String optimizedExpression, int foldedConstants, int eliminatedSubexpressions, Double constantValue) {
+        this.expression = expression;
+        this.variables = Collections.unmodifiableList(variables);
+        this.functions = Collections.unmodifiableList(functions);
+        this.arithmetic = arithmetic;
+        this.optimizedExpression = optimizedExpression;
+        this.foldedConstants = foldedConstants;
+        this.eliminatedSubexpressions = eliminatedSubexpressions;
+        this.constantValue = constantValue;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 获取表达式引用的外部变量，不含全局变量与表达式内部赋值产生的变量
+     *
+     * @return 变量名，按首次出现的顺序
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * 获取表达式调用的全局函数，包括在编译期被折叠的调用
+     *
+     * @return 函数名，按首次出现的顺序
+     */
+    public List<String> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * 是否属于纯算术子集，可以由 {@link ExpressionUtil#compileNumeric(String)} 编译为字节码
+     */
+    public boolean isArithmetic() {
+        return arithmetic;
+    }
+
+    /**
+     * 获取折叠常量后的等价表达式，不属于算术子集时返回 null。重复子表达式在生成的代码中合并，不体现在表达式文本中
+     */
+    public String getOptimizedExpression() {
+        return optimizedExpression;
+    }
+
+    /**
+     * 获取在编译期折叠为常量的运算与函数调用次数
+     */
+    public int getFoldedConstants() {
+        return foldedConstants;
+    }
+
+    /**
+     * 获取公共子表达式消除后每次求值省去的计算次数
+     */
+    public int getEliminatedSubexpressions() {
+        return eliminatedSubexpressions;
+    }
+
+    /**
+     * 整个表达式是否折叠为常量
+     */
+    public boolean isConstant() {
+        return constantValue != null;
+    }
+
+    /**
+     * 获取常量值，表达式不是常量时返回 null
+     */
+    public Double getConstantValue() {
+        return constantValue;
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionAnalysis{expression=" + expression + ", variables=" + variables + ", functions=" + functions
+                + ", arithmetic=" + arithmetic
+                + (arithmetic ? ", optimized=" + optimizedExpression + ", folded=" + foldedConstants
+                + ", eliminated=" + eliminatedSubexpressions : "") + '}';
+    }
+}
@@ -5,10 +5,14 @@ import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import org.hao.core.FileUtils;
+import org.hao.core.cache.LocalLruCacheHolder;
+import org.hao.core.compiler.CompilerUtil;
 import org.hao.core.exception.ExceptionUtils;
 import org.hao.core.Maps;
 import org.mvel2.MVEL;
+import org.mvel2.ParserConfiguration;
 import org.mvel2.ParserContext;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.integration.impl.MapVariableResolverFactory;
@@ -17,9 +21,22 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -40,6 +57,24 @@ public class ExpressionUtil {
     private static final Map<String, Method> builtInFunc = initBuiltInFuncMap();
     // 变量解析工厂
     private static final Map<String, Object> variableResolverFactory = initVariableResolverFactory();
+    // 全局变量的只读快照，求值时作为最底层的变量层共享，注册新的全局变量后替换
+    private static volatile Map<String, Object> globalVariables = Collections.unmodifiableMap(new HashMap<>(variableResolverFactory));
+    // 编译结果缓存的默认容量
+    private static final int DEFAULT_EXPRESSION_CACHE_CAPACITY = 1024;
+    // 全局函数与变量的版本号，注册新的全局函数或变量时递增，旧版本下编译的表达式不再命中
+    private static final AtomicLong globalVersion = new AtomicLong();
+    // 共享的内置函数解析配置，与全局版本绑定，注册新的全局函数后重建
+    private static volatile BuiltInImports builtInImports;
+    // 数值表达式缓存的默认容量
+    private static final int DEFAULT_NUMERIC_CACHE_CAPACITY = 256;
+    // 编译为字节码的数值表达式所在的包
+    private static final String NUMERIC_PACKAGE = "org.hao.core.expression.generated";
+    // 已编译的数值表达式缓存，Key 为 (表达式, null, 全局版本)
+    private static final LocalLruCacheHolder<ExpressionKey, NumericExpression> numericExpressionCache = new LocalLruCacheHolder<>(DEFAULT_NUMERIC_CACHE_CAPACITY);
+    // 批量执行时每个任务至少处理的行数
+    private static final int BATCH_MIN_CHUNK = 256;
+    // 已编译表达式缓存，Key 为 (表达式, 解析上下文, 全局版本)
+    private static final LocalLruCacheHolder<ExpressionKey, Serializable> compiledExpressionCache = new LocalLruCacheHolder<>(DEFAULT_EXPRESSION_CACHE_CAPACITY);
 
     /**
      * 获取变量解析工厂的副本
@@ -50,6 +85,32 @@ public class ExpressionUtil {
         return new HashMap<>(variableResolverFactory);
     }
 
+    /**
+     * 创建以全局变量为底层的分层变量解析工厂，调用方变量与全局变量都不复制
+     *
+     * @param vars 本次调用的变量，可为 null，不会被修改
+     * @return 变量解析工厂
+     */
+    public static LayeredVariableResolverFactory createVariableResolverFactory(Map<String, Object> vars) {
+        return new LayeredVariableResolverFactory(globalVariables, vars);
+    }
+
+    /**
+     * 获取已编译表达式缓存，可用于查看命中率、未命中与淘汰次数
+     *
+     * @return 已编译表达式缓存
+     */
+    public static LocalLruCacheHolder<?, Serializable> getCompiledExpressionCache() {
+        return compiledExpressionCache;
+    }
+
+    /**
+     * 清空已编译表达式缓存，修改了按上下文缓存（cacheByContext）的解析上下文后需要调用
+     */
+    public static void clearCompiledExpressionCache() {
+        compiledExpressionCache.clear();
+    }
+
     /**
      * 获取内置函数的副本
      *
@@ -92,28 +153,33 @@ public class ExpressionUtil {
      */
     private static Map<String, Method> initBuiltInFuncMap() {
         Method[] methods = ReflectUtil.getMethodsDirectly(ExpressionBuiltInFunc.class, false, false);
-        return Maps.asMap(Arrays.stream(methods).map(method -> Maps.put(method.getName(), method)).collect(Collectors.toList()), Method.class);
+        // 运行期可能注册新的全局函数，同时被其他线程遍历构建解析配置，使用并发 Map
+        return new ConcurrentHashMap<>(Maps.asMap(Arrays.stream(methods).map(method -> Maps.put(method.getName(), method)).collect(Collectors.toList()), Method.class));
     }
 
     /**
-     * 构建表达式
+     * 评估表达式，规则模板中的函数可直接调用。
+     * <p>
+     * 规则模板只编译一次并提取出函数表，表达式单独编译并缓存，求值时以函数表作为最底层的变量层，
+     * 不再为每次求值重新解析整个模板。传入的变量不会被修改。
+     * </p>
      *
-     * @param expression 原始表达式
-     * @return 将规则模板和表达式合并后的结果
+     * @param expression 表达式
+     * @param vars       变量，可为 null
+     * @return 评估结果
      */
-    private static String buildExpression(String expression) {
-        return rulesTemplate + "\n " + expression;
+    public static Object eval(String expression, Map<String, Object> vars) {
+        Serializable compiled = compileCached(expression, RulesTemplate.CONTEXT_KEY, ParserContext::new);
+        return MVEL.executeExpression(compiled, new LayeredVariableResolverFactory(RulesTemplate.FUNCTIONS, vars));
     }
 
     /**
-     * 评估表达式
+     * 获取规则模板中定义的函数表，函数名到 MVEL 函数对象的只读映射
      *
-     * @param expression 表达式
-     * @param vars       变量
-     * @return 评估结果
+     * @return 规则模板函数表
      */
-    public static Object eval(String expression, Map<String, Object> vars) {
-        return MVEL.eval(buildExpression(expression), vars);
+    public static Map<String, Object> getRulesTemplateFunctions() {
+        return RulesTemplate.FUNCTIONS;
     }
 
     /**
@@ -124,11 +190,14 @@ public class ExpressionUtil {
      * @return 评估结果
      */
     public static Object eval(String expression, VariableResolverFactory resolverFactory) {
-        return MVEL.eval(buildExpression(expression), resolverFactory);
+        // 模板函数定义在调用方的工厂中（与拼接模板时一致），执行已编译的模板只是登记函数对象，不再解析
+        MVEL.executeExpression(RulesTemplate.COMPILED, resolverFactory);
+        Serializable compiled = compileCached(expression, RulesTemplate.CONTEXT_KEY, ParserContext::new);
+        return MVEL.executeExpression(compiled, resolverFactory);
     }
 
     /**
-     * 构建解析上下文
+     * 构建解析上下文，每次返回独立的上下文，调用方可以继续添加自己的导入
      *
      * @return 解析上下文
      */
@@ -139,6 +208,48 @@ public class ExpressionUtil {
         return parserContext;
     }
 
+    /**
+     * 获取预先构建的内置函数导入，只在首次使用或注册新的全局函数后构建一次。
+     *
+     * @return 导入名 -&gt; 导入对象的只读映射
+     */
+    public static Map<String, Object> getBuiltInImports() {
+        long version = globalVersion.get();
+        BuiltInImports imports = builtInImports;
+        if (imports == null || imports.version != version) {
+            // 并发重建时各自构建，内容相同，最后写入的生效
+            imports = new BuiltInImports(version, Collections.unmodifiableMap(
+                    new HashMap<>(buildParserContext().getParserConfiguration().getImports())));
+            builtInImports = imports;
+        }
+        return imports.imports;
+    }
+
+    /**
+     * 基于预先构建的内置函数导入创建解析配置。
+     * <p>
+     * {@link ParserContext#addImport} 会写入所属的 {@link ParserConfiguration}，表达式中的 {@code import} 语句也会在编译时写入，
+     * 因此每次编译使用独立的配置，避免多线程同时修改同一个导入表，也避免导入泄漏到之后的编译。
+     * 新配置只复制导入映射，不再为每次调用重新反射导入全部内置函数。
+     * </p>
+     *
+     * @return 新的解析配置
+     */
+    public static ParserConfiguration createParserConfiguration() {
+        ParserConfiguration configuration = new ParserConfiguration();
+        configuration.addAllImports(getBuiltInImports());
+        return configuration;
+    }
+
+    /**
+     * 基于预先构建的内置函数导入创建解析上下文，开销只有一次导入映射的复制。
+     *
+     * @return 新的解析上下文
+     */
+    public static ParserContext createSharedParserContext() {
+        return new ParserContext(createParserConfiguration());
+    }
+
     /**
      * 执行表达式
      *
@@ -147,7 +258,7 @@ public class ExpressionUtil {
      * @return 执行结果
      */
     public static Object executeExpression(String expression, ParserContext parserContext) {
-        return executeExpression(expression, parserContext, getVariableResolverFactory());
+        return executeExpression(expression, parserContext, (Map<String, Object>) null);
     }
 
     /**
@@ -157,7 +268,7 @@ public class ExpressionUtil {
      * @return 执行结果
      */
     public static Object executeExpression(String expression) {
-        return executeExpression(expression, buildParserContext(), getVariableResolverFactory());
+        return executeExpression(expression, null, (Map<String, Object>) null);
     }
 
     /**
@@ -168,8 +279,7 @@ public class ExpressionUtil {
      * @return 执行结果
      */
     public static Object executeExpression(String expression, Map<String, Object> vars) {
-        vars.putAll(getVariableResolverFactory());
-        return executeExpression(expression, buildParserContext(), vars);
+        return executeExpression(expression, null, vars);
     }
 
     /**
@@ -180,47 +290,334 @@ public class ExpressionUtil {
      * @return 执行结果
      */
     public static Object executeExpression(String expression, VariableResolverFactory resolverFactory) {
-        return executeExpression(expression, buildParserContext(), resolverFactory);
+        return executeExpression(expression, null, resolverFactory);
     }
 
     /**
      * 执行表达式
      *
      * @param expression    表达式
-     * @param parserContext 解析上下文
-     * @param vars          变量
+     * @param parserContext 解析上下文，为 null 时使用包含内置函数的解析上下文
+     * @param vars          变量，与全局变量分层解析，不会被修改，可为 null
      * @return 执行结果
      */
     public static Object executeExpression(String expression, ParserContext parserContext, Map<String, Object> vars) {
-        if (vars == null) {
-            vars = getVariableResolverFactory();
-        } else {
-            vars.putAll(getVariableResolverFactory());
-        }
-        Serializable serializable = MVEL.compileExpression(expression, parserContext);
-        Object result = MVEL.executeExpression(serializable, parserContext, vars);
-        for (String key : getVariableResolverFactory().keySet()) {
-            vars.remove(key);
-        }
-        return result;
+        Serializable serializable = compileExpression(expression, parserContext);
+        return MVEL.executeExpression(serializable, parserContext, createVariableResolverFactory(vars));
     }
 
     /**
      * 执行表达式
      *
      * @param expression      表达式
-     * @param parserContext   解析上下文
+     * @param parserContext   解析上下文，为 null 时使用包含内置函数的解析上下文
      * @param resolverFactory 变量解析工厂
      * @return 执行结果
      */
     public static Object executeExpression(String expression, ParserContext parserContext, VariableResolverFactory resolverFactory) {
         if (resolverFactory == null) {
-            resolverFactory = new MapVariableResolverFactory(getVariableResolverFactory());
+            resolverFactory = createVariableResolverFactory(null);
         }
-        Serializable serializable = MVEL.compileExpression(expression, parserContext);
+        Serializable serializable = compileExpression(expression, parserContext);
         return MVEL.executeExpression(serializable, parserContext, resolverFactory);
     }
 
+    /**
+     * 批量执行表达式：表达式只编译一次，在公共 ForkJoin 线程池中并行求值，结果顺序与输入一致
+     *
+     * @param expression 表达式
+     * @param rows       每行的变量，不会被修改
+     * @return 与输入顺序一致的执行结果
+     */
+    public static List<Object> executeBatch(String expression, List<? extends Map<String, Object>> rows) {
+        return executeBatch(expression, rows, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 批量执行表达式，使用指定并行度的临时线程池，执行完成后关闭
+     *
+     * @param expression  表达式
+     * @param rows        每行的变量，不会被修改
+     * @param parallelism 并行度，小于等于 1 时在当前线程顺序执行
+     * @return 与输入顺序一致的执行结果
+     */
+    public static List<Object> executeBatch(String expression, List<? extends Map<String, Object>> rows, int parallelism) {
+        if (parallelism <= 1) {
+            Object[] results = new Object[rows.size()];
+            new BatchTask(compileExpression(expression, null), rows, results, 0, rows.size(), Integer.MAX_VALUE).compute();
+            return Arrays.asList(results);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return executeBatch(expression, rows, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 批量执行表达式，在指定的 ForkJoin 线程池中并行求值
+     *
+     * @param expression 表达式
+     * @param rows       每行的变量，不会被修改
+     * @param pool       执行求值的线程池
+     * @return 与输入顺序一致的执行结果
+     */
+    public static List<Object> executeBatch(String expression, List<? extends Map<String, Object>> rows, ForkJoinPool pool) {
+        if (!(rows instanceof RandomAccess)) {
+            // 分段任务按下标读取，链表等结构先复制为数组列表
+            rows = new ArrayList<>(rows);
+        }
+        Serializable compiled = compileExpression(expression, null);
+        Object[] results = new Object[rows.size()];
+        // 每个线程大约分到 4 段，兼顾负载均衡与任务拆分开销
+        int threshold = Math.max(BATCH_MIN_CHUNK, rows.size() / (pool.getParallelism() * 4));
+        pool.invoke(new BatchTask(compiled, rows, results, 0, rows.size(), threshold));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 批量执行表达式，逐行读取迭代器中的变量后并行求值，适用于流式读取的数据
+     *
+     * @param expression 表达式
+     * @param rows       每行的变量，不会被修改
+     * @param pool       执行求值的线程池
+     * @return 与迭代顺序一致的执行结果
+     */
+    public static List<Object> executeBatch(String expression, Iterator<? extends Map<String, Object>> rows, ForkJoinPool pool) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        rows.forEachRemaining(list::add);
+        return executeBatch(expression, list, pool);
+    }
+
+    /**
+     * 编译表达式。使用包含内置函数的解析上下文（parserContext 为 null）时，相同的表达式在相同的全局版本下只编译一次；
+     * 调用方传入的解析上下文不缓存，每次重新编译
+     *
+     * @param expression    表达式
+     * @param parserContext 解析上下文，为 null 时使用包含内置函数的解析上下文
+     * @return 编译后的表达式
+     */
+    public static Serializable compileExpression(String expression, ParserContext parserContext) {
+        return compileExpression(expression, parserContext, false);
+    }
+
+    /**
+     * 编译表达式，可选择按调用方的解析上下文缓存编译结果
+     *
+     * @param expression     表达式
+     * @param parserContext  解析上下文，为 null 时使用包含内置函数的解析上下文并始终缓存
+     * @param cacheByContext 为 true 时按 (表达式, 解析上下文引用, 全局版本) 缓存；仅适用于长期复用的同一个解析上下文，
+     *                       每次调用新建的上下文永远不会命中，只会挤占缓存
+     * @return 编译后的表达式
+     */
+    public static Serializable compileExpression(String expression, ParserContext parserContext, boolean cacheByContext) {
+        if (parserContext == null) {
+            return compileCached(expression, null, ExpressionUtil::createSharedParserContext);
+        }
+        if (!cacheByContext) {
+            return MVEL.compileExpression(expression, parserContext);
+        }
+        return compileCached(expression, parserContext, () -> parserContext);
+    }
+
+    /**
+     * 按 (表达式, 上下文标识, 全局版本) 缓存编译结果，未命中时才创建解析上下文
+     *
+     * @param expression     表达式
+     * @param contextKey     区分解析上下文的标识，按引用比较
+     * @param contextFactory 未命中时提供解析上下文
+     * @return 编译后的表达式
+     */
+    private static Serializable compileCached(String expression, Object contextKey, Supplier<ParserContext> contextFactory) {
+        ExpressionKey key = new ExpressionKey(expression, contextKey, globalVersion.get());
+        Serializable compiled = compiledExpressionCache.get(key);
+        if (compiled == null) {
+            // 并发未命中时可能重复编译，结果相同
+            compiled = MVEL.compileExpression(expression, contextFactory.get());
+            compiledExpressionCache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * 编译数值表达式。纯算术表达式（数字、变量、{@code + - * / %}、参数与返回值均为数值的全局函数）翻译为 Java 源码，
+     * 由 {@link CompilerUtil} 编译为字节码，以 {@code double[]} 槽位求值，没有装箱与解释开销；
+     * 超出该子集或编译失败时透明地回退到 MVEL。结果按表达式与全局版本缓存。
+     *
+     * @param expression 表达式
+     * @return 数值表达式，变量按首次出现的顺序分配槽位
+     */
+    public static NumericExpression compileNumeric(String expression) {
+        return compileNumeric(expression, new String[0]);
+    }
+
+    /**
+     * 编译数值表达式，并把变量一次性绑定到调用方指定的槽位。
+     * 同一组公式使用相同的变量布局时，可以共用一个 {@code double[]}/{@code long[]} 逐次求值，
+     * 每次求值不创建任何对象。
+     *
+     * @param expression 表达式
+     * @param variables  变量布局，下标即槽位；表达式引用了未列出的变量时按首次出现的顺序追加在后面
+     * @return 数值表达式
+     * @throws IllegalArgumentException 变量重复，或与全局变量、全局函数重名
+     */
+    public static NumericExpression compileNumeric(String expression, String... variables) {
+        Set<String> bound = new HashSet<>();
+        for (String variable : variables) {
+            if (StrUtil.isBlank(variable) || !bound.add(variable)) {
+                throw new IllegalArgumentException("变量为空或重复: " + variable);
+            }
+            if (globalVariables.containsKey(variable) || builtInFunc.containsKey(variable)) {
+                throw new IllegalArgumentException("变量与全局变量或全局函数重名: " + variable);
+            }
+        }
+        // 不同的变量布局生成不同的代码，布局并入缓存键
+        String layout = variables.length == 0 ? expression : expression + '\0' + String.join(",", variables);
+        ExpressionKey key = new ExpressionKey(layout, null, globalVersion.get());
+        NumericExpression numeric = numericExpressionCache.get(key);
+        if (numeric == null) {
+            numeric = doCompileNumeric(expression, layout, variables);
+            numericExpressionCache.put(key, numeric);
+        }
+        return numeric;
+    }
+
+    /**
+     * 列式求值：每个变量绑定一列 {@code double[]}（例如按时间戳对齐的一天的数据），整列在生成的紧凑循环中计算，
+     * 不为每一行创建变量 Map。表达式按 {@link #compileNumeric(String)} 编译并缓存。
+     *
+     * @param expression 表达式
+     * @param columns    变量名 -&gt; 列，各列长度一致
+     * @return 结果列，与输入列按下标对齐
+     */
+    public static double[] evaluateColumns(String expression, Map<String, double[]> columns) {
+        return compileNumeric(expression).evaluateColumns(columns);
+    }
+
+    /**
+     * 列式求值，行数较多时按段在线程池中并行计算。
+     *
+     * @param expression 表达式
+     * @param columns    变量名 -&gt; 列，各列长度一致
+     * @param pool       线程池，为 null 时在当前线程中计算
+     * @return 结果列，与输入列按下标对齐
+     */
+    public static double[] evaluateColumns(String expression, Map<String, double[]> columns, ForkJoinPool pool) {
+        return compileNumeric(expression).evaluateColumns(columns, pool);
+    }
+
+    private static NumericExpression doCompileNumeric(String expression, String layout, String[] variables) {
+        String className = NUMERIC_PACKAGE + ".NumericExpression_" + DigestUtil.sha1Hex(layout).substring(0, 16);
+        ArithmeticCodeGenerator generator = ArithmeticCodeGenerator.parse(expression, builtInFunc, globalVariables.keySet(), variables);
+        ExpressionAnalysis analysis = analyze(expression, generator);
+        if (generator == null) {
+            return new NumericExpression(expression, referencedInputs(variables, analysis), null, "超出算术子集", analysis);
+        }
+        try {
+            NumericEvaluator evaluator = CompilerUtil.compileFactory(generator.generateSource(className), NumericEvaluator.class,
+                    ExpressionUtil.class.getClassLoader()).get();
+            return new NumericExpression(expression, generator.getVariables(), evaluator, null, analysis);
+        } catch (Exception e) {
+            return new NumericExpression(expression, referencedInputs(variables, analysis), null, "编译失败: " + e.getMessage(), analysis);
+        }
+    }
+
+    /**
+     * 静态分析表达式：引用的变量与全局函数，以及纯算术表达式的编译期优化结果（常量折叠、公共子表达式消除）。
+     * 调用方可以据此只查询表达式需要的数据，优化本身在 {@link #compileNumeric(String)} 编译时生效。
+     *
+     * @param expression 表达式
+     * @return 分析结果
+     */
+    public static ExpressionAnalysis analyze(String expression) {
+        return analyze(expression, ArithmeticCodeGenerator.parse(expression, builtInFunc, globalVariables.keySet()));
+    }
+
+    private static ExpressionAnalysis analyze(String expression, ArithmeticCodeGenerator generator) {
+        if (generator == null) {
+            return new ExpressionAnalysis(expression, new ArrayList<>(getReferencedVariables(expression)),
+                    referencedFunctions(expression), false, null, 0, 0, null);
+        }
+        return new ExpressionAnalysis(expression, new ArrayList<>(generator.getReferencedVariables()),
+                new ArrayList<>(generator.getFunctions()), true, generator.getOptimizedExpression(),
+                generator.getFoldedConstants(), generator.getEliminatedSubexpressions(),
+                generator.isConstant() ? generator.getConstantValue() : null);
+    }
+
+    /**
+     * 扫描表达式中对全局函数的调用，跳过字符串字面量与对象的方法调用
+     */
+    private static List<String> referencedFunctions(String expression) {
+        Set<String> names = new LinkedHashSet<>();
+        int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (c == '\'' || c == '"') {
+                i++;
+                while (i < length && expression.charAt(i) != c) {
+                    i += expression.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(expression.charAt(i))) {
+                    i++;
+                }
+                int next = i;
+                while (next < length && Character.isWhitespace(expression.charAt(next))) {
+                    next++;
+                }
+                String name = expression.substring(start, i);
+                boolean member = start > 0 && expression.charAt(start - 1) == '.';
+                if (!member && next < length && expression.charAt(next) == '(' && builtInFunc.containsKey(name)) {
+                    names.add(name);
+                }
+            } else {
+                i++;
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * 获取表达式引用的外部变量，不含全局变量与表达式内部赋值产生的变量。
+     * 用于分析公式之间的依赖关系，每次调用都会重新解析表达式。
+     *
+     * @param expression 表达式
+     * @return 变量名，按首次出现的顺序
+     */
+    public static Set<String> getReferencedVariables(String expression) {
+        ParserContext parserContext = createSharedParserContext();
+        MVEL.compileExpression(expression, parserContext);
+        Set<String> inputs = new LinkedHashSet<>();
+        for (String name : parserContext.getInputs().keySet()) {
+            if (!globalVariables.containsKey(name) && !parserContext.getVariables().containsKey(name)) {
+                inputs.add(name);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * 获取回退到 MVEL 时的变量布局，预先绑定的变量排在最前
+     */
+    private static String[] referencedInputs(String[] boundSlots, ExpressionAnalysis analysis) {
+        Set<String> inputs = new LinkedHashSet<>(Arrays.asList(boundSlots));
+        inputs.addAll(analysis.getVariables());
+        return inputs.toArray(new String[0]);
+    }
+
+    /**
+     * 全局函数或变量变化后，旧版本下编译的表达式全部失效
+     */
+    private static void invalidateCompiledExpressions() {
+        globalVersion.incrementAndGet();
+        compiledExpressionCache.clear();
+        numericExpressionCache.clear();
+    }
+
     /**
      * 添加全局方法
      *
@@ -235,6 +632,7 @@ public class ExpressionUtil {
             throw new RuntimeException("name:" + name + " is already exist");
         }
         builtInFunc.put(name, method);
+        invalidateCompiledExpressions();
     }
 
     /**
@@ -251,5 +649,108 @@ public class ExpressionUtil {
             throw new RuntimeException("name:" + name + " is already exist");
         }
         variableResolverFactory.put(name, object);
+        globalVariables = Collections.unmodifiableMap(new HashMap<>(variableResolverFactory));
+        invalidateCompiledExpressions();
+    }
+
+    /**
+     * 某个全局版本下构建的内置函数导入
+     */
+    private static final class BuiltInImports {
+        private final long version;
+        private final Map<String, Object> imports;
+
+        BuiltInImports(long version, Map<String, Object> imports) {
+            this.version = version;
+            this.imports = imports;
+        }
+    }
+
+    /**
+     * 批量执行的分段任务，每个叶子任务复用一个变量解析工厂，逐行换绑变量，不为每行创建工厂
+     */
+    private static final class BatchTask extends RecursiveAction {
+        private final Serializable compiled;
+        private final List<? extends Map<String, Object>> rows;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        BatchTask(Serializable compiled, List<? extends Map<String, Object>> rows, Object[] results, int from, int to, int threshold) {
+            this.compiled = compiled;
+            this.rows = rows;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                LayeredVariableResolverFactory factory = createVariableResolverFactory(null);
+                for (int i = from; i < to; i++) {
+                    results[i] = MVEL.executeExpression(compiled, factory.bind(rows.get(i)));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(compiled, rows, results, from, middle, threshold),
+                    new BatchTask(compiled, rows, results, middle, to, threshold));
+        }
+    }
+
+    /**
+     * 规则模板，首次调用 eval 时编译一次
+     */
+    private static final class RulesTemplate {
+        // 规则模板表达式在编译缓存中使用的上下文标识
+        private static final Object CONTEXT_KEY = new Object();
+        // 编译模板使用的解析上下文，编译后其中记录了模板声明的函数
+        private static final ParserContext PARSER_CONTEXT = new ParserContext();
+        // 编译后的模板，执行时在变量工厂中登记其中的函数
+        private static final Serializable COMPILED = MVEL.compileExpression(rulesTemplate, PARSER_CONTEXT);
+        // 模板函数表
+        private static final Map<String, Object> FUNCTIONS = initFunctions();
+
+        private static Map<String, Object> initFunctions() {
+            Map<String, Object> functions = new HashMap<>();
+            MVEL.executeExpression(COMPILED, new MapVariableResolverFactory(functions));
+            PARSER_CONTEXT.getFunctions().forEach(functions::putIfAbsent);
+            return Collections.unmodifiableMap(functions);
+        }
+    }
+
+    /**
+     * 已编译表达式缓存的 Key，解析上下文按引用比较
+     */
+    private static final class ExpressionKey {
+        private final String expression;
+        private final Object parserContext;
+        private final long version;
+
+        ExpressionKey(String expression, Object parserContext, long version) {
+            this.expression = expression;
+            this.parserContext = parserContext;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ExpressionKey)) {
+                return false;
+            }
+            ExpressionKey other = (ExpressionKey) o;
+            return version == other.version && parserContext == other.parserContext && expression.equals(other.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return (expression.hashCode() * 31 + System.identityHashCode(parserContext)) * 31 + Long.hashCode(version);
+        }
     }
 }
@@ -0,0 +1,389 @@
+package org.hao.core.expression;
+
+import cn.hutool.core.util.StrUtil;
+import org.hao.core.exception.HaoException;
+import org.mvel2.MVEL;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 公式依赖图，用于维护大量相互引用的派生值（例如由其他点位计算得出的派生点位）。
+ * <p>
+ * 定义公式时通过 {@link ExpressionUtil#getReferencedVariables(String)} 提取其引用的变量：引用其他公式名称的构成依赖边，
+ * 其余作为输入。公式按依赖深度分层，定义时检测循环引用。{@link #update(Map)} 只重新计算变化输入下游的公式，
+ * 公式结果未变化时不再向下传播；同一层内互不依赖的公式在 ForkJoin 线程池中并行计算。
+ * </p>
+ *
+ * <pre>
+ * FormulaGraph graph = new FormulaGraph()
+ *         .define("power", "voltage * current")
+ *         .define("energy", "power * hours");
+ * Map&lt;String, Object&gt; inputs = new HashMap&lt;&gt;();
+ * inputs.put("voltage", 220);
+ * inputs.put("current", 5);
+ * inputs.put("hours", 2);
+ * graph.update(inputs);
+ * // 只重新计算 energy
+ * graph.update(Collections.singletonMap("hours", 3));
+ * </pre>
+ * <p>
+ * 所有方法在实例上同步，可由多个线程调用；计算期间公式只读取已完成的上游结果。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class FormulaGraph {
+
+    /**
+     * 同一层待计算的公式达到该数量时才并行计算，较少时调度开销超过收益
+     */
+    private static final int PARALLEL_MIN_FORMULAS = 8;
+
+    private final ForkJoinPool pool;
+
+    private final Map<String, Formula> formulas = new LinkedHashMap<>();
+
+    /**
+     * 输入值与公式结果
+     */
+    private final Map<String, Object> values = new HashMap<>();
+
+    /**
+     * 新定义、尚未计算的公式
+     */
+    private final Set<String> pending = new HashSet<>();
+
+    /**
+     * 按依赖深度分层的公式，定义变化后重建
+     */
+    private List<List<Formula>> levels = Collections.emptyList();
+
+    private int lastEvaluatedCount;
+
+    /**
+     * 使用公共 ForkJoin 线程池并行计算
+     */
+    public FormulaGraph() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param pool 并行计算使用的线程池
+     */
+    public FormulaGraph(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 定义或替换公式，下次 {@link #update(Map)} 或 {@link #recompute()} 时计算。
+     *
+     * @param name       公式名称，也是其结果被其他公式引用时的变量名
+     * @param expression 表达式
+     * @return 当前公式图
+     * @throws HaoException 公式之间存在循环引用，此时公式图保持不变
+     */
+    public synchronized FormulaGraph define(String name, String expression) {
+        if (StrUtil.isBlank(name) || StrUtil.isBlank(expression)) {
+            throw new IllegalArgumentException("公式名称与表达式不能为空");
+        }
+        Formula formula = new Formula(name, expression, ExpressionUtil.compileExpression(expression, null),
+                ExpressionUtil.getReferencedVariables(expression));
+        Formula previous = formulas.put(name, formula);
+        try {
+            levels = buildLevels();
+        } catch (HaoException e) {
+            if (previous == null) {
+                formulas.remove(name);
+            } else {
+                formulas.put(name, previous);
+            }
+            throw e;
+        }
+        pending.add(name);
+        return this;
+    }
+
+    /**
+     * 删除公式及其结果，引用它的公式在下次计算时重新计算
+     *
+     * @param name 公式名称
+     * @return 是否存在该公式
+     */
+    public synchronized boolean remove(String name) {
+        if (formulas.remove(name) == null) {
+            return false;
+        }
+        values.remove(name);
+        pending.remove(name);
+        for (Formula formula : formulas.values()) {
+            if (formula.references.contains(name)) {
+                pending.add(formula.name);
+            }
+        }
+        levels = buildLevels();
+        return true;
+    }
+
+    /**
+     * 更新输入并增量计算：只计算引用了变化输入（直接或经由其他公式间接引用）的公式，以及尚未计算的公式。
+     *
+     * @param inputs 变化的输入，与原值相等（{@link Objects#equals}）的输入不触发计算
+     * @return 结果发生变化的公式及其新值，按计算顺序排列
+     * @throws HaoException 输入名称与公式重名，或公式计算失败；计算失败后下次计算全部公式
+     */
+    public synchronized Map<String, Object> update(Map<String, Object> inputs) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Object> entry : inputs.entrySet()) {
+            String name = entry.getKey();
+            if (formulas.containsKey(name)) {
+                throw new HaoException("不能直接修改公式结果: " + name);
+            }
+            if (!values.containsKey(name) || !Objects.equals(values.get(name), entry.getValue())) {
+                values.put(name, entry.getValue());
+                changed.add(name);
+            }
+        }
+        return evaluate(changed);
+    }
+
+    /**
+     * 重新计算全部公式
+     *
+     * @return 结果发生变化的公式及其新值，按计算顺序排列
+     */
+    public synchronized Map<String, Object> recompute() {
+        pending.addAll(formulas.keySet());
+        return evaluate(new HashSet<>());
+    }
+
+    private Map<String, Object> evaluate(Set<String> changed) {
+        Map<String, Object> updated = new LinkedHashMap<>();
+        int evaluated = 0;
+        try {
+            for (List<Formula> level : levels) {
+                List<Formula> dirty = new ArrayList<>();
+                for (Formula formula : level) {
+                    if (pending.contains(formula.name) || formula.dependsOnAny(changed)) {
+                        dirty.add(formula);
+                    }
+                }
+                if (dirty.isEmpty()) {
+                    continue;
+                }
+                Object[] results = new Object[dirty.size()];
+                if (dirty.size() < PARALLEL_MIN_FORMULAS || pool.getParallelism() <= 1) {
+                    evaluateRange(dirty, results, 0, dirty.size());
+                } else {
+                    pool.invoke(new LevelTask(dirty, results, 0, dirty.size()));
+                }
+                // 同一层计算完成后再写入，计算期间 values 只读
+                for (int i = 0; i < results.length; i++) {
+                    String name = dirty.get(i).name;
+                    boolean exists = values.containsKey(name);
+                    Object previous = values.put(name, results[i]);
+                    if (!exists || !Objects.equals(previous, results[i])) {
+                        changed.add(name);
+                        updated.put(name, results[i]);
+                    }
+                }
+                evaluated += dirty.size();
+            }
+            pending.clear();
+        } catch (RuntimeException e) {
+            // 部分公式已更新，无法确定哪些下游仍是旧值
+            pending.addAll(formulas.keySet());
+            throw e;
+        } finally {
+            lastEvaluatedCount = evaluated;
+        }
+        return updated;
+    }
+
+    /**
+     * 计算一段公式，复用一个变量解析工厂
+     */
+    private void evaluateRange(List<Formula> formulas, Object[] results, int from, int to) {
+        LayeredVariableResolverFactory factory = ExpressionUtil.createVariableResolverFactory(null);
+        for (int i = from; i < to; i++) {
+            Formula formula = formulas.get(i);
+            try {
+                results[i] = MVEL.executeExpression(formula.compiled, factory.bind(values));
+            } catch (RuntimeException e) {
+                throw new HaoException("公式计算失败: " + formula.name + " = " + formula.expression, e);
+            }
+        }
+    }
+
+    /**
+     * 按依赖深度分层：只引用输入的公式在第 0 层，其余公式比其依赖的最深公式深一层
+     */
+    private List<List<Formula>> buildLevels() {
+        Map<String, Integer> depths = new HashMap<>();
+        List<List<Formula>> result = new ArrayList<>();
+        for (Formula formula : formulas.values()) {
+            int depth = depth(formula, depths, new ArrayDeque<>());
+            while (result.size() <= depth) {
+                result.add(new ArrayList<>());
+            }
+        }
+        for (Formula formula : formulas.values()) {
+            result.get(depths.get(formula.name)).add(formula);
+        }
+        return result;
+    }
+
+    private int depth(Formula formula, Map<String, Integer> depths, Deque<String> path) {
+        Integer known = depths.get(formula.name);
+        if (known != null) {
+            return known;
+        }
+        if (path.contains(formula.name)) {
+            List<String> cycle = new ArrayList<>();
+            for (String name : path) {
+                cycle.add(0, name);
+                if (name.equals(formula.name)) {
+                    break;
+                }
+            }
+            cycle.add(formula.name);
+            throw new HaoException("公式存在循环引用: " + String.join(" -> ", cycle));
+        }
+        path.push(formula.name);
+        int depth = 0;
+        for (String reference : formula.references) {
+            Formula upstream = formulas.get(reference);
+            if (upstream != null) {
+                depth = Math.max(depth, depth(upstream, depths, path) + 1);
+            }
+        }
+        path.pop();
+        depths.put(formula.name, depth);
+        return depth;
+    }
+
+    /**
+     * 获取输入或公式结果
+     *
+     * @param name 名称
+     * @return 值，不存在或尚未计算时返回 null
+     */
+    public synchronized Object get(String name) {
+        return values.get(name);
+    }
+
+    /**
+     * 获取全部输入与公式结果的快照
+     */
+    public synchronized Map<String, Object> getValues() {
+        return new HashMap<>(values);
+    }
+
+    /**
+     * 获取公式直接引用的变量
+     *
+     * @param name 公式名称
+     * @return 变量名，公式不存在时返回空集合
+     */
+    public synchronized Set<String> getReferences(String name) {
+        Formula formula = formulas.get(name);
+        return formula == null ? Collections.emptySet() : Collections.unmodifiableSet(formula.references);
+    }
+
+    /**
+     * 获取计算顺序，外层下标为依赖深度，同一层内的公式互不依赖
+     */
+    public synchronized List<List<String>> getEvaluationLevels() {
+        List<List<String>> result = new ArrayList<>();
+        for (List<Formula> level : levels) {
+            List<String> names = new ArrayList<>();
+            for (Formula formula : level) {
+                names.add(formula.name);
+            }
+            result.add(names);
+        }
+        return result;
+    }
+
+    /**
+     * 获取最近一次计算实际执行的公式数量
+     */
+    public synchronized int getLastEvaluatedCount() {
+        return lastEvaluatedCount;
+    }
+
+    public synchronized int size() {
+        return formulas.size();
+    }
+
+    /**
+     * 已编译的公式
+     */
+    private static final class Formula {
+        private final String name;
+        private final String expression;
+        private final Serializable compiled;
+        private final Set<String> references;
+
+        Formula(String name, String expression, Serializable compiled, Set<String> references) {
+            this.name = name;
+            this.expression = expression;
+            this.compiled = compiled;
+            this.references = references;
+        }
+
+        boolean dependsOnAny(Set<String> changed) {
+            if (changed.isEmpty()) {
+                return false;
+            }
+            for (String reference : references) {
+                if (changed.contains(reference)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 并行计算同一层的公式
+     */
+    private final class LevelTask extends RecursiveAction {
+        private final List<Formula> formulas;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+
+        LevelTask(List<Formula> formulas, Object[] results, int from, int to) {
+            this.formulas = formulas;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_MIN_FORMULAS / 2) {
+                evaluateRange(formulas, results, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LevelTask(formulas, results, from, middle), new LevelTask(formulas, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.hao.core.expression;
+
+import org.mvel2.integration.VariableResolver;
+import org.mvel2.integration.impl.BaseVariableResolverFactory;
+import org.mvel2.integration.impl.MapVariableResolver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分层的变量解析工厂，按 本次调用的局部变量 -&gt; 调用方传入的变量 -&gt; 全局变量 的顺序解析。
+ * <p>
+ * 调用方的变量与全局变量都以引用方式读取，不复制到新的 Map，也不会被修改：
+ * 表达式中的赋值与新建变量只写入本工厂自己的局部层，遮蔽同名的下层变量。
+ * 因此多个线程可以共享同一个输入 Map 并发求值，全局变量层本身不可变，可在所有调用之间共享。
+ * </p>
+ * <p>
+ * 工厂本身不是线程安全的，每次求值使用一个实例；可以通过 {@link #bind(Map)} 在同一线程内换绑下一组变量后复用。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class LayeredVariableResolverFactory extends BaseVariableResolverFactory {
+
+    /**
+     * 全局变量层，只读
+     */
+    private final Map<String, Object> globals;
+
+    /**
+     * 调用方传入的变量层，只读
+     */
+    private Map<String, Object> vars;
+
+    /**
+     * 表达式执行中赋值或新建的变量，按需创建
+     */
+    private Map<String, Object> locals;
+
+    /**
+     * 构造函数
+     *
+     * @param globals 全局变量，不会被修改，调用方需要保证其内容不再变化
+     * @param vars    本次调用的变量，可为 null，不会被修改
+     */
+    public LayeredVariableResolverFactory(Map<String, Object> globals, Map<String, Object> vars) {
+        this.globals = globals == null ? Collections.emptyMap() : globals;
+        bind(vars);
+    }
+
+    /**
+     * 换绑本次调用的变量并清空局部变量，用于在同一线程内复用工厂。
+     *
+     * @param vars 本次调用的变量，可为 null
+     * @return 当前工厂
+     */
+    public LayeredVariableResolverFactory bind(Map<String, Object> vars) {
+        this.vars = vars == null ? Collections.emptyMap() : vars;
+        if (locals != null) {
+            locals.clear();
+        }
+        return this;
+    }
+
+    /**
+     * 获取表达式执行中赋值或新建的变量。
+     *
+     * @return 局部变量，没有时返回空 Map
+     */
+    public Map<String, Object> getLocals() {
+        return locals == null ? Collections.emptyMap() : Collections.unmodifiableMap(locals);
+    }
+
+    @Override
+    public VariableResolver createVariable(String name, Object value) {
+        if (locals == null) {
+            locals = new HashMap<>();
+        }
+        locals.put(name, value);
+        return new MapVariableResolver(locals, name);
+    }
+
+    @Override
+    public VariableResolver createVariable(String name, Object value, Class<?> type) {
+        VariableResolver resolver = createVariable(name, value);
+        resolver.setStaticType(type);
+        return resolver;
+    }
+
+    @Override
+    public VariableResolver getVariableResolver(String name) {
+        if (locals != null && locals.containsKey(name)) {
+            return new MapVariableResolver(locals, name);
+        }
+        if (vars.containsKey(name)) {
+            return new LayerResolver(name, vars.get(name));
+        }
+        if (globals.containsKey(name)) {
+            return new LayerResolver(name, globals.get(name));
+        }
+        return super.getVariableResolver(name);
+    }
+
+    @Override
+    public boolean isTarget(String name) {
+        return locals != null && locals.containsKey(name) || vars.containsKey(name) || globals.containsKey(name);
+    }
+
+    @Override
+    public boolean isResolveable(String name) {
+        return isTarget(name) || isNextResolveable(name);
+    }
+
+    @Override
+    public Set<String> getKnownVariables() {
+        Set<String> known = new HashSet<>(globals.keySet());
+        known.addAll(vars.keySet());
+        if (locals != null) {
+            known.addAll(locals.keySet());
+        }
+        return known;
+    }
+
+    /**
+     * 只读层中变量的解析器，写入时转为在局部层新建同名变量
+     */
+    private final class LayerResolver implements VariableResolver {
+        private final String name;
+        private Object value;
+        private Class<?> type;
+
+        LayerResolver(String name, Object value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Class getType() {
+            if (type != null) {
+                return type;
+            }
+            return value == null ? Object.class : value.getClass();
+        }
+
+        @Override
+        public void setStaticType(Class type) {
+            this.type = type;
+        }
+
+        @Override
+        public int getFlags() {
+            return 0;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public void setValue(Object value) {
+            this.value = value;
+            createVariable(name, value);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.hao.core.expression;
+
+/**
+ * 由 {@link ExpressionUtil#compileNumeric(String, String...)} 生成的数值表达式求值器。
+ * <p>
+ * 变量按槽位从数组（或列式求值时的列）中读取，全部运算以 double 进行，求值过程不创建任何对象。
+ * 实现类由动态编译器生成，需要声明为 public 以便生成的类在独立的类加载器中实现它。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public interface NumericEvaluator {
+
+    /**
+     * 以 double 槽位求值
+     *
+     * @param slots 按槽位排列的变量值
+     * @return 结果
+     */
+    double evaluate(double[] slots);
+
+    /**
+     * 以 long 槽位求值，变量先转换为 double 再参与运算，与 MVEL 对整数变量的处理一致（如 {@code a / b} 不做整除）
+     *
+     * @param slots 按槽位排列的变量值
+     * @return 结果
+     */
+    double evaluate(long[] slots);
+
+    /**
+     * 列式求值：每个槽位对应一列，逐行计算 {@code [from, to)} 区间并写入 out 的相同下标
+     *
+     * @param columns 按槽位排列的列，各列长度不小于 to
+     * @param out     结果列
+     * @param from    起始行（包含）
+     * @param to      结束行（不包含）
+     */
+    void evaluate(double[][] columns, double[] out, int from, int to);
+}
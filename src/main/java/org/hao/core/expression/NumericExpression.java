@@ -0,0 +1,296 @@
+package org.hao.core.expression;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 编译为 Java 字节码的数值表达式，通过 {@link ExpressionUtil#compileNumeric(String)} 获取。
+ * <p>
+ * 纯算术表达式（数字、变量、四则运算与取模、数值型全局函数）会被翻译为 Java 源码并由动态编译器编译，
+ * 变量按 {@link #getVariables()} 的顺序对应 {@code double[]} 或 {@code long[]} 中的槽位，结果以基本类型返回，
+ * 求值时没有装箱与解释开销，也不创建任何对象，调用方可以复用同一个槽位数组逐次求值。
+ * 超出算术子集的表达式、或编译失败时透明地回退到 MVEL，{@link #isCompiled()} 返回 false，此时每次求值仍会装箱。
+ * 编译执行全部按 {@code double} 计算，整数运算不会像 MVEL 那样按 int/long 返回或溢出回绕，见 {@link #execute(Map)}。
+ * </p>
+ *
+ * <pre>
+ * NumericExpression expression = ExpressionUtil.compileNumeric("power(a, 2) + b * 3", "a", "b");
+ * double[] slots = new double[2];
+ * slots[0] = 2;
+ * slots[1] = 1;
+ * double result = expression.applyAsDouble(slots);
+ * </pre>
+ * <p>
+ * 对时间序列等成列的数据，{@link #evaluateColumns(Map, ForkJoinPool)} 把每个变量绑定到一列 {@code double[]}，
+ * 在生成的紧凑循环中逐行计算，输出与输入按下标对齐，可按分段在 ForkJoin 线程池中并行。
+ * </p>
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+public class NumericExpression implements ToDoubleFunction<double[]> {
+
+    /**
+     * 列式求值时每段的最小行数，行数不超过该值时不拆分
+     */
+    private static final int COLUMN_MIN_CHUNK = 8192;
+
+    private final String expression;
+
+    private final String[] variables;
+
+    private final Map<String, Integer> slots;
+
+    /**
+     * 编译出的求值器，回退到 MVEL 时为 null
+     */
+    private final NumericEvaluator evaluator;
+
+    /**
+     * 回退到 MVEL 的原因，编译成功时为 null
+     */
+    private final String fallbackReason;
+
+    private final ExpressionAnalysis analysis;
+
+    NumericExpression(String expression, String[] variables, NumericEvaluator evaluator, String fallbackReason,
+                      ExpressionAnalysis analysis) {
+        this.expression = expression;
+        this.variables = variables;
+        this.evaluator = evaluator;
+        this.fallbackReason = fallbackReason;
+        this.analysis = analysis;
+        Map<String, Integer> slots = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) {
+            slots.put(variables[i], i);
+        }
+        this.slots = slots;
+    }
+
+    /**
+     * 以槽位数组求值。
+     *
+     * @param slots 按 {@link #getVariables()} 顺序排列的变量值
+     * @return 结果
+     */
+    @Override
+    public double applyAsDouble(double[] slots) {
+        if (evaluator != null) {
+            return evaluator.evaluate(slots);
+        }
+        Map<String, Object> vars = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) {
+            vars.put(variables[i], slots[i]);
+        }
+        return toDouble(ExpressionUtil.executeExpression(expression, vars));
+    }
+
+    /**
+     * 以 long 槽位求值，变量转换为 double 后参与运算。
+     *
+     * @param slots 按 {@link #getVariables()} 顺序排列的变量值
+     * @return 结果
+     */
+    public double applyAsDouble(long[] slots) {
+        if (evaluator != null) {
+            return evaluator.evaluate(slots);
+        }
+        Map<String, Object> vars = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) {
+            vars.put(variables[i], slots[i]);
+        }
+        return toDouble(ExpressionUtil.executeExpression(expression, vars));
+    }
+
+    /**
+     * 以 long 槽位求值，结果向零截断为 long。
+     *
+     * @param slots 按 {@link #getVariables()} 顺序排列的变量值
+     * @return 结果
+     */
+    public long applyAsLong(long[] slots) {
+        return (long) applyAsDouble(slots);
+    }
+
+    /**
+     * 列式求值，逐行计算 {@code [from, to)} 区间并写入 out 的相同下标。
+     *
+     * @param columns 按 {@link #getVariables()} 顺序排列的列，各列长度不小于 to
+     * @param out     结果列
+     * @param from    起始行（包含）
+     * @param to      结束行（不包含）
+     */
+    public void evaluateColumns(double[][] columns, double[] out, int from, int to) {
+        if (evaluator != null) {
+            evaluator.evaluate(columns, out, from, to);
+            return;
+        }
+        double[] slots = new double[variables.length];
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < slots.length; j++) {
+                slots[j] = columns[j][i];
+            }
+            out[i] = applyAsDouble(slots);
+        }
+    }
+
+    /**
+     * 列式求值，在当前线程中计算全部行。
+     *
+     * @param columns 变量名 -&gt; 列，表达式引用的变量列长度必须一致
+     * @return 结果列，与输入列按下标对齐
+     */
+    public double[] evaluateColumns(Map<String, double[]> columns) {
+        return evaluateColumns(columns, null);
+    }
+
+    /**
+     * 列式求值，行数较多时按段在线程池中并行计算。
+     *
+     * @param columns 变量名 -&gt; 列，表达式引用的变量列长度必须一致
+     * @param pool    线程池，为 null 时在当前线程中计算
+     * @return 结果列，与输入列按下标对齐
+     * @throws IllegalArgumentException 缺少表达式引用的变量列，或列长度不一致
+     */
+    public double[] evaluateColumns(Map<String, double[]> columns, ForkJoinPool pool) {
+        double[][] ordered = new double[variables.length][];
+        int rows = -1;
+        for (int i = 0; i < variables.length; i++) {
+            double[] column = columns.get(variables[i]);
+            if (column == null) {
+                throw new IllegalArgumentException("缺少变量列: " + variables[i]);
+            }
+            if (rows >= 0 && column.length != rows) {
+                throw new IllegalArgumentException("列长度不一致: " + variables[i] + " 长度为 " + column.length + ", 应为 " + rows);
+            }
+            ordered[i] = column;
+            rows = column.length;
+        }
+        if (rows < 0) {
+            // 常量表达式，行数取任意一列
+            rows = columns.isEmpty() ? 0 : columns.values().iterator().next().length;
+        }
+        double[] out = new double[rows];
+        if (pool == null || rows <= COLUMN_MIN_CHUNK || pool.getParallelism() <= 1) {
+            evaluateColumns(ordered, out, 0, rows);
+        } else {
+            pool.invoke(new ColumnTask(ordered, out, 0, rows));
+        }
+        return out;
+    }
+
+    /**
+     * 以变量 Map 求值。变量缺失或不是数值时，本次调用回退到 MVEL，与 {@link ExpressionUtil#executeExpression(String, Map)} 的结果一致。
+     * <p>
+     * 编译执行时全部按 {@code double} 计算，结果总是 {@link Double}，数值上与 MVEL 一致，但类型与溢出行为不同：
+     * MVEL 对整数输入按 {@link Integer}/{@link Long} 计算并返回（例如 {@code a + b} 的两个变量均为 Integer，或 {@code round(x)}），
+     * int 运算溢出时回绕；编译执行不回绕，超出 2<sup>53</sup> 的整数会丢失精度。需要 MVEL 的结果类型时使用
+     * {@link ExpressionUtil#executeExpression(String, Map)}，或按 {@link #isCompiled()} 区分。
+     * </p>
+     *
+     * @param vars 变量，不会被修改
+     * @return 结果，编译执行时总是 Double，回退到 MVEL 时为 MVEL 的结果类型
+     */
+    public Object execute(Map<String, Object> vars) {
+        if (evaluator == null || vars == null) {
+            return ExpressionUtil.executeExpression(expression, vars);
+        }
+        double[] values = new double[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            Object value = vars.get(variables[i]);
+            if (!(value instanceof Number)) {
+                return ExpressionUtil.executeExpression(expression, vars);
+            }
+            values[i] = ((Number) value).doubleValue();
+        }
+        return evaluator.evaluate(values);
+    }
+
+    /**
+     * 获取变量的槽位。
+     *
+     * @param name 变量名
+     * @return 槽位，表达式未引用该变量时返回 -1
+     */
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * 获取表达式引用的变量，下标即槽位
+     *
+     * @return 变量名列表
+     */
+    public List<String> getVariables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 是否已编译为字节码，false 表示回退到 MVEL
+     */
+    public boolean isCompiled() {
+        return evaluator != null;
+    }
+
+    public String getFallbackReason() {
+        return fallbackReason;
+    }
+
+    /**
+     * 获取编译时的静态分析结果，包括引用的变量、函数与编译期优化
+     */
+    public ExpressionAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    private static double toDouble(Object result) {
+        if (result instanceof Number) {
+            return ((Number) result).doubleValue();
+        }
+        throw new IllegalStateException("表达式结果不是数值: " + result);
+    }
+
+    /**
+     * 列式求值的分段任务
+     */
+    private final class ColumnTask extends RecursiveAction {
+        private final double[][] columns;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        ColumnTask(double[][] columns, double[] out, int from, int to) {
+            this.columns = columns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= COLUMN_MIN_CHUNK) {
+                evaluateColumns(columns, out, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ColumnTask(columns, out, from, middle), new ColumnTask(columns, out, middle, to));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NumericExpression{expression=" + expression + ", variables=" + Arrays.toString(variables)
+                + ", compiled=" + isCompiled() + (fallbackReason == null ? "" : ", fallback=" + fallbackReason) + '}';
+    }
+}
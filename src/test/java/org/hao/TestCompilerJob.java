@@ -1,13 +1,66 @@
 package org.hao;
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.ReflectUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.hao.annotation.LogDefine;
+import org.hao.config.HaoUtilAutoConfig;
+import org.hao.core.compiler.CompileMetrics;
+import org.hao.core.compiler.CompileOptions;
+import org.hao.core.compiler.CompiledClassCache;
+import org.hao.core.compiler.CompilerService;
 import org.hao.core.compiler.CompilerUtil;
+import org.hao.core.compiler.DynamicClassRegistry;
+import org.hao.core.compiler.HotSwapRegistry;
+import org.hao.core.compiler.JavaSourceFromString;
+import org.hao.core.compiler.NestedJarIndex;
+import org.hao.core.compiler.NestedJarJavaFileManager;
+import org.hao.core.compiler.PersistentClassStore;
+import org.hao.core.compiler.RemoteCompilerPool;
+import org.hao.core.compiler.RollingCompileMetricsSink;
+import org.hao.core.compiler.ScriptPrecompiler;
+import org.hao.core.compiler.TypedClassFactory;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
 
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntUnaryOperator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 @Slf4j
 public class TestCompilerJob {
@@ -116,9 +169,672 @@ public class TestCompilerJob {
         log.info("testHaoCompliler 编译耗时：{}ms", end - start);
     }
 
+    /**
+     * 测试相同源码重复编译时命中字节码缓存，跳过 javac。
+     *
+     * @throws Exception 如果编译或运行失败
+     */
+    @Test
+    public void testCompiledClassCache() throws Exception {
+        String javaCode = "package com.example.demo;\n" +
+                "\n" +
+                "public class CachedGreeter {\n" +
+                "    public String greet(String name) {\n" +
+                "        return \"Hello, \" + name;\n" +
+                "    }\n" +
+                "}";
+        CompiledClassCache cache = CompilerUtil.getCompiledClassCache();
+        long hitCount = cache.getHitCount();
+
+        long start = System.currentTimeMillis();
+        Class<?> first = CompilerUtil.compileAndLoadClass(javaCode);
+        log.info("首次编译耗时：{}ms", System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        Class<?> second = CompilerUtil.compileAndLoadClass(javaCode);
+        log.info("缓存编译耗时：{}ms, {}", System.currentTimeMillis() - start, cache);
+
+        Assertions.assertEquals(hitCount + 1, cache.getHitCount());
+        // 命中缓存时同样会创建新的类加载器，得到的是不同的 Class 对象
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(first.getName(), second.getName());
+    }
+
+    /**
+     * 测试调用方在编译前写入 {@link CompilerUtil#classpath} 的条目作为编译类路径，并参与类路径指纹。
+     *
+     * @throws Exception 如果编译失败
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testSeededClassPath() throws Exception {
+        List<String> loaded = CompilerUtil.getClassPath();
+        String fingerprint = CompilerUtil.getClasspathFingerprint();
+        Path dir = Files.createTempDirectory("hao-seeded");
+        Path classes = dir.resolve("classes");
+        byte[] base = compileClass(dir, "com.example.seed.SeedBase", "package com.example.seed;\n" +
+                "public class SeedBase {\n" +
+                "    public String name() { return \"seed\"; }\n" +
+                "}");
+        FileUtil.writeBytes(base, classes.resolve("com/example/seed/SeedBase.class").toFile());
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            CompilerUtil.reloadClassPath();
+            CompilerUtil.classpath.addAll(loaded);
+            CompilerUtil.classpath.add(classes.toString());
+            Assertions.assertTrue(CompilerUtil.getClassPath().contains(classes.toString()));
+            Assertions.assertNotEquals(fingerprint, CompilerUtil.getClasspathFingerprint());
+
+            Class<?> derived = CompilerUtil.compileAndLoadClass(parent, "package com.example.seed;\n" +
+                    "public class SeedDerived extends SeedBase {\n" +
+                    "}").loadClass("com.example.seed.SeedDerived");
+            Assertions.assertEquals("seed", ReflectUtil.invoke(derived.newInstance(), "name"));
+        } finally {
+            CompilerUtil.classpath.clear();
+            CompilerUtil.reloadClassPath();
+            FileUtil.del(dir.toFile());
+        }
+        Assertions.assertEquals(loaded, CompilerUtil.getClassPath());
+    }
+
+    /**
+     * 测试类路径指纹的复查不占用调用线程：关闭定期复查时只在显式刷新后变化，开启时在后台复查后变化。
+     *
+     * @throws Exception 如果读写临时目录失败
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testClasspathFingerprintRecheck() throws Exception {
+        List<String> loaded = CompilerUtil.getClassPath();
+        Path dir = Files.createTempDirectory("hao-fingerprint");
+        Files.write(dir.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+        try {
+            CompilerUtil.reloadClassPath();
+            CompilerUtil.classpath.addAll(loaded);
+            CompilerUtil.classpath.add(dir.toString());
+            CompilerUtil.setFingerprintRecheckMillis(0);
+            String first = CompilerUtil.getClasspathFingerprint();
+
+            Files.write(dir.resolve("b.txt"), "b".getBytes(StandardCharsets.UTF_8));
+            long start = System.nanoTime();
+            Assertions.assertEquals(first, CompilerUtil.getClasspathFingerprint());
+            log.info("命中指纹耗时：{}us", (System.nanoTime() - start) / 1000);
+            String refreshed = CompilerUtil.refreshClasspathFingerprint();
+            Assertions.assertNotEquals(first, refreshed);
+            Assertions.assertEquals(refreshed, CompilerUtil.getClasspathFingerprint());
+
+            CompilerUtil.setFingerprintRecheckMillis(10);
+            Files.write(dir.resolve("c.txt"), "c".getBytes(StandardCharsets.UTF_8));
+            String rechecked = refreshed;
+            for (int i = 0; i < 100 && rechecked.equals(refreshed); i++) {
+                Thread.sleep(20);
+                rechecked = CompilerUtil.getClasspathFingerprint();
+            }
+            Assertions.assertNotEquals(refreshed, rechecked);
+        } finally {
+            CompilerUtil.setFingerprintRecheckMillis(CompilerUtil.DEFAULT_FINGERPRINT_RECHECK_MILLIS);
+            CompilerUtil.classpath.clear();
+            CompilerUtil.reloadClassPath();
+            FileUtil.del(dir.toFile());
+        }
+    }
+
+    /**
+     * 测试持久化存储：清空内存缓存并重新打开存储（模拟重启）后，直接从磁盘读取字节码而不再编译。
+     *
+     * @throws Exception 如果编译或运行失败
+     */
+    @Test
+    public void testPersistentClassStoreReload() throws Exception {
+        String javaCode = "package com.example.store;\n" +
+                "\n" +
+                "public class StoredGreeter {\n" +
+                "    public String greet(String name) {\n" +
+                "        return \"Hi, \" + name;\n" +
+                "    }\n" +
+                "}";
+        String storeDir = Files.createTempDirectory("hao-class-store").toString();
+        List<CompileMetrics.Source> sources = new CopyOnWriteArrayList<>();
+        CompilerUtil.setCompileMetricsSink(metrics -> sources.add(metrics.getSource()));
+        CompilerUtil.setPersistentClassStore(storeDir);
+        try {
+            CompilerUtil.compileAndLoadClass(javaCode);
+            Assertions.assertEquals(1, CompilerUtil.getPersistentClassStore().size());
+
+            CompilerUtil.getCompiledClassCache().clear();
+            CompilerUtil.setPersistentClassStore(storeDir);
+            long start = System.currentTimeMillis();
+            Class<?> reloaded = CompilerUtil.compileAndLoadClass(javaCode);
+            log.info("从持久化存储加载耗时：{}ms, 编译来源：{}", System.currentTimeMillis() - start, sources);
+
+            Assertions.assertEquals(CompileMetrics.Source.DISK_STORE, sources.get(sources.size() - 1));
+            Assertions.assertEquals("Hi, hao", ReflectUtil.invoke(reloaded.newInstance(), "greet", "hao"));
+        } finally {
+            CompilerUtil.setPersistentClassStore(null);
+            CompilerUtil.setCompileMetricsSink(new RollingCompileMetricsSink());
+            FileUtil.del(storeDir);
+        }
+    }
+
+    /**
+     * 测试持久化存储在 JDK 变化后整体失效，不会把其他 javac 生成的类文件交给当前 JVM。
+     *
+     * @throws Exception 如果读写存储失败
+     */
+    @Test
+    public void testPersistentClassStoreJdkChange() throws Exception {
+        Path storeDir = Files.createTempDirectory("hao-class-store");
+        try {
+            PersistentClassStore store = new PersistentClassStore(storeDir.toString());
+            store.put("key", "fingerprint", Collections.singletonMap("com.example.Jdk", new byte[]{1, 2, 3}));
+            Assertions.assertTrue(store.getFingerprint().endsWith(CompiledClassCache.JDK_IDENTITY));
+            Assertions.assertNotNull(new PersistentClassStore(storeDir.toString()).get("key", "fingerprint"));
+
+            // 模拟由其他 JDK 写入的存储
+            Files.write(storeDir.resolve("fingerprint"), "fingerprint;jdk=1.8:25.0-b70".getBytes(StandardCharsets.UTF_8));
+            PersistentClassStore reopened = new PersistentClassStore(storeDir.toString());
+            Assertions.assertNull(reopened.get("key", "fingerprint"));
+            Assertions.assertEquals(0, reopened.size());
+        } finally {
+            FileUtil.del(storeDir.toFile());
+        }
+    }
+
+    /**
+     * 测试并行编译服务：多个独立源码同时提交，按输入顺序返回结果。
+     *
+     * @throws Exception 如果编译失败
+     */
+    @Test
+    public void testCompilerService() throws Exception {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            sources.add("package com.example.batch;\n" +
+                    "public class Rule" + i + " {\n" +
+                    "    public int value() { return " + i + "; }\n" +
+                    "}");
+        }
+        try (CompilerService service = new CompilerService(4, 2, CompilerService.SaturationPolicy.BLOCK)) {
+            long start = System.currentTimeMillis();
+            List<CompletableFuture<Class<?>>> futures = service.submitAll(sources);
+            log.info("提交完成，排队任务数：{}", service.getQueueDepth());
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            log.info("并行编译 {} 个类耗时：{}ms", sources.size(), System.currentTimeMillis() - start);
+            for (int i = 0; i < futures.size(); i++) {
+                Class<?> clazz = futures.get(i).get();
+                Assertions.assertEquals("com.example.batch.Rule" + i, clazz.getName());
+            }
+        }
+    }
+
     @Test
     public void extractJar() throws IOException {
         CompilerUtil.extractDependencyJarsToTempDir("D:\\Project\\铜陵\\tl-back-enfi\\enfi-module-system\\enfi-system-start\\target\\enfi-system-start-3.7.0.jar");
         CompilerUtil.extractDependencyJarsToTempDir("D:\\Project\\铜陵\\tl-back-enfi\\enfi-module-system\\enfi-system-start\\target\\enfi-system-start-3.7.0.jar");
     }
+
+    @Test
+    public void testClassRegistryUnload() throws Exception {
+        String javaCode = "package com.example.demo;\n" +
+                "\n" +
+                "public class UnloadableRule {\n" +
+                "    public int apply(int x) {\n" +
+                "        return x * 2;\n" +
+                "    }\n" +
+                "}";
+        DynamicClassRegistry registry = CompilerUtil.getClassRegistry();
+        WeakReference<ClassLoader> oldLoader = compileAndGetLoader(javaCode);
+        long version = registry.getVersion("com.example.demo.UnloadableRule");
+        WeakReference<ClassLoader> newLoader = compileAndGetLoader(javaCode);
+        // 重新编译同名类时版本号递增
+        Assertions.assertTrue(registry.getVersion("com.example.demo.UnloadableRule") > version);
+        log.info("卸载前：{}", registry);
+
+        Assertions.assertTrue(CompilerUtil.unloadClass("com.example.demo.UnloadableRule"));
+        Assertions.assertNull(registry.get("com.example.demo.UnloadableRule"));
+        // GC 不保证立即回收，有限次重试
+        for (int i = 0; i < 20 && (oldLoader.get() != null || newLoader.get() != null); i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        log.info("卸载后：{}", registry);
+        Assertions.assertNull(oldLoader.get());
+        Assertions.assertNull(newLoader.get());
+    }
+
+    /**
+     * 在单独的方法中编译，测试方法的栈帧中不保留类的强引用
+     */
+    private static WeakReference<ClassLoader> compileAndGetLoader(String javaCode) throws ClassNotFoundException {
+        return new WeakReference<>(CompilerUtil.compileAndLoadClass(javaCode).getClassLoader());
+    }
+
+    /**
+     * 测试类型化工厂与反射创建的实例行为一致，两者的耗时对比见 haoutil-benchmark 中的 TypedInstanceBenchmark。
+     *
+     * @throws Exception 如果编译或运行失败
+     */
+    @Test
+    public void testTypedInstanceVsReflection() throws Exception {
+        String javaCode = "package com.example.demo;\n" +
+                "\n" +
+                "import java.util.function.IntUnaryOperator;\n" +
+                "\n" +
+                "public class DoubleRule implements IntUnaryOperator {\n" +
+                "    public int applyAsInt(int x) {\n" +
+                "        return x * 2;\n" +
+                "    }\n" +
+                "}";
+        TypedClassFactory<IntUnaryOperator> factory = CompilerUtil.compileFactory(javaCode, IntUnaryOperator.class);
+        Assertions.assertEquals(42, factory.get().applyAsInt(21));
+        Assertions.assertNotSame(factory.get(), factory.get());
+        Object reflective = CompilerUtil.createInstance("com.example.demo.DoubleRule");
+        Assertions.assertSame(factory.getImplClass(), reflective.getClass());
+        Assertions.assertEquals(42, (int) ReflectUtil.invoke(reflective, "applyAsInt", 21));
+    }
+
+    @Test
+    public void testCompileMetrics() throws Exception {
+        RollingCompileMetricsSink sink = new RollingCompileMetricsSink();
+        CompilerUtil.setCompileMetricsSink(sink);
+        try {
+            for (int i = 0; i < 5; i++) {
+                CompilerUtil.compileAndLoadClass("package com.example.metrics;\n" +
+                        "public class MetricsRule" + i + " {\n" +
+                        "    public int apply(int x) {\n" +
+                        "        return x + " + i + ";\n" +
+                        "    }\n" +
+                        "}");
+            }
+            Assertions.assertEquals(5, sink.getCompileCount());
+            Assertions.assertTrue(sink.getByteCodeSize().getPercentile(50) > 0);
+            log.info("编译指标：{}", sink);
+        } finally {
+            CompilerUtil.setCompileMetricsSink(new RollingCompileMetricsSink());
+        }
+    }
+
+    @Test
+    public void testClasspathPruning() throws Exception {
+        String javaCode = "package com.example.pruning;\n" +
+                "\n" +
+                "import cn.hutool.core.util.StrUtil;\n" +
+                "\n" +
+                "public class PrunedRule {\n" +
+                "    public String apply(String value) {\n" +
+                "        return StrUtil.blankToDefault(value, \"empty\");\n" +
+                "    }\n" +
+                "}";
+        long start = System.currentTimeMillis();
+        Class<?> pruned = CompilerUtil.compileAndLoadClass(javaCode, new CompileOptions().setAnnotationProcessing(false));
+        log.info("裁剪类路径编译耗时：{}ms", System.currentTimeMillis() - start);
+        Assertions.assertEquals("empty", ReflectUtil.invoke(pruned.newInstance(), "apply", " "));
+
+        start = System.currentTimeMillis();
+        CompilerUtil.compileAndLoadClass(javaCode.replace("PrunedRule", "FullRule"),
+                new CompileOptions().setClasspathPruning(false).setAnnotationProcessing(false));
+        log.info("完整类路径编译耗时：{}ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 测试裁剪类路径编译失败（被引用类的父类位于其他 JAR）时回退到完整类路径，
+     * 失败尝试的耗时单独记录，相同的裁剪结果之后直接使用完整类路径。
+     *
+     * @throws Exception 如果编译失败
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testPrunedClasspathFallback() throws Exception {
+        Path dir = Files.createTempDirectory("hao-pruning");
+        Map<String, String> fixtures = new LinkedHashMap<>();
+        fixtures.put("com.example.prunebase.PruneBase", "package com.example.prunebase;\n" +
+                "public class PruneBase {\n" +
+                "    public String name() { return \"base\"; }\n" +
+                "}");
+        fixtures.put("com.example.prunederived.PruneDerived", "package com.example.prunederived;\n" +
+                "public class PruneDerived extends com.example.prunebase.PruneBase {\n" +
+                "}");
+        Map<String, byte[]> classBytes = compileClasses(dir, fixtures);
+        Path baseJar = dir.resolve("prune-base.jar");
+        Path derivedJar = dir.resolve("prune-derived.jar");
+        Files.write(baseJar, jarBytes(Collections.singletonMap("com/example/prunebase/PruneBase.class", classBytes.get("com.example.prunebase.PruneBase"))));
+        Files.write(derivedJar, jarBytes(Collections.singletonMap("com/example/prunederived/PruneDerived.class", classBytes.get("com.example.prunederived.PruneDerived"))));
+        String javaCode = "package com.example.pruning;\n" +
+                "\n" +
+                "import com.example.prunederived.PruneDerived;\n" +
+                "\n" +
+                "public class FallbackRule {\n" +
+                "    public String apply() {\n" +
+                "        return new PruneDerived().name();\n" +
+                "    }\n" +
+                "}";
+        List<String> loaded = CompilerUtil.getClassPath();
+        List<CompileMetrics> recorded = new CopyOnWriteArrayList<>();
+        CompilerUtil.setCompileMetricsSink(recorded::add);
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{baseJar.toUri().toURL(), derivedJar.toUri().toURL()}, getClass().getClassLoader())) {
+            CompilerUtil.reloadClassPath();
+            CompilerUtil.classpath.addAll(loaded);
+            CompilerUtil.classpath.add(baseJar.toString());
+            CompilerUtil.classpath.add(derivedJar.toString());
+            CompileOptions options = new CompileOptions().setParentClassLoader(parent).setAnnotationProcessing(false);
+
+            Class<?> first = CompilerUtil.compileAndLoadClass(javaCode, options);
+            Assertions.assertEquals("base", ReflectUtil.invoke(first.newInstance(), "apply"));
+            CompileMetrics fallback = recorded.get(recorded.size() - 1);
+            log.info("裁剪失败后回退：{}", fallback);
+            Assertions.assertTrue(fallback.getPhaseNanos(CompileMetrics.Phase.PRUNED_FALLBACK) > 0);
+            Assertions.assertEquals(0, fallback.getErrorCount());
+
+            CompilerUtil.compileAndLoadClass(javaCode.replace("FallbackRule", "FallbackRule2"), options);
+            CompileMetrics direct = recorded.get(recorded.size() - 1);
+            log.info("直接使用完整类路径：{}", direct);
+            Assertions.assertEquals(0, direct.getPhaseNanos(CompileMetrics.Phase.PRUNED_FALLBACK));
+        } finally {
+            CompilerUtil.setCompileMetricsSink(new RollingCompileMetricsSink());
+            CompilerUtil.classpath.clear();
+            CompilerUtil.reloadClassPath();
+            FileUtil.del(dir.toFile());
+        }
+    }
+
+    @Test
+    public void testRemoteCompilerPool() throws Exception {
+        CompilerUtil.setRemoteCompilerPool(new RemoteCompilerPool(2, Collections.singletonList("-Xmx256m")));
+        try {
+            long start = System.currentTimeMillis();
+            TypedClassFactory<IntUnaryOperator> factory = CompilerUtil.compileFactory("package com.example.remote;\n" +
+                    "\n" +
+                    "import java.util.function.IntUnaryOperator;\n" +
+                    "\n" +
+                    "public class RemoteRule implements IntUnaryOperator {\n" +
+                    "    public int applyAsInt(int x) {\n" +
+                    "        return x + 1;\n" +
+                    "    }\n" +
+                    "}", IntUnaryOperator.class);
+            log.info("独立进程编译耗时：{}ms, {}", System.currentTimeMillis() - start, CompilerUtil.getRemoteCompilerPool());
+            Assertions.assertEquals(2, factory.get().applyAsInt(1));
+        } finally {
+            CompilerUtil.setRemoteCompilerPool(null);
+        }
+    }
+
+    @Test
+    public void testRemoteCompilerTimeout() {
+        // 1ms 内子进程不可能完成编译，超时后子进程被结束，不再重试
+        RemoteCompilerPool pool = new RemoteCompilerPool(1, Collections.singletonList("-Xmx256m"), 1);
+        CompilerUtil.setRemoteCompilerPool(pool);
+        try {
+            Assertions.assertThrows(Exception.class, () -> CompilerUtil.compileAndLoadClass("package com.example.remote;\n" +
+                    "public class TimeoutRule {\n" +
+                    "    public long value() { return " + System.nanoTime() + "L; }\n" +
+                    "}"));
+            log.info("编译超时后：{}", pool);
+            Assertions.assertEquals(1, pool.getTimeoutCount());
+            Assertions.assertEquals(0, pool.getWorkerCount());
+        } finally {
+            CompilerUtil.setRemoteCompilerPool(null);
+        }
+    }
+
+    @Test
+    public void testHotSwapRegistry() throws Exception {
+        String template = "package com.example.swap;\n" +
+                "\n" +
+                "import java.util.function.IntUnaryOperator;\n" +
+                "\n" +
+                "public class SwapRule implements IntUnaryOperator {\n" +
+                "    public int applyAsInt(int x) {\n" +
+                "        return x * %d;\n" +
+                "    }\n" +
+                "}";
+        try (CompilerService compilerService = new CompilerService()) {
+            HotSwapRegistry<IntUnaryOperator> registry = new HotSwapRegistry<>(IntUnaryOperator.class, compilerService);
+            // 不保留旧版本的引用，退役后可以被回收
+            registry.deploy("rule", String.format(template, 2)).join();
+            Assertions.assertEquals(42, (int) registry.call("rule", op -> op.applyAsInt(21)));
+
+            long start = System.currentTimeMillis();
+            CompletableFuture<HotSwapRegistry.Deployment<IntUnaryOperator>> deploying = registry.deploy("rule", String.format(template, 3));
+            // 编译期间读取不阻塞，仍然得到旧版本
+            int reads = 0;
+            while (!deploying.isDone()) {
+                Assertions.assertEquals(42, (int) registry.call("rule", op -> op.applyAsInt(21)));
+                reads++;
+            }
+            HotSwapRegistry.Deployment<IntUnaryOperator> v2 = deploying.join();
+            log.info("替换耗时：{}ms, 期间读取 {} 次, {}", System.currentTimeMillis() - start, reads, v2);
+            Assertions.assertEquals(63, (int) registry.call("rule", op -> op.applyAsInt(21)));
+            Assertions.assertTrue(v2.isActive());
+            Assertions.assertEquals(0, registry.getDrainingCount());
+            // GC 不保证立即回收，有限次重试
+            for (int i = 0; i < 20 && registry.getRetiredLiveCount() > 0; i++) {
+                System.gc();
+                Thread.sleep(50);
+            }
+            log.info("旧版本回收后：存活 {} 个", registry.getRetiredLiveCount());
+            Assertions.assertEquals(0, registry.getRetiredLiveCount());
+        }
+    }
+
+    @Test
+    public void testCoalescedCompile() throws Exception {
+        String javaCode = "package com.example.flight;\n" +
+                "\n" +
+                "public class FlightRule {\n" +
+                "    public int value() {\n" +
+                "        return " + System.nanoTime() + "L > 0 ? 1 : 0;\n" +
+                "    }\n" +
+                "}";
+        long coalesced = CompilerUtil.getCoalescedCompileCount();
+        AtomicBoolean holding = new AtomicBoolean(true);
+        AtomicReference<Class<?>> withWriter = new AtomicReference<>();
+        CompilerUtil.setCompileMetricsSink(metrics -> {
+            if (!holding.compareAndSet(true, false)) {
+                return;
+            }
+            // 编译线程在结束本次编译前停在这里，直到其余 7 个调用都已合并进来，不会有调用晚到而错过合并
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (CompilerUtil.getCoalescedCompileCount() - coalesced < 7 && System.currentTimeMillis() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            // 指定了自己写入器的调用不与进行中的编译合并
+            withWriter.set(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return CompilerUtil.compileAndLoadClass(javaCode, new CompileOptions().setWriter(new StringWriter()));
+                } catch (ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            }).join());
+        });
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CyclicBarrier barrier = new CyclicBarrier(8);
+        List<CompletableFuture<Class<?>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    // 同时开始，模拟冷启动时的突发请求
+                    barrier.await();
+                    return CompilerUtil.compileAndLoadClass(javaCode);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, executor));
+        }
+        try {
+            Class<?> first = futures.get(0).join();
+            for (CompletableFuture<Class<?>> future : futures) {
+                Assertions.assertSame(first, future.join());
+            }
+            log.info("8 个并发编译耗时：{}ms, 合并 {} 次", System.currentTimeMillis() - start,
+                    CompilerUtil.getCoalescedCompileCount() - coalesced);
+            Assertions.assertEquals(7, CompilerUtil.getCoalescedCompileCount() - coalesced);
+            Assertions.assertNotNull(withWriter.get());
+            Assertions.assertNotSame(first, withWriter.get());
+        } finally {
+            executor.shutdown();
+            CompilerUtil.setCompileMetricsSink(new RollingCompileMetricsSink());
+        }
+    }
+
+    /**
+     * 测试脚本预编译：扫描期间即可等待类，重复请求同一源码不会重复编译。
+     *
+     * @throws Exception 如果编译失败
+     */
+    @Test
+    public void testScriptPrecompiler() throws Exception {
+        Path dir = writeScripts("com.example.precompile", 4);
+        // 队列容量为 1 且阻塞提交，登记与查询不受提交阻塞影响
+        CompilerService compilerService = new CompilerService(2, 1, CompilerService.SaturationPolicy.BLOCK);
+        try (ScriptPrecompiler precompiler = new ScriptPrecompiler(compilerService)) {
+            long start = System.currentTimeMillis();
+            precompiler.start(Collections.singletonList(dir.toString()));
+            Class<?> rule = precompiler.awaitClass("com.example.precompile.Rule3");
+            log.info("等待首个预编译类耗时：{}ms", System.currentTimeMillis() - start);
+            Assertions.assertNotNull(rule);
+            Assertions.assertTrue(precompiler.getScanFuture().isDone());
+            Assertions.assertTrue(precompiler.awaitReady(60, TimeUnit.SECONDS));
+            Assertions.assertEquals(4, precompiler.getSourceCount());
+            Assertions.assertEquals(0, precompiler.getFailedCount());
+
+            // 相同源码直接复用预编译结果
+            Assertions.assertSame(rule, precompiler.compile(FileUtil.readUtf8String(dir.resolve("Rule3.java").toFile())).join());
+            Assertions.assertEquals(4, compilerService.getCompletedCount());
+            Assertions.assertNull(precompiler.awaitClass("com.example.precompile.Missing"));
+        } finally {
+            FileUtil.del(dir.toFile());
+        }
+    }
+
+    /**
+     * 测试自动配置：compiler-workers 为 0 时不创建独立编译进程池，配置了预编译位置时创建并启动预编译器。
+     *
+     * @throws Exception 如果预编译失败
+     */
+    @Test
+    public void testCompilerAutoConfig() throws Exception {
+        Path dir = writeScripts("com.example.autoconfig", 2);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hao-util.enabled", "true");
+        properties.put("hao-util.compiler-workers", "0");
+        properties.put("hao-util.precompile-locations", dir.toString());
+        properties.put("hao-util.precompile-threads", "2");
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+            context.register(HaoUtilAutoConfig.class);
+            context.refresh();
+            Assertions.assertTrue(context.getBeansOfType(RemoteCompilerPool.class).isEmpty());
+            Assertions.assertNull(CompilerUtil.getRemoteCompilerPool());
+
+            ScriptPrecompiler precompiler = context.getBean(ScriptPrecompiler.class);
+            Assertions.assertTrue(precompiler.awaitReady(60, TimeUnit.SECONDS));
+            Assertions.assertEquals(2, precompiler.getSourceCount());
+            Assertions.assertNotNull(precompiler.awaitClass("com.example.autoconfig.Rule1"));
+        } finally {
+            FileUtil.del(dir.toFile());
+        }
+    }
+
+    /**
+     * 在临时目录中生成 count 个脚本 Rule0..Rule{count-1}
+     */
+    private static Path writeScripts(String packageName, int count) throws IOException {
+        Path dir = Files.createTempDirectory("hao-scripts");
+        for (int i = 0; i < count; i++) {
+            Files.write(dir.resolve("Rule" + i + ".java"), ("package " + packageName + ";\n" +
+                    "public class Rule" + i + " {\n" +
+                    "    public int value() { return " + i + "; }\n" +
+                    "}").getBytes(StandardCharsets.UTF_8));
+        }
+        return dir;
+    }
+
+    /**
+     * 测试 fat jar 直读：嵌套 JAR 中的类从索引到的条目读取，类加载器上其他 JAR 中的同名类不会被误用；
+     * 声明了注解处理器的嵌套 JAR 会被识别并单独解压。
+     *
+     * @throws Exception 如果编译失败
+     */
+    @Test
+    public void testNestedJarIndex() throws Exception {
+        Path dir = Files.createTempDirectory("hao-nested-jar");
+        try {
+            String className = "com.example.nested.NestedGreeter";
+            String resourceName = "com/example/nested/NestedGreeter.class";
+            byte[] greeter = compileClass(dir, className, "package com.example.nested;\n" +
+                    "public class NestedGreeter {\n" +
+                    "    public String greet() { return \"nested\"; }\n" +
+                    "}");
+            byte[] shadow = compileClass(dir, className, "package com.example.nested;\n" +
+                    "public class NestedGreeter {\n" +
+                    "    public String hello() { return \"shadow\"; }\n" +
+                    "}");
+            Map<String, byte[]> fatEntries = new LinkedHashMap<>();
+            fatEntries.put("BOOT-INF/lib/dep.jar", jarBytes(Collections.singletonMap(resourceName, greeter)));
+            fatEntries.put("BOOT-INF/lib/processor.jar", jarBytes(Collections.singletonMap(
+                    "META-INF/services/javax.annotation.processing.Processor", "com.example.NoopProcessor\n".getBytes(StandardCharsets.UTF_8))));
+            Path fatJar = Files.write(dir.resolve("app.jar"), jarBytes(fatEntries));
+            // 类加载器上存在同名但内容不同的类
+            Path shadowJar = Files.write(dir.resolve("shadow.jar"), jarBytes(Collections.singletonMap(resourceName, shadow)));
+
+            try (URLClassLoader shadowLoader = new URLClassLoader(new URL[]{shadowJar.toUri().toURL()}, null);
+                 NestedJarIndex index = NestedJarIndex.build(fatJar.toString(), shadowLoader)) {
+                Assertions.assertNotNull(index.find(className));
+                Assertions.assertEquals(Collections.singletonList("processor.jar"), index.getProcessorLibs());
+                List<String> processorPath = index.extractProcessorPath(dir.resolve("processors").toFile());
+                Assertions.assertTrue(new File(processorPath.get(0)).isFile());
+
+                // 只有 dep.jar 中的 NestedGreeter 有 greet 方法，读到同名的其他类时编译失败
+                JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+                StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, null);
+                standardFileManager.setLocation(StandardLocation.CLASS_PATH, Collections.emptyList());
+                standardFileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(Files.createDirectories(dir.resolve("out")).toFile()));
+                DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+                try (JavaFileManager fileManager = new NestedJarJavaFileManager(standardFileManager, index)) {
+                    long start = System.currentTimeMillis();
+                    boolean success = compiler.getTask(null, fileManager, diagnostics, Collections.singletonList("-proc:none"), null,
+                            Collections.singletonList(new JavaSourceFromString("com.example.nested.NestedCaller", "package com.example.nested;\n" +
+                                    "public class NestedCaller {\n" +
+                                    "    public String call() { return new NestedGreeter().greet(); }\n" +
+                                    "}"))).call();
+                    log.info("嵌套 JAR 编译耗时：{}ms", System.currentTimeMillis() - start);
+                    Assertions.assertTrue(success, diagnostics.getDiagnostics().toString());
+                }
+            }
+        } finally {
+            FileUtil.del(dir.toFile());
+        }
+    }
+
+    private static byte[] compileClass(Path dir, String className, String javaCode) throws IOException {
+        return compileClasses(dir, Collections.singletonMap(className, javaCode)).get(className);
+    }
+
+    private static Map<String, byte[]> compileClasses(Path dir, Map<String, String> sources) throws IOException {
+        Path out = Files.createTempDirectory(dir, "classes");
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<JavaFileObject> units = new ArrayList<>();
+        sources.forEach((className, javaCode) -> units.add(new JavaSourceFromString(className, javaCode)));
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(out.toFile()));
+            Assertions.assertTrue(compiler.getTask(null, fileManager, null, Collections.singletonList("-proc:none"), null, units).call());
+        }
+        Map<String, byte[]> classBytes = new LinkedHashMap<>();
+        for (String className : sources.keySet()) {
+            classBytes.put(className, Files.readAllBytes(out.resolve(className.replace('.', '/') + ".class")));
+        }
+        return classBytes;
+    }
+
+    private static byte[] jarBytes(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream jar = new JarOutputStream(bytes)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                jar.putNextEntry(new JarEntry(entry.getKey()));
+                jar.write(entry.getValue());
+                jar.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
 }
@@ -0,0 +1,351 @@
+package org.hao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hao.core.cache.LocalLruCacheHolder;
+import org.hao.core.exception.HaoException;
+import org.hao.core.expression.ExpressionAnalysis;
+import org.hao.core.expression.ExpressionUtil;
+import org.hao.core.expression.FormulaGraph;
+import org.hao.core.expression.NumericExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 表达式工具测试
+ *
+ * @author wanghao (helloworlwh@163.com)
+ * @since 2026-10-17
+ */
+@Slf4j
+public class TestExpressionJob {
+
+    @Test
+    public void testCompiledExpressionCache() {
+        LocalLruCacheHolder<?, Serializable> cache = ExpressionUtil.getCompiledExpressionCache();
+        String expression = "add(a, b) * 2";
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10000; i++) {
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("a", i);
+            vars.put("b", 1);
+            Assertions.assertEquals((i + 1) * 2D, ((Number) ExpressionUtil.executeExpression(expression, vars)).doubleValue());
+        }
+        log.info("执行 10000 次耗时：{}ms, {}, 命中率 {}", System.currentTimeMillis() - start, cache, cache.getHitRate());
+        Assertions.assertTrue(cache.getHitCount() >= 9999);
+    }
+
+    @Test
+    public void testConcurrentLruCache() throws Exception {
+        LocalLruCacheHolder<Integer, Integer> cache = new LocalLruCacheHolder<>(64);
+        ForkJoinPool pool = new ForkJoinPool(8);
+        long start = System.currentTimeMillis();
+        pool.submit(() -> IntStream.range(0, 200_000).parallel().forEach(i -> {
+            // 0..31 为热点键，其余只访问一次
+            int key = i % 2 == 0 ? i % 32 : i;
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        })).get();
+        pool.shutdown();
+        log.info("并发读写 200000 次耗时：{}ms, {}", System.currentTimeMillis() - start, cache);
+        // 淘汰不阻塞写入，条目数只会短暂超出容量
+        Assertions.assertTrue(cache.size() <= 64 + 8);
+        Assertions.assertTrue(cache.getEvictionCount() > 0);
+        Assertions.assertTrue(cache.getHitCount() > 0);
+
+        // 调用方每次新建的解析上下文默认不进入缓存
+        LocalLruCacheHolder<?, Serializable> compiled = ExpressionUtil.getCompiledExpressionCache();
+        int size = compiled.size();
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(3D, ((Number) ExpressionUtil.executeExpression("sqrt(9)", ExpressionUtil.buildParserContext())).doubleValue());
+        }
+        Assertions.assertEquals(size, compiled.size());
+    }
+
+    @Test
+    public void testSharedParserContext() {
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            ExpressionUtil.buildParserContext();
+        }
+        long build = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            ExpressionUtil.createSharedParserContext();
+        }
+        long shared = System.nanoTime() - start;
+        log.info("1000 次构建解析上下文：重新导入 {}us, 复制预构建导入 {}us", build / 1000, shared / 1000);
+        Assertions.assertNotSame(ExpressionUtil.createSharedParserContext().getParserConfiguration(), ExpressionUtil.createSharedParserContext().getParserConfiguration());
+        Assertions.assertEquals(3D, ((Number) ExpressionUtil.executeExpression("sqrt(9)")).doubleValue());
+        // 表达式中的 import 只作用于本次编译，不泄漏到之后的编译
+        Assertions.assertEquals(0, ExpressionUtil.executeExpression("import java.util.HashMap; new HashMap().size()"));
+        Assertions.assertFalse(ExpressionUtil.createSharedParserContext().hasImport("HashMap"));
+        Assertions.assertFalse(ExpressionUtil.getBuiltInImports().containsKey("HashMap"));
+    }
+
+    @Test
+    public void testLayeredVariables() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("a", 2);
+        Map<String, Object> snapshot = new HashMap<>(vars);
+        // 赋值只写入局部层，调用方的 Map 不被修改，全局变量 StrUtil 仍可解析
+        Object result = ExpressionUtil.executeExpression("b = a * 3; a = 1; StrUtil.isBlank('') ? b : 0", vars);
+        Assertions.assertEquals(6, ((Number) result).intValue());
+        Assertions.assertEquals(snapshot, vars);
+
+        // 多线程共享同一个输入 Map 并发求值
+        long start = System.currentTimeMillis();
+        double sum = IntStream.range(0, 10000).parallel()
+                .mapToDouble(i -> ((Number) ExpressionUtil.executeExpression("add(a, 1)", vars)).doubleValue())
+                .sum();
+        log.info("并发求值 10000 次耗时：{}ms", System.currentTimeMillis() - start);
+        Assertions.assertEquals(30000D, sum);
+        Assertions.assertEquals(snapshot, vars);
+    }
+
+    @Test
+    public void testPrecompiledRulesTemplate() {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("a", 3);
+        vars.put("b", 4);
+        Assertions.assertFalse(ExpressionUtil.getRulesTemplateFunctions().isEmpty());
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(5D, ((Number) ExpressionUtil.eval("sqrt(add(power(a, 2), power(b, 2)))", vars)).doubleValue());
+        }
+        log.info("eval 1000 次耗时：{}ms", System.currentTimeMillis() - start);
+        Assertions.assertEquals(2, vars.size());
+    }
+
+    @Test
+    public void testExecuteBatch() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("a", i);
+            row.put("b", 2);
+            rows.add(row);
+        }
+        String expression = "power(a, 2) + b";
+        long start = System.currentTimeMillis();
+        for (Map<String, Object> row : rows) {
+            ExpressionUtil.executeExpression(expression, row);
+        }
+        long sequential = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        List<Object> results = ExpressionUtil.executeBatch(expression, rows, 4);
+        log.info("50000 行逐行执行 {}ms, 批量并行执行 {}ms", sequential, System.currentTimeMillis() - start);
+        for (int i = 0; i < rows.size(); i++) {
+            Assertions.assertEquals((double) i * i + 2, ((Number) results.get(i)).doubleValue());
+        }
+    }
+
+    @Test
+    public void testCompileNumeric() {
+        NumericExpression expression = ExpressionUtil.compileNumeric("power(a, 2) + b * 3 - (a % 2)");
+        log.info("{}", expression);
+        Assertions.assertTrue(expression.isCompiled());
+        Assertions.assertSame(expression, ExpressionUtil.compileNumeric("power(a, 2) + b * 3 - (a % 2)"));
+        double[] slots = new double[expression.getVariables().size()];
+        int a = expression.slotOf("a");
+        int b = expression.slotOf("b");
+        Map<String, Object> vars = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            slots[a] = i;
+            slots[b] = i / 2D;
+            vars.put("a", (double) i);
+            vars.put("b", i / 2D);
+            double expected = ((Number) ExpressionUtil.executeExpression(expression.getExpression(), vars)).doubleValue();
+            Assertions.assertEquals(expected, expression.applyAsDouble(slots), 1e-9);
+            Assertions.assertEquals(expected, ((Number) expression.execute(vars)).doubleValue(), 1e-9);
+        }
+
+        long start = System.nanoTime();
+        double sum = 0;
+        for (int i = 0; i < 1000000; i++) {
+            slots[a] = i;
+            sum += expression.applyAsDouble(slots);
+        }
+        long compiled = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            vars.put("a", (double) i);
+            ExpressionUtil.executeExpression(expression.getExpression(), vars);
+        }
+        log.info("字节码执行 1000000 次 {}ms, MVEL 执行 100000 次 {}ms, sum={}", compiled / 1000000, (System.nanoTime() - start) / 1000000, sum);
+
+        // 编译执行按 double 计算：整数输入返回 Double，且不会像 MVEL 的 int 运算那样溢出回绕
+        NumericExpression sum2 = ExpressionUtil.compileNumeric("x + y");
+        Assertions.assertTrue(sum2.isCompiled());
+        Map<String, Object> ints = new HashMap<>();
+        ints.put("x", Integer.MAX_VALUE);
+        ints.put("y", 1);
+        Assertions.assertEquals((double) Integer.MAX_VALUE + 1, sum2.execute(ints));
+
+        // 超出算术子集时回退到 MVEL
+        NumericExpression fallback = ExpressionUtil.compileNumeric("a > b ? a : b");
+        log.info("{}", fallback);
+        Assertions.assertFalse(fallback.isCompiled());
+        Map<String, Object> pair = new HashMap<>();
+        pair.put("a", 5D);
+        pair.put("b", 3D);
+        Assertions.assertEquals(5D, ((Number) fallback.execute(pair)).doubleValue());
+        Assertions.assertEquals(5D, fallback.applyAsDouble(new double[]{5, 3}));
+    }
+
+    @Test
+    public void testPrimitiveEvaluationAllocation() {
+        NumericExpression expression = ExpressionUtil.compileNumeric("power(x, 2) / y + max(x, y) - z % 3", "x", "y", "z");
+        Assertions.assertTrue(expression.isCompiled());
+        Assertions.assertEquals(Arrays.asList("x", "y", "z"), expression.getVariables());
+        double[] doubles = new double[3];
+        long[] longs = new long[3];
+        double sum = 0;
+        // 预热，使求值路径完成 JIT 编译
+        for (int i = 0; i < 200000; i++) {
+            doubles[0] = longs[0] = i;
+            doubles[1] = longs[1] = i % 7 + 1;
+            doubles[2] = longs[2] = i % 5;
+            sum += expression.applyAsDouble(doubles) + expression.applyAsDouble(longs) + expression.applyAsLong(longs);
+        }
+        Assertions.assertEquals(expression.applyAsDouble(doubles), expression.applyAsDouble(longs));
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = System.nanoTime();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000000; i++) {
+            doubles[0] = longs[0] = i;
+            doubles[1] = longs[1] = i % 7 + 1;
+            doubles[2] = longs[2] = i % 5;
+            sum += expression.applyAsDouble(doubles) + expression.applyAsDouble(longs) + expression.applyAsLong(longs);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        log.info("3000000 次基本类型求值耗时 {}ms, 分配 {} 字节, sum={}", (System.nanoTime() - start) / 1000000, allocated, sum);
+        // 允许测量调用本身的少量分配，每次求值分配哪怕一个对象也会远超该值
+        Assertions.assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    public void testFormulaGraph() {
+        FormulaGraph graph = new FormulaGraph();
+        StringBuilder total = new StringBuilder();
+        Map<String, Object> inputs = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            graph.define("b" + i, "power(in" + i + ", 2)");
+            graph.define("c" + i, "b" + i + " + 1");
+            total.append(i == 0 ? "" : " + ").append('c').append(i);
+            inputs.put("in" + i, i);
+        }
+        graph.define("total", total.toString());
+        Assertions.assertEquals(Arrays.asList("in0"), new ArrayList<>(graph.getReferences("b0")));
+        Assertions.assertEquals(3, graph.getEvaluationLevels().size());
+
+        long start = System.currentTimeMillis();
+        graph.update(inputs);
+        log.info("全量计算 {} 个公式耗时 {}ms", graph.getLastEvaluatedCount(), System.currentTimeMillis() - start);
+        Assertions.assertEquals(201, graph.getLastEvaluatedCount());
+        double expected = IntStream.range(0, 100).mapToDouble(i -> i * i + 1).sum();
+        Assertions.assertEquals(expected, ((Number) graph.get("total")).doubleValue());
+
+        // 只重新计算变化输入的下游
+        start = System.currentTimeMillis();
+        Map<String, Object> changed = graph.update(Collections.singletonMap("in5", 6));
+        log.info("增量计算 {} 个公式耗时 {}ms, 变化 {}", graph.getLastEvaluatedCount(), System.currentTimeMillis() - start, changed.keySet());
+        Assertions.assertEquals(3, graph.getLastEvaluatedCount());
+        Assertions.assertEquals(Arrays.asList("b5", "c5", "total"), new ArrayList<>(changed.keySet()));
+        Assertions.assertEquals(expected + 11, ((Number) graph.get("total")).doubleValue());
+        graph.update(Collections.singletonMap("in5", 6));
+        Assertions.assertEquals(0, graph.getLastEvaluatedCount());
+
+        // 循环引用在定义时拒绝，公式图保持不变
+        graph.define("x", "y + 1");
+        Assertions.assertThrows(HaoException.class, () -> graph.define("y", "x * 2"));
+        Assertions.assertThrows(HaoException.class, () -> graph.define("b1", "total"));
+        Assertions.assertEquals(202, graph.size());
+    }
+
+    @Test
+    public void testEvaluateColumns() {
+        int points = 86400;
+        double[] voltage = new double[points];
+        double[] current = new double[points];
+        for (int i = 0; i < points; i++) {
+            voltage[i] = 220 + i % 10;
+            current[i] = i % 50 / 10D;
+        }
+        Map<String, double[]> columns = new HashMap<>();
+        columns.put("voltage", voltage);
+        columns.put("current", current);
+        String expression = "voltage * current / 1000 + power(current, 2) * 0.01";
+
+        long start = System.currentTimeMillis();
+        Map<String, Object> row = new HashMap<>();
+        double[] perPoint = new double[points];
+        for (int i = 0; i < points; i++) {
+            row.put("voltage", voltage[i]);
+            row.put("current", current[i]);
+            perPoint[i] = ((Number) ExpressionUtil.executeExpression(expression, row)).doubleValue();
+        }
+        long mapTime = System.currentTimeMillis() - start;
+        ExpressionUtil.evaluateColumns(expression, columns);
+        start = System.currentTimeMillis();
+        double[] sequential = ExpressionUtil.evaluateColumns(expression, columns);
+        long columnTime = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        double[] parallel = ExpressionUtil.evaluateColumns(expression, columns, ForkJoinPool.commonPool());
+        log.info("{} 个点逐点 Map 求值 {}ms, 列式求值 {}ms, 列式并行求值 {}ms", points, mapTime, columnTime, System.currentTimeMillis() - start);
+
+        Assertions.assertArrayEquals(perPoint, sequential, 1e-9);
+        Assertions.assertArrayEquals(sequential, parallel, 0);
+        columns.put("current", new double[10]);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExpressionUtil.evaluateColumns(expression, columns));
+    }
+
+    @Test
+    public void testAnalyzeAndOptimize() {
+        String expression = "a * power(10, 3) / 3600 + (a * b) - sqrt(a * b) * (a * b)";
+        ExpressionAnalysis analysis = ExpressionUtil.analyze(expression);
+        log.info("{}", analysis);
+        Assertions.assertTrue(analysis.isArithmetic());
+        Assertions.assertEquals(Arrays.asList("a", "b"), analysis.getVariables());
+        Assertions.assertEquals(Arrays.asList("power", "sqrt"), analysis.getFunctions());
+        Assertions.assertEquals(1, analysis.getFoldedConstants());
+        Assertions.assertEquals(2, analysis.getEliminatedSubexpressions());
+
+        // 优化后的编译结果与 MVEL 一致
+        NumericExpression numeric = ExpressionUtil.compileNumeric(expression, "a", "b");
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("a", 3D);
+        vars.put("b", 4D);
+        Assertions.assertEquals(((Number) ExpressionUtil.executeExpression(expression, vars)).doubleValue(),
+                numeric.applyAsDouble(new double[]{3, 4}), 1e-9);
+        Assertions.assertEquals(analysis.getVariables(), numeric.getAnalysis().getVariables());
+
+        ExpressionAnalysis constant = ExpressionUtil.analyze("power(10, 3) * 2 - -1");
+        Assertions.assertTrue(constant.isConstant());
+        Assertions.assertEquals(2001D, constant.getConstantValue());
+        Assertions.assertTrue(constant.getVariables().isEmpty());
+
+        // 非纯函数不折叠也不合并
+        Assertions.assertEquals(0, ExpressionUtil.analyze("random() + random()").getEliminatedSubexpressions());
+
+        // 超出算术子集时仍报告引用的变量与函数，字符串中的内容不计入
+        ExpressionAnalysis mvel = ExpressionUtil.analyze("name == 'sqrt(x)' ? add(a, 1) : StrUtil.length(name)");
+        log.info("{}", mvel);
+        Assertions.assertFalse(mvel.isArithmetic());
+        Assertions.assertEquals(Arrays.asList("name", "a"), mvel.getVariables());
+        Assertions.assertEquals(Collections.singletonList("add"), mvel.getFunctions());
+    }
+}